@@ -0,0 +1,122 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+
+/**
+ * Bidirectional A* over a {@link NodeGrid}: one search runs forward from the
+ * start and one runs backward from the end, and the side with the smaller open
+ * set is expanded next.
+ * <p>
+ * Both searches use the average of the distance to the other end and the
+ * negated distance to their own end as their heuristic, so a node has the same
+ * heuristic from either side with opposite signs. Both heuristics are then
+ * consistent in their own direction, and the cheapest meeting seen so far is
+ * the best path once the smallest fCosts of the two open sets add up to its
+ * cost. Paths have the same cost as A*, and the search expands far fewer nodes
+ * than A* when the end is in a dead end that A* would have to flood.
+ */
+final class BidirectionalSearch {
+    /** Allowed rounding error when comparing path costs */
+    private static final double COST_TOLERANCE = 1e-9;
+
+    private BidirectionalSearch() {
+    }
+
+    /**
+     * Runs both searches until the cheapest path is known, leaving the scores
+     * and parents in the workspaces. Backward scores are costs to the end.
+     *
+     * @return the node where the two searches met on the cheapest path, or -1 if
+     *         there is no path
+     */
+    static int search(NodeGrid grid, SearchWorkspace forward, SearchWorkspace backward, int start, int end) {
+        forward.reset();
+        backward.reset();
+
+        forward.visit(start, 0, getPotential(grid, start, start, end), -1);
+        forward.openSet.insertOrUpdate(start, forward.fCost(start), forward.hCost[start]);
+        backward.visit(end, 0, getPotential(grid, end, end, start), -1);
+        backward.openSet.insertOrUpdate(end, backward.fCost(end), backward.hCost[end]);
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+
+        while (!forward.openSet.isEmpty() && !backward.openSet.isEmpty()) {
+            if (forward.openSet.peekPrimaryKey() + backward.openSet.peekPrimaryKey() >= bestCost - COST_TOLERANCE)
+                break;
+
+            boolean isForward = forward.openSet.size() <= backward.openSet.size();
+            SearchWorkspace workspace = isForward ? forward : backward;
+            SearchWorkspace other = isForward ? backward : forward;
+            int target = isForward ? end : start;
+            int root = isForward ? start : end;
+
+            int current = workspace.openSet.pop();
+            workspace.closedSet.set(current);
+            workspace.expandedNodes++;
+
+            if (workspace.isInterrupted())
+                return -1;
+
+            // Going backward, a step from the current node to a neighbor means driving
+            // from the neighbor into the current node
+            double backwardEnterCost = grid.getDistanceWeight(current) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+
+            int directions = grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = current + grid.getNeighborOffset(direction);
+                if (!grid.isDriveable(neighbor) || workspace.closedSet.get(neighbor))
+                    continue;
+
+                double enterCost = isForward ? grid.getDistanceWeight(neighbor) * Pathfinder.BIAS_AWAY_FROM_EDGE
+                        : backwardEnterCost;
+                double newMovementCostToNeighbor = workspace.gCost[current] + NodeGrid.NEIGHBOR_STEP[direction]
+                        + enterCost;
+                if (newMovementCostToNeighbor >= workspace.getGCost(neighbor))
+                    continue;
+
+                workspace.visit(neighbor, newMovementCostToNeighbor, getPotential(grid, neighbor, root, target), current);
+                workspace.openSet.insertOrUpdate(neighbor, workspace.fCost(neighbor), workspace.hCost[neighbor]);
+
+                double pathCost = newMovementCostToNeighbor + other.getGCost(neighbor);
+                if (pathCost < bestCost) {
+                    bestCost = pathCost;
+                    meetingNode = neighbor;
+                }
+            }
+        }
+
+        forward.expandedNodes += backward.expandedNodes;
+        return meetingNode;
+    }
+
+    /** @return the path from start to end through the meeting node */
+    static ArrayList<Node> retracePath(NodeGrid grid, SearchWorkspace forward, SearchWorkspace backward,
+            int meetingNode) {
+        ArrayList<Node> path = new ArrayList<Node>();
+
+        for (int current = meetingNode; current >= 0; current = forward.parent[current])
+            path.add(0, grid.getNodeAt(current));
+        for (int current = backward.parent[meetingNode]; current >= 0; current = backward.parent[current])
+            path.add(grid.getNodeAt(current));
+
+        return path;
+    }
+
+    /**
+     * @return the heuristic of a node for the search from root towards target,
+     *         which is the opposite of the heuristic for the other direction
+     */
+    private static double getPotential(NodeGrid grid, int index, int root, int target) {
+        return (getDistance(grid, index, target) - getDistance(grid, index, root)) / 2;
+    }
+
+    /** @return the octile distance between two nodes */
+    private static double getDistance(NodeGrid grid, int indexA, int indexB) {
+        return Pathfinder.getOctileDistance(Math.abs(grid.getGridX(indexA) - grid.getGridX(indexB)),
+                Math.abs(grid.getGridY(indexA) - grid.getGridY(indexB)));
+    }
+}
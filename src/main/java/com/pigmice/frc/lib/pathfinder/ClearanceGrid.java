@@ -0,0 +1,317 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.Field;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * The distance from every node of the field to the nearest obstacle, which
+ * doesn't depend on the robot. One clearance grid can be shared by the
+ * {@link NodeGrid} of every robot footprint, so the signed distance field is
+ * only generated once no matter how many footprints are searched, and a change
+ * to it (for example from a {@link DynamicObstacleLayer}) reaches all of them.
+ * <p>
+ * Clearances are changed in place rather than copied. Only one thread may
+ * change them at a time, and searches on the grid must not run while they
+ * change, or a search may see an update that is only partly applied.
+ */
+public class ClearanceGrid {
+    private final Field _field;
+
+    private final int _numNodesX;
+    private final int _numNodesY;
+    private final double _originX;
+    private final double _originY;
+    private final double _nodeSpacing;
+
+    /** Distance from each node to the nearest obstacle */
+    private final float[] _clearance;
+    /**
+     * The nodes inside obstacles that don't physically block anything, like keep
+     * out zones, and inside no physical obstacle
+     */
+    private final BitSet _insideOnlyRules;
+
+    private final List<NodeGrid.ChangeListener> _changeListeners = new CopyOnWriteArrayList<NodeGrid.ChangeListener>();
+    /**
+     * Incremented every time nodes change. Atomic so changes reported at the same
+     * time from different threads each get their own version.
+     */
+    private final AtomicLong _version = new AtomicLong();
+    /** Incremented every time nodes change for a reason other than a dynamic obstacle */
+    private final AtomicLong _staticVersion = new AtomicLong();
+    /** The number of obstacles in every {@link DynamicObstacleLayer} of this grid */
+    private final AtomicInteger _dynamicObstacleCount = new AtomicInteger();
+
+    /**
+     * Creates a new {@link ClearanceGrid}
+     *
+     * @param field the field to generate clearances from
+     */
+    public ClearanceGrid(Field field) {
+        this(field, false);
+    }
+
+    /**
+     * Creates a new {@link ClearanceGrid}
+     *
+     * @param field         the field to generate clearances from
+     * @param parallelBuild if true, the distance to the nearest obstacle is
+     *                      calculated for bands of rows in parallel. The grid is
+     *                      identical to one built serially.
+     */
+    public ClearanceGrid(Field field, boolean parallelBuild) {
+        this(field, SDFGenerator.generateClearanceGrid(field, parallelBuild));
+    }
+
+    /**
+     * Creates a new {@link ClearanceGrid} from clearances that have already been
+     * calculated, for example by
+     * {@link com.pigmice.frc.lib.pathfinder.field_loading.DistanceTransform} or
+     * loaded from a {@link com.pigmice.frc.lib.pathfinder.field_loading.FieldCache}
+     *
+     * @param field     the field the clearances belong to
+     * @param clearance the distance from each node to the nearest obstacle,
+     *                  indexed by gridY * width + gridX. Copied, so later changes
+     *                  to the array don't affect the grid.
+     */
+    public ClearanceGrid(Field field, float[] clearance) {
+        _field = field;
+
+        _numNodesX = field.config.getGridWidth();
+        _numNodesY = field.config.getGridHeight();
+        _originX = field.config.bottomLeftPositionMeters.getX();
+        _originY = field.config.bottomLeftPositionMeters.getY();
+        _nodeSpacing = field.config.nodeSpacingMeters;
+
+        if (clearance.length != _numNodesX * _numNodesY)
+            throw new IllegalArgumentException("Clearance grid does not match the size of the field");
+
+        _clearance = clearance.clone();
+        _insideOnlyRules = findInsideOnlyRules();
+    }
+
+    /**
+     * @return the nodes inside an obstacle that isn't physical and inside no
+     *         physical obstacle
+     */
+    private BitSet findInsideOnlyRules() {
+        BitSet insideOnlyRules = new BitSet();
+
+        ArrayList<Obstacle> physical = new ArrayList<Obstacle>();
+        for (Obstacle obstacle : _field.obstacles) {
+            if (obstacle.isPhysical())
+                physical.add(obstacle);
+        }
+        if (physical.size() == _field.obstacles.size())
+            return insideOnlyRules;
+
+        for (Obstacle obstacle : _field.obstacles) {
+            if (obstacle.isPhysical())
+                continue;
+
+            int minX = 0;
+            int minY = 0;
+            int maxX = _numNodesX - 1;
+            int maxY = _numNodesY - 1;
+            if (obstacle.getMinBounds() != null && obstacle.getMaxBounds() != null) {
+                minX = Math.max(minX, (int) Math.floor((obstacle.getMinBounds().getX() - _originX) / _nodeSpacing));
+                minY = Math.max(minY, (int) Math.floor((obstacle.getMinBounds().getY() - _originY) / _nodeSpacing));
+                maxX = Math.min(maxX, (int) Math.ceil((obstacle.getMaxBounds().getX() - _originX) / _nodeSpacing));
+                maxY = Math.min(maxY, (int) Math.ceil((obstacle.getMaxBounds().getY() - _originY) / _nodeSpacing));
+            }
+
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int index = y * _numNodesX + x;
+                    if (_clearance[index] > 0 || insideOnlyRules.get(index))
+                        continue;
+
+                    Translation2d position = new Translation2d(_originX + x * _nodeSpacing,
+                            _originY + y * _nodeSpacing);
+                    if (obstacle.getDistanceFrom(position) > 0)
+                        continue;
+
+                    boolean insidePhysical = false;
+                    for (Obstacle other : physical)
+                        insidePhysical |= other.getDistanceFrom(position) <= 0;
+                    if (!insidePhysical)
+                        insideOnlyRules.set(index);
+                }
+            }
+        }
+        return insideOnlyRules;
+    }
+
+    /** @return the field this grid was generated from */
+    public Field getField() {
+        return _field;
+    }
+
+    /** @return the width of this grid */
+    public int getWidth() {
+        return _numNodesX;
+    }
+
+    /** @return the height of this grid */
+    public int getHeight() {
+        return _numNodesY;
+    }
+
+    /** @return the total number of nodes in this grid */
+    public int getNodeCount() {
+        return _clearance.length;
+    }
+
+    /** @return the distance from the node with the given index to the nearest obstacle */
+    public double getClearance(int index) {
+        return _clearance[index];
+    }
+
+    /**
+     * Estimates the distance from any position to the nearest obstacle by
+     * bilinearly interpolating the clearances of the four nodes around it. This
+     * is much faster than measuring every obstacle, and is off by less than a
+     * node spacing from the obstacles the node clearances were measured from.
+     * Positions outside the grid use the closest nodes on its edge.
+     * <p>
+     * A {@link DynamicObstacleLayer} only rewrites the clearance of nodes within
+     * half its widest robot plus {@link Pathfinder#DISTANCE_CUTOFF} of a dynamic
+     * obstacle. Within that reach the result includes dynamic obstacles, but
+     * farther away it is the distance to the static obstacles only, which can be
+     * much larger than the distance to the nearest dynamic obstacle.
+     * 
+     * @param position the real life position on the field
+     * @return the approximate distance to the nearest obstacle
+     */
+    public double sampleClearance(Translation2d position) {
+        double gridX = (position.getX() - _originX) / _nodeSpacing;
+        double gridY = (position.getY() - _originY) / _nodeSpacing;
+        gridX = Math.max(0, Math.min(gridX, _numNodesX - 1));
+        gridY = Math.max(0, Math.min(gridY, _numNodesY - 1));
+
+        int x0 = Math.min((int) gridX, Math.max(_numNodesX - 2, 0));
+        int y0 = Math.min((int) gridY, Math.max(_numNodesY - 2, 0));
+        int x1 = Math.min(x0 + 1, _numNodesX - 1);
+        int y1 = Math.min(y0 + 1, _numNodesY - 1);
+        double tx = gridX - x0;
+        double ty = gridY - y0;
+
+        double bottom = _clearance[y0 * _numNodesX + x0] * (1 - tx) + _clearance[y0 * _numNodesX + x1] * tx;
+        double top = _clearance[y1 * _numNodesX + x0] * (1 - tx) + _clearance[y1 * _numNodesX + x1] * tx;
+        return bottom * (1 - ty) + top * ty;
+    }
+
+    /**
+     * @return if the node is inside an obstacle that only stops the robot from
+     *         driving there, like a
+     *         {@link com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.KeepOutZone},
+     *         and nothing physical, so it doesn't block sight lines
+     */
+    public boolean isInsideOnlyRules(int index) {
+        return _insideOnlyRules.get(index);
+    }
+
+    /**
+     * Sets if a node is inside only obstacles that aren't physical, for example
+     * when a dynamic obstacle moves onto a keep out zone. Follows the same rules as
+     * {@link #setClearance(int, float)}.
+     */
+    void setInsideOnlyRules(int index, boolean insideOnlyRules) {
+        _insideOnlyRules.set(index, insideOnlyRules);
+    }
+
+    /** @return a copy of the nodes inside only obstacles that aren't physical */
+    BitSet getInsideOnlyRules() {
+        return (BitSet) _insideOnlyRules.clone();
+    }
+
+    /**
+     * Sets the clearance of a node for every footprint sharing this grid. Call
+     * {@link #nodesChanged(int, int, int, int)} once all the changed nodes have
+     * been set. The grid must not be searched, or changed by another thread,
+     * until then.
+     *
+     * @param index     the index of the node
+     * @param clearance the new distance from the node to the nearest obstacle
+     */
+    public void setClearance(int index, float clearance) {
+        _clearance[index] = clearance;
+    }
+
+    /**
+     * Tells everything depending on this grid that the clearance of a rectangle of
+     * nodes changed, and increments the version and static version of this grid
+     *
+     * @param minGridX the smallest x of the changed nodes
+     * @param minGridY the smallest y of the changed nodes
+     * @param maxGridX the largest x of the changed nodes
+     * @param maxGridY the largest y of the changed nodes
+     */
+    public void nodesChanged(int minGridX, int minGridY, int maxGridX, int maxGridY) {
+        _staticVersion.incrementAndGet();
+        dynamicNodesChanged(minGridX, minGridY, maxGridX, maxGridY);
+    }
+
+    /**
+     * Does the same as {@link #nodesChanged(int, int, int, int)} for a change made
+     * by a {@link DynamicObstacleLayer}, without changing the static version
+     */
+    void dynamicNodesChanged(int minGridX, int minGridY, int maxGridX, int maxGridY) {
+        _version.incrementAndGet();
+        for (NodeGrid.ChangeListener listener : _changeListeners)
+            listener.nodesChanged(minGridX, minGridY, maxGridX, maxGridY);
+    }
+
+    /** Registers a listener to be called whenever nodes of this grid change */
+    public void addChangeListener(NodeGrid.ChangeListener listener) {
+        _changeListeners.add(listener);
+    }
+
+    /** Unregisters a listener added with {@link #addChangeListener(NodeGrid.ChangeListener)} */
+    public void removeChangeListener(NodeGrid.ChangeListener listener) {
+        _changeListeners.remove(listener);
+    }
+
+    /**
+     * @return a number that changes every time nodes of this grid change, so
+     *         results computed from the grid can tell if they are stale
+     */
+    public long getVersion() {
+        return _version.get();
+    }
+
+    /**
+     * @return a number that changes every time nodes of this grid change, except
+     *         for changes made by a {@link DynamicObstacleLayer}. While
+     *         {@link #hasDynamicObstacles()} is false, the grid is the same as at
+     *         any other time with this static version.
+     */
+    public long getStaticVersion() {
+        return _staticVersion.get();
+    }
+
+    /** @return if any {@link DynamicObstacleLayer} of this grid has obstacles */
+    public boolean hasDynamicObstacles() {
+        return _dynamicObstacleCount.get() > 0;
+    }
+
+    /** Called by a {@link DynamicObstacleLayer} when its number of obstacles changes */
+    void dynamicObstaclesAdded(int count) {
+        _dynamicObstacleCount.addAndGet(count);
+    }
+
+    /** @return the clearances themselves, for views that read them in a search */
+    float[] getClearances() {
+        return _clearance;
+    }
+}
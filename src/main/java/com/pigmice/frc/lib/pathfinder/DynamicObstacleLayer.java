@@ -0,0 +1,313 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Obstacles that come and go while the robot is running, like game pieces and
+ * other robots seen by vision, layered on top of the static obstacles of a
+ * {@link ClearanceGrid}. Every {@link NodeGrid} sharing the clearance grid
+ * sees the obstacles.
+ * <p>
+ * Each change only recalculates the nodes within reach of the obstacle: its
+ * bounds grown by half the widest robot plus {@link Pathfinder#DISTANCE_CUTOFF}.
+ * Nodes further away are neither blocked nor weighted by the obstacle for any
+ * robot up to that width, so their driveability and distance weight are
+ * unaffected, although their clearance won't include it. Every change is
+ * reported to the grid's listeners and changes its version, but not its
+ * static version (see {@link ClearanceGrid#getStaticVersion()}).
+ * <p>
+ * Every method of a layer locks the layer, so several threads can add, move
+ * and remove obstacles through the same layer. The lock doesn't cover anything
+ * else reading or writing the grid, because a layer writes the grid's
+ * clearances in place. Another layer or a caller of
+ * {@link ClearanceGrid#setClearance(int, float)} must not change the grid at
+ * the same time, and no path should be searched on the grid while a change is
+ * being made, since a search running at the same time (for example on a
+ * {@link PathfinderService}) may see only part of it.
+ */
+public class DynamicObstacleLayer {
+    private final ClearanceGrid _grid;
+    /** The clearance of each node from the static obstacles only */
+    private final float[] _staticClearance;
+    /** The nodes inside only static obstacles that aren't physical, like keep out zones */
+    private final BitSet _staticInsideOnlyRules;
+    /** How far from an obstacle's bounds nodes can be affected by it */
+    private final double _reach;
+
+    private final Map<Integer, DynamicObstacle> _obstacles = new HashMap<Integer, DynamicObstacle>();
+    private int _nextId = 0;
+
+    private static class DynamicObstacle {
+        final Obstacle obstacle;
+        final double timestamp;
+        final double timeToLive;
+
+        DynamicObstacle(Obstacle obstacle, double timestamp, double timeToLive) {
+            this.obstacle = obstacle;
+            this.timestamp = timestamp;
+            this.timeToLive = timeToLive;
+        }
+
+        boolean isExpired(double time) {
+            return time > timestamp + timeToLive;
+        }
+    }
+
+    /**
+     * Creates a new {@link DynamicObstacleLayer} for the clearances of a grid. The
+     * grid's current clearances are treated as the static obstacles.
+     *
+     * @param grid the grid to add obstacles to. Other grids sharing its
+     *             clearances also see the obstacles, but only up to its robot
+     *             width.
+     */
+    public DynamicObstacleLayer(NodeGrid grid) {
+        this(grid.getClearanceGrid(), grid.getRobotWidth());
+    }
+
+    /**
+     * Creates a new {@link DynamicObstacleLayer}. The grid's current clearances
+     * are treated as the static obstacles.
+     *
+     * @param grid          the grid to add obstacles to
+     * @param maxRobotWidth the width of the widest robot footprint searching the
+     *                      grid
+     */
+    public DynamicObstacleLayer(ClearanceGrid grid, double maxRobotWidth) {
+        _grid = grid;
+        _reach = maxRobotWidth / 2d + Pathfinder.DISTANCE_CUTOFF;
+
+        _staticClearance = new float[grid.getNodeCount()];
+        for (int i = 0; i < _staticClearance.length; i++)
+            _staticClearance[i] = (float) grid.getClearance(i);
+        _staticInsideOnlyRules = grid.getInsideOnlyRules();
+    }
+
+    /** @return the grid this layer changes */
+    public ClearanceGrid getGrid() {
+        return _grid;
+    }
+
+    /**
+     * Adds an obstacle
+     *
+     * @param obstacle   the obstacle, which must be bounded
+     * @param timestamp  when the obstacle was seen, in seconds
+     * @param timeToLive how long after it was last seen the obstacle is removed by
+     *                   {@link #removeExpired(double)}, in seconds. Use infinity
+     *                   for obstacles that never expire.
+     * @return the id of the obstacle, used to move or remove it
+     */
+    public synchronized int add(Obstacle obstacle, double timestamp, double timeToLive) {
+        checkBounded(obstacle);
+
+        int id = _nextId++;
+        _obstacles.put(id, new DynamicObstacle(obstacle, timestamp, timeToLive));
+        _grid.dynamicObstaclesAdded(1);
+        refresh(obstacle);
+        return id;
+    }
+
+    /**
+     * Adds a circular obstacle
+     *
+     * @return the id of the obstacle, used to move or remove it
+     * @see #add(Obstacle, double, double)
+     */
+    public int addCircle(Translation2d center, double radius, double timestamp, double timeToLive) {
+        return add(new SDFGenerator.Circle(center, radius), timestamp, timeToLive);
+    }
+
+    /**
+     * Adds a rectangular obstacle
+     *
+     * @return the id of the obstacle, used to move or remove it
+     * @see #add(Obstacle, double, double)
+     */
+    public int addRectangle(Translation2d center, Translation2d size, double timestamp, double timeToLive) {
+        return add(new SDFGenerator.Rectangle(center, size), timestamp, timeToLive);
+    }
+
+    /**
+     * Moves a circle or rectangle to a new position, keeping its size, and marks
+     * it as seen at the timestamp
+     *
+     * @return false if there is no obstacle with the id
+     * @throws IllegalArgumentException if the obstacle isn't a circle or rectangle
+     */
+    public synchronized boolean move(int id, Translation2d position, double timestamp) {
+        DynamicObstacle current = _obstacles.get(id);
+        if (current == null)
+            return false;
+
+        Obstacle moved;
+        if (current.obstacle instanceof SDFGenerator.Circle)
+            moved = new SDFGenerator.Circle(position, ((SDFGenerator.Circle) current.obstacle).getRadius());
+        else if (current.obstacle instanceof SDFGenerator.Rectangle)
+            moved = new SDFGenerator.Rectangle(position, ((SDFGenerator.Rectangle) current.obstacle).getScale());
+        else
+            throw new IllegalArgumentException("Can't move obstacle of type " + current.obstacle.getClass().getName());
+
+        return update(id, moved, timestamp);
+    }
+
+    /**
+     * Replaces an obstacle, keeping its time to live, and marks it as seen at the
+     * timestamp
+     *
+     * @return false if there is no obstacle with the id
+     */
+    public synchronized boolean update(int id, Obstacle obstacle, double timestamp) {
+        checkBounded(obstacle);
+
+        DynamicObstacle current = _obstacles.get(id);
+        if (current == null)
+            return false;
+
+        _obstacles.put(id, new DynamicObstacle(obstacle, timestamp, current.timeToLive));
+
+        // One refresh of both windows, so the grid only changes once
+        Translation2d oldMin = current.obstacle.getMinBounds();
+        Translation2d oldMax = current.obstacle.getMaxBounds();
+        Translation2d newMin = obstacle.getMinBounds();
+        Translation2d newMax = obstacle.getMaxBounds();
+        refresh(new Translation2d(Math.min(oldMin.getX(), newMin.getX()), Math.min(oldMin.getY(), newMin.getY())),
+                new Translation2d(Math.max(oldMax.getX(), newMax.getX()), Math.max(oldMax.getY(), newMax.getY())));
+        return true;
+    }
+
+    /**
+     * Removes an obstacle
+     *
+     * @return false if there is no obstacle with the id
+     */
+    public synchronized boolean remove(int id) {
+        DynamicObstacle removed = _obstacles.remove(id);
+        if (removed == null)
+            return false;
+
+        _grid.dynamicObstaclesAdded(-1);
+        refresh(removed.obstacle);
+        return true;
+    }
+
+    /**
+     * Removes every obstacle that hasn't been seen within its time to live
+     *
+     * @param time the current time, in seconds
+     * @return the number of obstacles removed
+     */
+    public synchronized int removeExpired(double time) {
+        int removedCount = 0;
+
+        Iterator<DynamicObstacle> iterator = _obstacles.values().iterator();
+        while (iterator.hasNext()) {
+            DynamicObstacle obstacle = iterator.next();
+            if (obstacle.isExpired(time)) {
+                iterator.remove();
+                _grid.dynamicObstaclesAdded(-1);
+                refresh(obstacle.obstacle);
+                removedCount++;
+            }
+        }
+        return removedCount;
+    }
+
+    /** @return the obstacle with the id, or null if there isn't one */
+    public synchronized Obstacle get(int id) {
+        DynamicObstacle obstacle = _obstacles.get(id);
+        return obstacle == null ? null : obstacle.obstacle;
+    }
+
+    /** @return the number of obstacles in this layer */
+    public synchronized int size() {
+        return _obstacles.size();
+    }
+
+    /** Removes every obstacle */
+    public synchronized void clear() {
+        _grid.dynamicObstaclesAdded(-_obstacles.size());
+        ArrayList<DynamicObstacle> removed = new ArrayList<DynamicObstacle>(_obstacles.values());
+        _obstacles.clear();
+        for (DynamicObstacle obstacle : removed)
+            refresh(obstacle.obstacle);
+    }
+
+    private static void checkBounded(Obstacle obstacle) {
+        if (obstacle.getMinBounds() == null || obstacle.getMaxBounds() == null)
+            throw new IllegalArgumentException("Dynamic obstacles must be bounded");
+    }
+
+    /**
+     * Recalculates the clearance of every node within reach of an obstacle from
+     * the static clearance and the dynamic obstacles near it
+     */
+    private void refresh(Obstacle changed) {
+        refresh(changed.getMinBounds(), changed.getMaxBounds());
+    }
+
+    /**
+     * Recalculates the clearance of every node within reach of a box from the
+     * static clearance and the dynamic obstacles near it
+     */
+    private void refresh(Translation2d min, Translation2d max) {
+        double spacing = _grid.getField().config.nodeSpacingMeters;
+        Translation2d origin = _grid.getField().config.bottomLeftPositionMeters;
+
+        int minX = Math.max(0, (int) Math.floor((min.getX() - _reach - origin.getX()) / spacing));
+        int minY = Math.max(0, (int) Math.floor((min.getY() - _reach - origin.getY()) / spacing));
+        int maxX = Math.min(_grid.getWidth() - 1, (int) Math.ceil((max.getX() + _reach - origin.getX()) / spacing));
+        int maxY = Math.min(_grid.getHeight() - 1, (int) Math.ceil((max.getY() + _reach - origin.getY()) / spacing));
+        if (minX > maxX || minY > maxY)
+            return;
+
+        // Only obstacles that can reach the window need to be checked
+        double windowMinX = origin.getX() + minX * spacing - _reach;
+        double windowMinY = origin.getY() + minY * spacing - _reach;
+        double windowMaxX = origin.getX() + maxX * spacing + _reach;
+        double windowMaxY = origin.getY() + maxY * spacing + _reach;
+
+        Obstacle[] nearby = _obstacles.values().stream().map(obstacle -> obstacle.obstacle)
+                .filter(obstacle -> obstacle.getMaxBounds().getX() >= windowMinX
+                        && obstacle.getMinBounds().getX() <= windowMaxX
+                        && obstacle.getMaxBounds().getY() >= windowMinY
+                        && obstacle.getMinBounds().getY() <= windowMaxY)
+                .toArray(Obstacle[]::new);
+
+        int width = _grid.getWidth();
+        int windowWidth = maxX - minX + 1;
+        double[] rowX = new double[windowWidth];
+        for (int x = minX; x <= maxX; x++)
+            rowX[x - minX] = origin.getX() + x * spacing;
+
+        double[] distances = new double[windowWidth];
+        for (int y = minY; y <= maxY; y++) {
+            Arrays.fill(distances, Double.MAX_VALUE);
+
+            double rowY = origin.getY() + y * spacing;
+            for (Obstacle obstacle : nearby)
+                obstacle.minDistancesAlongRow(rowX, rowY, distances);
+
+            for (int x = minX; x <= maxX; x++) {
+                int index = y * width + x;
+                double distance = distances[x - minX];
+                _grid.setClearance(index, (float) Math.min(_staticClearance[index], distance));
+
+                // Dynamic obstacles are physical, so they block sight inside a keep out zone
+                _grid.setInsideOnlyRules(index, _staticInsideOnlyRules.get(index) && distance > 0);
+            }
+        }
+
+        _grid.dynamicNodesChanged(minX, minY, maxX, maxY);
+    }
+}
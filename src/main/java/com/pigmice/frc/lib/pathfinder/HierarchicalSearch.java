@@ -0,0 +1,479 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Hierarchical pathfinding (Botea, Muller and Schaeffer, "Near Optimal
+ * Hierarchical Path-Finding") over a {@link NodeGrid}.
+ * <p>
+ * The grid is split into square clusters. Where two clusters share a border,
+ * each open stretch of the border is split into equal parts of at most
+ * {@link #ENTRANCE_SPACING} nodes with an entrance in the middle of each. The
+ * cheapest paths between the entrances of each cluster are found once, which
+ * makes an abstract graph much smaller than the grid. A query connects the start and
+ * goal to the entrances of their clusters, searches the abstract graph, and
+ * then only searches the grid inside the clusters along the chosen route.
+ * <p>
+ * Paths only cross clusters at entrances, so they can cost slightly more than
+ * A* paths. Queries with the start and goal in the same cluster use A* over
+ * the whole grid.
+ */
+final class HierarchicalSearch {
+    /** The most nodes along a border each entrance covers */
+    private static final int ENTRANCE_SPACING = 4;
+
+    private final NodeGrid _grid;
+    private final int _clusterSize;
+    private final int _clustersX;
+    private final int _clustersY;
+    /** The static version of the grid the abstract graph was built from */
+    private final long _gridVersion;
+
+    /** The abstract node of each grid node, or -1 if it isn't an entrance */
+    private final int[] _abstractNodes;
+    /** The grid index of each abstract node */
+    private final int[] _entrances;
+    /** The abstract nodes in each cluster */
+    private final int[][] _clusterEntrances;
+
+    /** Edges of the abstract graph. The edges of node n are edgeStarts[n] until edgeStarts[n + 1]. */
+    private final int[] _edgeStarts;
+    private final int[] _edgeTargets;
+    private final double[] _edgeCosts;
+
+    /**
+     * Search state of the abstract graph for each thread, reused between queries.
+     * The start and end of a query are the last two nodes.
+     */
+    private final ThreadLocal<SearchWorkspace> _abstractWorkspaces = ThreadLocal
+            .withInitial(() -> new SearchWorkspace(getAbstractNodeCount() + 2));
+
+    /**
+     * Builds the abstract graph of a grid
+     *
+     * @param grid        the grid to search
+     * @param clusterSize the width and height of each cluster, in nodes
+     */
+    HierarchicalSearch(NodeGrid grid, int clusterSize) {
+        _grid = grid;
+        _clusterSize = clusterSize;
+        _clustersX = (grid.getWidth() + clusterSize - 1) / clusterSize;
+        _clustersY = (grid.getHeight() + clusterSize - 1) / clusterSize;
+        _gridVersion = grid.getStaticVersion();
+
+        _abstractNodes = new int[grid.getNodeCount()];
+        Arrays.fill(_abstractNodes, -1);
+
+        EdgeList edges = new EdgeList();
+        findEntrances(edges);
+
+        _entrances = Arrays.copyOf(edges.entrances, edges.entranceCount);
+        _clusterEntrances = new int[_clustersX * _clustersY][];
+        int[] clusterCounts = new int[_clusterEntrances.length];
+        for (int entrance : _entrances)
+            clusterCounts[getCluster(entrance)]++;
+        for (int cluster = 0; cluster < _clusterEntrances.length; cluster++)
+            _clusterEntrances[cluster] = new int[clusterCounts[cluster]];
+        Arrays.fill(clusterCounts, 0);
+        for (int node = 0; node < _entrances.length; node++) {
+            int cluster = getCluster(_entrances[node]);
+            _clusterEntrances[cluster][clusterCounts[cluster]++] = node;
+        }
+
+        connectEntrances(edges);
+
+        // Sort the edges by their source into compressed rows
+        int nodeCount = _entrances.length;
+        _edgeStarts = new int[nodeCount + 1];
+        for (int i = 0; i < edges.edgeCount; i++)
+            _edgeStarts[edges.sources[i] + 1]++;
+        for (int node = 0; node < nodeCount; node++)
+            _edgeStarts[node + 1] += _edgeStarts[node];
+
+        _edgeTargets = new int[edges.edgeCount];
+        _edgeCosts = new double[edges.edgeCount];
+        int[] next = Arrays.copyOf(_edgeStarts, nodeCount);
+        for (int i = 0; i < edges.edgeCount; i++) {
+            int position = next[edges.sources[i]]++;
+            _edgeTargets[position] = edges.targets[i];
+            _edgeCosts[position] = edges.costs[i];
+        }
+    }
+
+    /** Growable lists of the entrances and edges found while building */
+    private static class EdgeList {
+        int[] entrances = new int[64];
+        int entranceCount = 0;
+
+        int[] sources = new int[256];
+        int[] targets = new int[256];
+        double[] costs = new double[256];
+        int edgeCount = 0;
+
+        void addEdge(int source, int target, double cost) {
+            if (edgeCount == sources.length) {
+                sources = Arrays.copyOf(sources, edgeCount * 2);
+                targets = Arrays.copyOf(targets, edgeCount * 2);
+                costs = Arrays.copyOf(costs, edgeCount * 2);
+            }
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            costs[edgeCount] = cost;
+            edgeCount++;
+        }
+    }
+
+    /** @return the static version of the grid this search was built from */
+    long getGridVersion() {
+        return _gridVersion;
+    }
+
+    /** @return the number of nodes in the abstract graph */
+    int getAbstractNodeCount() {
+        return _entrances.length;
+    }
+
+    /** Finds the entrances along every border between two clusters */
+    private void findEntrances(EdgeList edges) {
+        int width = _grid.getWidth();
+        int height = _grid.getHeight();
+
+        // Borders between a cluster and the one to its right
+        for (int x = _clusterSize - 1; x < width - 1; x += _clusterSize) {
+            for (int clusterY = 0; clusterY < _clustersY; clusterY++) {
+                int minY = clusterY * _clusterSize;
+                int maxY = Math.min(height, minY + _clusterSize) - 1;
+                findBorderEntrances(edges, x, minY, 0, 1, maxY - minY + 1, 1, 0);
+            }
+        }
+
+        // Borders between a cluster and the one above it
+        for (int y = _clusterSize - 1; y < height - 1; y += _clusterSize) {
+            for (int clusterX = 0; clusterX < _clustersX; clusterX++) {
+                int minX = clusterX * _clusterSize;
+                int maxX = Math.min(width, minX + _clusterSize) - 1;
+                findBorderEntrances(edges, minX, y, 1, 0, maxX - minX + 1, 0, 1);
+            }
+        }
+    }
+
+    /**
+     * Walks along one border and adds entrances for each stretch of it that is
+     * driveable on both sides
+     *
+     * @param x       the x of the first node on the near side of the border
+     * @param y       the y of the first node on the near side of the border
+     * @param stepX   the x direction along the border
+     * @param stepY   the y direction along the border
+     * @param length  the number of nodes along the border
+     * @param acrossX the x offset from the near side to the far side
+     * @param acrossY the y offset from the near side to the far side
+     */
+    private void findBorderEntrances(EdgeList edges, int x, int y, int stepX, int stepY, int length, int acrossX,
+            int acrossY) {
+        int width = _grid.getWidth();
+        int stretchStart = -1;
+
+        for (int i = 0; i <= length; i++) {
+            boolean open = false;
+            if (i < length) {
+                int near = (y + i * stepY) * width + x + i * stepX;
+                int far = near + acrossY * width + acrossX;
+                open = _grid.isDriveable(near) && _grid.isDriveable(far);
+            }
+
+            if (open && stretchStart < 0) {
+                stretchStart = i;
+            } else if (!open && stretchStart >= 0) {
+                // Split the stretch into equal parts with an entrance in the middle of each
+                int stretchLength = i - stretchStart;
+                int entranceCount = (stretchLength + ENTRANCE_SPACING - 1) / ENTRANCE_SPACING;
+                for (int entrance = 0; entrance < entranceCount; entrance++) {
+                    int position = stretchStart + (2 * entrance + 1) * stretchLength / (2 * entranceCount);
+                    addEntrance(edges, x + position * stepX, y + position * stepY, acrossX, acrossY);
+                }
+                stretchStart = -1;
+            }
+        }
+    }
+
+    /** Adds the nodes on both sides of a border and the edges across it */
+    private void addEntrance(EdgeList edges, int x, int y, int acrossX, int acrossY) {
+        int near = y * _grid.getWidth() + x;
+        int far = (y + acrossY) * _grid.getWidth() + x + acrossX;
+
+        int nearNode = getOrAddAbstractNode(edges, near);
+        int farNode = getOrAddAbstractNode(edges, far);
+
+        edges.addEdge(nearNode, farNode, 1 + _grid.getDistanceWeight(far) * Pathfinder.BIAS_AWAY_FROM_EDGE);
+        edges.addEdge(farNode, nearNode, 1 + _grid.getDistanceWeight(near) * Pathfinder.BIAS_AWAY_FROM_EDGE);
+    }
+
+    private int getOrAddAbstractNode(EdgeList edges, int index) {
+        if (_abstractNodes[index] < 0) {
+            if (edges.entranceCount == edges.entrances.length)
+                edges.entrances = Arrays.copyOf(edges.entrances, edges.entranceCount * 2);
+
+            _abstractNodes[index] = edges.entranceCount;
+            edges.entrances[edges.entranceCount++] = index;
+        }
+        return _abstractNodes[index];
+    }
+
+    /** Finds the cheapest paths between the entrances of each cluster */
+    private void connectEntrances(EdgeList edges) {
+        SearchWorkspace workspace = new SearchWorkspace(_grid.getNodeCount());
+
+        for (int[] entrances : _clusterEntrances) {
+            for (int from : entrances) {
+                searchCluster(workspace, _entrances[from], false);
+                for (int to : entrances) {
+                    if (to != from && workspace.closedSet.get(_entrances[to]))
+                        edges.addEdge(from, to, workspace.gCost[_entrances[to]]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs Dijkstra over the cluster containing a node, leaving the costs in the
+     * workspace
+     *
+     * @param index    the node to start from
+     * @param backward if true, finds the cost from every node to the start instead
+     *                 of from the start to every node
+     */
+    private void searchCluster(SearchWorkspace workspace, int index, boolean backward) {
+        workspace.reset();
+
+        int cluster = getCluster(index);
+        int minX = cluster % _clustersX * _clusterSize;
+        int minY = cluster / _clustersX * _clusterSize;
+        int maxX = minX + _clusterSize - 1;
+        int maxY = minY + _clusterSize - 1;
+
+        IndexedMinHeap openSet = workspace.openSet;
+        workspace.visit(index, 0, 0, -1);
+        openSet.insertOrUpdate(index, 0, 0);
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.pop();
+            workspace.closedSet.set(current);
+            workspace.expandedNodes++;
+
+            int directions = _grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = current + _grid.getNeighborOffset(direction);
+                if (!_grid.isDriveable(neighbor) || workspace.closedSet.get(neighbor)
+                        || !isInside(neighbor, minX, minY, maxX, maxY))
+                    continue;
+
+                // Going backward, the neighbor pays for entering the current node
+                int entered = backward ? current : neighbor;
+                double newMovementCostToNeighbor = workspace.gCost[current] + NodeGrid.NEIGHBOR_STEP[direction]
+                        + _grid.getDistanceWeight(entered) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+                if (newMovementCostToNeighbor < workspace.getGCost(neighbor)) {
+                    workspace.visit(neighbor, newMovementCostToNeighbor, 0, current);
+                    openSet.insertOrUpdate(neighbor, newMovementCostToNeighbor, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds a path by searching the abstract graph and then refining the route
+     * through each cluster
+     *
+     * @return PathfinderResult contains a list of waypoints from currentPos to
+     *         goalPos avoiding obstacles
+     */
+    PathfinderResult findPath(SearchWorkspace workspace, Translation2d currentPos, Translation2d goalPos, int start,
+            int end) {
+        int expandedNodes = 0;
+
+        boolean sameCluster = getCluster(start) == getCluster(end);
+
+        int[] route;
+        if (sameCluster) {
+            route = new int[] { start, end };
+        } else {
+            int abstractCount = _entrances.length;
+            int startNode = abstractCount;
+            int endNode = abstractCount + 1;
+
+            SearchWorkspace abstractWorkspace = _abstractWorkspaces.get();
+            abstractWorkspace.reset();
+            IndexedMinHeap openSet = abstractWorkspace.openSet;
+
+            // Connect the start to the entrances of its cluster
+            searchCluster(workspace, start, false);
+            expandedNodes += workspace.expandedNodes;
+            abstractWorkspace.visit(startNode, 0, getDistance(start, end), -1);
+            abstractWorkspace.closedSet.set(startNode);
+            expandedNodes++;
+            for (int node : _clusterEntrances[getCluster(start)])
+                relax(abstractWorkspace, startNode, node, workspace.getGCost(_entrances[node]), end);
+
+            // The costs from the entrances of the end's cluster to the end stay in the
+            // workspace during the abstract search
+            searchCluster(workspace, end, true);
+            expandedNodes += workspace.expandedNodes;
+            int endCluster = getCluster(end);
+
+            // A* over the abstract graph
+            while (!openSet.isEmpty()) {
+                int current = openSet.pop();
+                abstractWorkspace.closedSet.set(current);
+                expandedNodes++;
+
+                if (current == endNode)
+                    break;
+
+                for (int edge = _edgeStarts[current]; edge < _edgeStarts[current + 1]; edge++)
+                    relax(abstractWorkspace, current, _edgeTargets[edge], _edgeCosts[edge], end);
+                if (getCluster(_entrances[current]) == endCluster)
+                    relax(abstractWorkspace, current, endNode, workspace.getGCost(_entrances[current]), end);
+            }
+
+            if (!abstractWorkspace.closedSet.get(endNode))
+                return new PathfinderResult(false, new ArrayList<Translation2d>(), Double.POSITIVE_INFINITY,
+                        expandedNodes);
+
+            int routeLength = 0;
+            for (int node = endNode; node >= 0; node = abstractWorkspace.parent[node])
+                routeLength++;
+
+            route = new int[routeLength];
+            for (int node = endNode, i = routeLength - 1; node >= 0; node = abstractWorkspace.parent[node], i--)
+                route[i] = node == startNode ? start : node == endNode ? end : _entrances[node];
+        }
+
+        // Refine each step of the route with a search of the grid inside its cluster
+        ArrayList<Node> path = new ArrayList<Node>();
+        path.add(_grid.getNodeAt(start));
+        double pathCost = 0;
+
+        for (int i = 1; i < route.length; i++) {
+            int from = route[i - 1];
+            int to = route[i];
+
+            if (getCluster(from) != getCluster(to)) {
+                // Crossing a border between two entrances
+                pathCost += getDistance(from, to) + _grid.getDistanceWeight(to) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+                path.add(_grid.getNodeAt(to));
+                continue;
+            }
+
+            boolean found = searchWithin(workspace, from, to, sameCluster ? -1 : getCluster(from));
+            expandedNodes += workspace.expandedNodes;
+            if (!found)
+                return new PathfinderResult(false, new ArrayList<Translation2d>(), Double.POSITIVE_INFINITY,
+                        expandedNodes);
+
+            pathCost += workspace.gCost[to];
+            ArrayList<Node> segment = new ArrayList<Node>();
+            for (int node = to; node != from; node = workspace.parent[node])
+                segment.add(_grid.getNodeAt(node));
+            Collections.reverse(segment);
+            path.addAll(segment);
+        }
+
+        ArrayList<Translation2d> simplifiedPath = Pathfinder.simplifyPath(path);
+        simplifiedPath.set(0, currentPos);
+        simplifiedPath.set(simplifiedPath.size() - 1, goalPos);
+
+        return new PathfinderResult(true, simplifiedPath, pathCost, expandedNodes);
+    }
+
+    /** Relaxes an edge of the abstract graph during the abstract search */
+    private void relax(SearchWorkspace abstractWorkspace, int from, int to, double cost, int end) {
+        if (cost == Double.POSITIVE_INFINITY || abstractWorkspace.closedSet.get(to))
+            return;
+
+        double newCost = abstractWorkspace.gCost[from] + cost;
+        if (newCost < abstractWorkspace.getGCost(to)) {
+            int index = to < _entrances.length ? _entrances[to] : end;
+            abstractWorkspace.visit(to, newCost, getDistance(index, end), from);
+            abstractWorkspace.openSet.insertOrUpdate(to, abstractWorkspace.fCost(to), abstractWorkspace.hCost[to]);
+        }
+    }
+
+    /**
+     * Runs A* from start to end, leaving the scores and parents in the workspace
+     *
+     * @param cluster the cluster to stay inside of, or -1 to search the whole grid
+     * @return true if end was reached
+     */
+    private boolean searchWithin(SearchWorkspace workspace, int start, int end, int cluster) {
+        workspace.reset();
+
+        int minX = 0;
+        int minY = 0;
+        int maxX = _grid.getWidth() - 1;
+        int maxY = _grid.getHeight() - 1;
+        if (cluster >= 0) {
+            minX = cluster % _clustersX * _clusterSize;
+            minY = cluster / _clustersX * _clusterSize;
+            maxX = minX + _clusterSize - 1;
+            maxY = minY + _clusterSize - 1;
+        }
+
+        IndexedMinHeap openSet = workspace.openSet;
+        workspace.visit(start, 0, getDistance(start, end), -1);
+        openSet.insertOrUpdate(start, workspace.fCost(start), workspace.hCost[start]);
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.pop();
+            workspace.closedSet.set(current);
+            workspace.expandedNodes++;
+
+            if (current == end)
+                return true;
+            if (workspace.isInterrupted())
+                return false;
+
+            int directions = _grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = current + _grid.getNeighborOffset(direction);
+                if (!_grid.isDriveable(neighbor) || workspace.closedSet.get(neighbor)
+                        || !isInside(neighbor, minX, minY, maxX, maxY))
+                    continue;
+
+                double newMovementCostToNeighbor = workspace.gCost[current] + NodeGrid.NEIGHBOR_STEP[direction]
+                        + _grid.getDistanceWeight(neighbor) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+                if (newMovementCostToNeighbor < workspace.getGCost(neighbor)) {
+                    workspace.visit(neighbor, newMovementCostToNeighbor, getDistance(neighbor, end), current);
+                    openSet.insertOrUpdate(neighbor, workspace.fCost(neighbor), workspace.hCost[neighbor]);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** @return the cluster containing the node with the given index */
+    private int getCluster(int index) {
+        return _grid.getGridY(index) / _clusterSize * _clustersX + _grid.getGridX(index) / _clusterSize;
+    }
+
+    private boolean isInside(int index, int minX, int minY, int maxX, int maxY) {
+        int x = _grid.getGridX(index);
+        int y = _grid.getGridY(index);
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /** @return the octile distance between two nodes */
+    private double getDistance(int indexA, int indexB) {
+        return Pathfinder.getOctileDistance(Math.abs(_grid.getGridX(indexA) - _grid.getGridX(indexB)),
+                Math.abs(_grid.getGridY(indexA) - _grid.getGridY(indexB)));
+    }
+}
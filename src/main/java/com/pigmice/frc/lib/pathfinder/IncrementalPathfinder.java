@@ -0,0 +1,276 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A pathfinder that keeps its search between queries and repairs it when the
+ * robot moves or nodes of the grid change, using D* Lite (Koenig and
+ * Likhachev, "D* Lite"). The search runs backwards from the goal, so moving
+ * the start only changes the heuristic and replanning from a few nodes further
+ * along usually expands almost nothing. Changing the goal throws the search
+ * away and starts again.
+ * <p>
+ * Costs are the same as {@link Pathfinder}: entering a node costs the length of
+ * the step plus its distance weight. Not thread safe, each consumer that
+ * replans should own its own {@link IncrementalPathfinder}, and the grid should
+ * only be changed from that consumer's thread.
+ */
+public class IncrementalPathfinder implements NodeGrid.ChangeListener, AutoCloseable {
+    /** How far apart two primary keys can be and still count as equal */
+    private static final double KEY_TOLERANCE = 1e-9;
+
+    private final NodeGrid _grid;
+
+    /** The cost to reach the goal from each node, as of its last expansion */
+    private final double[] _gCost;
+    /** The one step lookahead of _gCost, based on the gCosts of each node's neighbors */
+    private final double[] _rhs;
+    /** Nodes whose gCost and rhs disagree, keyed on (k1, k2) */
+    private final IndexedMinHeap _openSet;
+
+    private int _start = -1;
+    private int _goal = -1;
+    /** Added to every key so old keys stay valid as the start moves */
+    private double _keyModifier = 0;
+
+    private int _expandedNodes = 0;
+
+    /**
+     * Creates a new {@link IncrementalPathfinder}
+     *
+     * @param grid the grid to search. This pathfinder listens for changes to it
+     *             until {@link #close()} is called.
+     */
+    public IncrementalPathfinder(NodeGrid grid) {
+        _grid = grid;
+
+        int nodeCount = grid.getNodeCount();
+        _gCost = new double[nodeCount];
+        _rhs = new double[nodeCount];
+        _openSet = new IndexedMinHeap(nodeCount);
+
+        grid.addChangeListener(this);
+    }
+
+    /** Stops listening for changes to the grid */
+    @Override
+    public void close() {
+        _grid.removeChangeListener(this);
+    }
+
+    /** @return the grid this pathfinder searches */
+    public NodeGrid getGrid() {
+        return _grid;
+    }
+
+    /**
+     * Finds a path, reusing as much of the previous search as possible
+     * 
+     * @return PathfinderResult contains a list of waypoints from currentPos to
+     *         goalPos avoiding obstacles
+     */
+    public PathfinderResult findPath(Translation2d currentPos, Translation2d goalPos) {
+        int start = _grid.FindCloseIndex(currentPos);
+        int goal = _grid.FindCloseIndex(goalPos);
+
+        if (start == goal || !_grid.isDriveable(start) || !_grid.isDriveable(goal))
+            return new PathfinderResult(false, null);
+
+        if (goal != _goal) {
+            initialize(start, goal);
+        } else if (start != _start) {
+            _keyModifier += getDistance(_start, start);
+            _start = start;
+        }
+
+        _expandedNodes = 0;
+        computeShortestPath();
+
+        ArrayList<Node> nodes = _rhs[start] == Double.POSITIVE_INFINITY ? null : tracePath();
+        if (nodes == null)
+            return new PathfinderResult(false, new ArrayList<Translation2d>(), Double.POSITIVE_INFINITY,
+                    _expandedNodes);
+
+        ArrayList<Translation2d> path = Pathfinder.simplifyPath(nodes);
+        path.set(0, currentPos);
+        path.set(path.size() - 1, goalPos);
+
+        return new PathfinderResult(true, path, _rhs[start], _expandedNodes);
+    }
+
+    /**
+     * Repairs the search after the clearance of nodes in a rectangle of the grid
+     * changed. Cheap when nothing has been searched yet.
+     *
+     * @param minGridX the smallest x of the changed nodes
+     * @param minGridY the smallest y of the changed nodes
+     * @param maxGridX the largest x of the changed nodes
+     * @param maxGridY the largest y of the changed nodes
+     */
+    @Override
+    public void nodesChanged(int minGridX, int minGridY, int maxGridX, int maxGridY) {
+        if (_goal < 0)
+            return;
+
+        // Entering a node is what costs, so a changed node changes the rhs of all
+        // of its neighbors
+        int width = _grid.getWidth();
+        int minX = Math.max(0, minGridX - 1);
+        int minY = Math.max(0, minGridY - 1);
+        int maxX = Math.min(width - 1, maxGridX + 1);
+        int maxY = Math.min(_grid.getHeight() - 1, maxGridY + 1);
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++)
+                updateNode(y * width + x);
+        }
+    }
+
+    /** Forgets the previous search, so the next query starts from scratch */
+    public void reset() {
+        _goal = -1;
+        _start = -1;
+    }
+
+    /** Starts a new search backwards from the goal */
+    private void initialize(int start, int goal) {
+        Arrays.fill(_gCost, Double.POSITIVE_INFINITY);
+        Arrays.fill(_rhs, Double.POSITIVE_INFINITY);
+        _openSet.clear();
+
+        _start = start;
+        _goal = goal;
+        _keyModifier = 0;
+
+        _rhs[goal] = 0;
+        _openSet.insertOrUpdate(goal, getDistance(start, goal), 0);
+    }
+
+    /** Expands nodes until the start's cost is known and consistent */
+    private void computeShortestPath() {
+        while (!_openSet.isEmpty()) {
+            double topKey = _openSet.peekPrimaryKey();
+            double topSecondaryKey = _openSet.peekSecondaryKey();
+            if (_rhs[_start] == _gCost[_start]
+                    && !isLess(topKey, topSecondaryKey, getPrimaryKey(_start), getSecondaryKey(_start)))
+                break;
+
+            int current = _openSet.peek();
+            double newPrimaryKey = getPrimaryKey(current);
+            double newSecondaryKey = getSecondaryKey(current);
+            if (isLess(topKey, topSecondaryKey, newPrimaryKey, newSecondaryKey)) {
+                // Its key is out of date because the start moved
+                _openSet.insertOrUpdate(current, newPrimaryKey, newSecondaryKey);
+                continue;
+            }
+
+            _openSet.pop();
+            _expandedNodes++;
+
+            if (_gCost[current] > _rhs[current]) {
+                _gCost[current] = _rhs[current];
+            } else {
+                _gCost[current] = Double.POSITIVE_INFINITY;
+                updateNode(current);
+            }
+
+            int directions = _grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) != 0)
+                    updateNode(current + _grid.getNeighborOffset(direction));
+            }
+        }
+    }
+
+    /** Recalculates the rhs of a node and puts it in the open set if it changed */
+    private void updateNode(int index) {
+        if (index != _goal) {
+            double rhs = Double.POSITIVE_INFINITY;
+            int directions = _grid.getNeighborDirections(index);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = index + _grid.getNeighborOffset(direction);
+                if (_gCost[neighbor] != Double.POSITIVE_INFINITY)
+                    rhs = Math.min(rhs, getCost(direction, neighbor) + _gCost[neighbor]);
+            }
+            _rhs[index] = rhs;
+        }
+
+        if (_gCost[index] != _rhs[index])
+            _openSet.insertOrUpdate(index, getPrimaryKey(index), getSecondaryKey(index));
+        else
+            _openSet.remove(index);
+    }
+
+    /**
+     * @return the nodes from the start to the goal following the cheapest
+     *         neighbors, or null if they don't lead to the goal
+     */
+    private ArrayList<Node> tracePath() {
+        ArrayList<Node> path = new ArrayList<Node>();
+        int current = _start;
+        path.add(_grid.getNodeAt(current));
+
+        while (current != _goal) {
+            int next = -1;
+            double nextCost = Double.POSITIVE_INFINITY;
+            int directions = _grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = current + _grid.getNeighborOffset(direction);
+                double cost = getCost(direction, neighbor) + _gCost[neighbor];
+                if (cost < nextCost) {
+                    next = neighbor;
+                    nextCost = cost;
+                }
+            }
+
+            if (next < 0 || path.size() > _gCost.length)
+                return null;
+
+            current = next;
+            path.add(_grid.getNodeAt(current));
+        }
+        return path;
+    }
+
+    /** @return the cost of stepping in a direction into the neighbor */
+    private double getCost(int direction, int to) {
+        if (!_grid.isDriveable(to))
+            return Double.POSITIVE_INFINITY;
+        return NodeGrid.NEIGHBOR_STEP[direction] + _grid.getDistanceWeight(to) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+    }
+
+    /**
+     * @return if the key (primaryA, secondaryA) comes before (primaryB,
+     *         secondaryB). Primary keys that only differ by rounding error are
+     *         treated as equal, otherwise a node reached along an equally short
+     *         path in a different order can look like it doesn't matter.
+     */
+    private static boolean isLess(double primaryA, double secondaryA, double primaryB, double secondaryB) {
+        if (Math.abs(primaryA - primaryB) > KEY_TOLERANCE)
+            return primaryA < primaryB;
+        return secondaryA < secondaryB;
+    }
+
+    private double getPrimaryKey(int index) {
+        return getSecondaryKey(index) + getDistance(_start, index) + _keyModifier;
+    }
+
+    private double getSecondaryKey(int index) {
+        return Math.min(_gCost[index], _rhs[index]);
+    }
+
+    /** @return the octile distance between two nodes */
+    private double getDistance(int indexA, int indexB) {
+        return Pathfinder.getOctileDistance(Math.abs(_grid.getGridX(indexA) - _grid.getGridX(indexB)),
+                Math.abs(_grid.getGridY(indexA) - _grid.getGridY(indexB)));
+    }
+}
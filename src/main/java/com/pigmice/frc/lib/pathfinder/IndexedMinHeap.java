@@ -0,0 +1,174 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of integer items (node indices) with support for changing
+ * the key of an item that is already in the heap. Items are ordered by their
+ * primary key, with ties broken by the secondary key.
+ */
+class IndexedMinHeap {
+    private final int[] _heap;
+    private final int[] _positions;
+
+    private final double[] _primaryKeys;
+    private final double[] _secondaryKeys;
+
+    private int _size = 0;
+
+    /**
+     * Creates a new {@link IndexedMinHeap}
+     *
+     * @param capacity the number of distinct items this heap can hold, items must
+     *                 be in the range [0, capacity)
+     */
+    IndexedMinHeap(int capacity) {
+        _heap = new int[capacity];
+        _positions = new int[capacity];
+        _primaryKeys = new double[capacity];
+        _secondaryKeys = new double[capacity];
+
+        Arrays.fill(_positions, -1);
+    }
+
+    /** @return the number of items this heap can hold */
+    int capacity() {
+        return _heap.length;
+    }
+
+    /** @return the number of items currently in this heap */
+    int size() {
+        return _size;
+    }
+
+    /** @return true if there are no items in this heap */
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** @return true if the item is currently in this heap */
+    boolean contains(int item) {
+        return _positions[item] >= 0;
+    }
+
+    /** Removes every item from this heap in O(size) time */
+    void clear() {
+        for (int i = 0; i < _size; i++)
+            _positions[_heap[i]] = -1;
+        _size = 0;
+    }
+
+    /**
+     * Adds an item to this heap, or moves it to its new position if it is already
+     * in the heap
+     *
+     * @param item         the item to add or update
+     * @param primaryKey   the key the heap is ordered by
+     * @param secondaryKey the key used to break ties between equal primary keys
+     */
+    void insertOrUpdate(int item, double primaryKey, double secondaryKey) {
+        _primaryKeys[item] = primaryKey;
+        _secondaryKeys[item] = secondaryKey;
+
+        int position = _positions[item];
+        if (position < 0) {
+            position = _size++;
+            _heap[position] = item;
+            _positions[item] = position;
+            siftUp(position);
+        } else {
+            siftDown(siftUp(position));
+        }
+    }
+
+    /** @return the item with the smallest key without removing it */
+    int peek() {
+        return _heap[0];
+    }
+
+    /** @return the primary key of the item with the smallest key */
+    double peekPrimaryKey() {
+        return _primaryKeys[_heap[0]];
+    }
+
+    /** @return the secondary key of the item with the smallest key */
+    double peekSecondaryKey() {
+        return _secondaryKeys[_heap[0]];
+    }
+
+    /** Removes and returns the item with the smallest key */
+    int pop() {
+        int top = _heap[0];
+        removeAt(0);
+        return top;
+    }
+
+    /** Removes an item from this heap if it is present */
+    void remove(int item) {
+        int position = _positions[item];
+        if (position >= 0)
+            removeAt(position);
+    }
+
+    private void removeAt(int position) {
+        int removed = _heap[position];
+        _positions[removed] = -1;
+        _size--;
+
+        if (position == _size)
+            return;
+
+        int last = _heap[_size];
+        _heap[position] = last;
+        _positions[last] = position;
+        siftDown(siftUp(position));
+    }
+
+    /** @return true if the item at heap position a should be above position b */
+    private boolean less(int a, int b) {
+        int itemA = _heap[a];
+        int itemB = _heap[b];
+        if (_primaryKeys[itemA] != _primaryKeys[itemB])
+            return _primaryKeys[itemA] < _primaryKeys[itemB];
+        return _secondaryKeys[itemA] < _secondaryKeys[itemB];
+    }
+
+    private int siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!less(position, parent))
+                break;
+            swap(position, parent);
+            position = parent;
+        }
+        return position;
+    }
+
+    private int siftDown(int position) {
+        while (true) {
+            int left = 2 * position + 1;
+            if (left >= _size)
+                break;
+
+            int smallest = left;
+            int right = left + 1;
+            if (right < _size && less(right, left))
+                smallest = right;
+
+            if (!less(smallest, position))
+                break;
+            swap(position, smallest);
+            position = smallest;
+        }
+        return position;
+    }
+
+    private void swap(int a, int b) {
+        int itemA = _heap[a];
+        int itemB = _heap[b];
+        _heap[a] = itemB;
+        _heap[b] = itemA;
+        _positions[itemB] = a;
+        _positions[itemA] = b;
+    }
+}
@@ -0,0 +1,270 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+
+/**
+ * Jump Point Search over a {@link NodeGrid} (Harabor and Grastien, "Online
+ * Graph Pruning for Pathfinding on Grid Maps").
+ * <p>
+ * JPS is only valid where every move costs the same, so it is restricted to
+ * open nodes: nodes that are driveable, have no distance weight, and are
+ * surrounded by nodes that are too. Jumps pass straight through open nodes and
+ * stop at the first node that isn't open. Nodes that aren't open, which is the
+ * weighted band near obstacles, are expanded in all eight directions like
+ * normal A*. Paths have the same cost as A* on the same grid.
+ * <p>
+ * Open nodes never have forced neighbors, so the only nodes added to the open
+ * set are the start, the end and the nodes where jumps enter the band. Which
+ * nodes are open and how far a straight jump goes from every node are found
+ * when the search is built, so jumps don't rescan the grid (as in JPS+).
+ */
+final class JumpPointSearch {
+    /** The straight directions, in the order of the jump tables */
+    private static final int[] STRAIGHT_X = { 1, -1, 0, 0 };
+    private static final int[] STRAIGHT_Y = { 0, 0, 1, -1 };
+
+    private final NodeGrid _grid;
+    /** The static version of the grid the tables were built from */
+    private final long _gridVersion;
+
+    private final int _width;
+    private final int _height;
+
+    /** If each node and all of its neighbors are driveable and have no distance weight */
+    private final boolean[] _open;
+    /**
+     * For each straight direction and node, the number of steps to the first
+     * node that isn't open or is off the grid
+     */
+    private final int[][] _straightSteps = new int[4][];
+
+    /**
+     * Finds the open nodes of a grid and the straight jumps from every node
+     *
+     * @param grid the grid to search
+     */
+    JumpPointSearch(NodeGrid grid) {
+        _grid = grid;
+        _gridVersion = grid.getStaticVersion();
+        _width = grid.getWidth();
+        _height = grid.getHeight();
+
+        _open = new boolean[_width * _height];
+        for (int y = 1; y < _height - 1; y++) {
+            for (int x = 1; x < _width - 1; x++)
+                _open[y * _width + x] = isOpen(x, y);
+        }
+
+        for (int direction = 0; direction < 4; direction++) {
+            int dx = STRAIGHT_X[direction];
+            int dy = STRAIGHT_Y[direction];
+            int[] steps = new int[_width * _height];
+
+            // Walk against the direction, so the next node along it is already known
+            int startX = dx > 0 ? _width - 1 : 0;
+            int startY = dy > 0 ? _height - 1 : 0;
+            int stepX = dx > 0 ? -1 : 1;
+            int stepY = dy > 0 ? -1 : 1;
+            for (int y = startY; y >= 0 && y < _height; y += stepY) {
+                for (int x = startX; x >= 0 && x < _width; x += stepX) {
+                    int nextX = x + dx;
+                    int nextY = y + dy;
+                    int next = nextY * _width + nextX;
+                    boolean nextOpen = nextX >= 0 && nextX < _width && nextY >= 0 && nextY < _height && _open[next];
+                    steps[y * _width + x] = nextOpen ? steps[next] + 1 : 1;
+                }
+            }
+            _straightSteps[direction] = steps;
+        }
+    }
+
+    /** @return the static version of the grid this search was built from */
+    long getGridVersion() {
+        return _gridVersion;
+    }
+
+    /**
+     * Runs JPS from start to end, leaving the scores and parents of the jump
+     * points in the workspace
+     *
+     * @return true if end was reached
+     */
+    boolean search(SearchWorkspace workspace, int start, int end) {
+        workspace.reset();
+
+        IndexedMinHeap openSet = workspace.openSet;
+
+        workspace.visit(start, 0, getDistance(start, end), -1);
+        openSet.insertOrUpdate(start, workspace.fCost(start), workspace.hCost[start]);
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.pop();
+            workspace.closedSet.set(current);
+            workspace.expandedNodes++;
+
+            if (current == end)
+                return true;
+            if (workspace.isInterrupted())
+                return false;
+
+            int x = current % _width;
+            int y = current / _width;
+            int parent = workspace.parent[current];
+
+            if (parent < 0 || !_open[current]) {
+                for (int direction = 0; direction < 8; direction++)
+                    addJump(workspace, current, x, y, NodeGrid.NEIGHBOR_X[direction], NodeGrid.NEIGHBOR_Y[direction],
+                            end);
+                continue;
+            }
+
+            // Every neighbor of an open node is open, so only the natural neighbors in
+            // the direction of travel need to be searched
+            int dx = Integer.signum(x - parent % _width);
+            int dy = Integer.signum(y - parent / _width);
+
+            addJump(workspace, current, x, y, dx, dy, end);
+            if (dx != 0 && dy != 0) {
+                addJump(workspace, current, x, y, dx, 0, end);
+                addJump(workspace, current, x, y, 0, dy, end);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Jumps from a node in one direction and adds the jump points it finds to the
+     * open set.
+     * <p>
+     * A straight jump only finds the node where it leaves the open area. A
+     * diagonal jump doesn't stop where the straight jumps from its nodes leave
+     * the open area, because the open area is always enclosed by the weighted
+     * band and that would stop it after every step. Instead each node it passes
+     * is scored without being added to the open set, the nodes its straight
+     * jumps find are added with it as their parent, and the diagonal keeps going
+     * until it leaves the open area itself.
+     */
+    private void addJump(SearchWorkspace workspace, int current, int x, int y, int dx, int dy, int end) {
+        if (dx == 0 || dy == 0) {
+            addJumpPoint(workspace, current, jump(x, y, dx, dy, end), end);
+            return;
+        }
+
+        int from = current;
+        while (true) {
+            x += dx;
+            y += dy;
+
+            if (x < 0 || x >= _width || y < 0 || y >= _height)
+                return;
+
+            int index = y * _width + x;
+            if (!_grid.isDriveable(index))
+                return;
+
+            if (index == end || !_open[index]) {
+                addJumpPoint(workspace, from, index, end);
+                return;
+            }
+
+            // The diagonal node is scored like a jump point but never expanded. If
+            // another jump already reached it more cheaply, continue from that cost,
+            // unless that jump was a diagonal in the same direction, which has
+            // already searched everything past here.
+            double newMovementCostToIndex = workspace.gCost[from] + Pathfinder.getOctileDistance(1, 1);
+            if (newMovementCostToIndex < workspace.getGCost(index))
+                workspace.visit(index, newMovementCostToIndex, getDistance(index, end), from);
+            else if (workspace.parent[index] == index - dy * _width - dx)
+                return;
+            from = index;
+
+            addJumpPoint(workspace, index, jump(x, y, dx, 0, end), end);
+            addJumpPoint(workspace, index, jump(x, y, 0, dy, end), end);
+        }
+    }
+
+    /** Adds a jump point found from a node to the open set if it is cheaper to reach that way */
+    private void addJumpPoint(SearchWorkspace workspace, int from, int jumpPoint, int end) {
+        if (jumpPoint < 0 || workspace.closedSet.get(jumpPoint))
+            return;
+
+        // Every node jumped over was open, so only the jump point can have a weight
+        double newMovementCostToJumpPoint = workspace.gCost[from] + getDistance(from, jumpPoint);
+        newMovementCostToJumpPoint += _grid.getDistanceWeight(jumpPoint) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+        if (newMovementCostToJumpPoint < workspace.getGCost(jumpPoint)) {
+            workspace.visit(jumpPoint, newMovementCostToJumpPoint, getDistance(jumpPoint, end), from);
+            workspace.openSet.insertOrUpdate(jumpPoint, workspace.fCost(jumpPoint), workspace.hCost[jumpPoint]);
+        }
+    }
+
+    /**
+     * @return the node where a straight jump from (x, y) in direction (dx, dy)
+     *         leaves the open area or reaches the end, or -1 if it hits an
+     *         undriveable node or the edge of the grid first
+     */
+    private int jump(int x, int y, int dx, int dy, int end) {
+        int direction = dx > 0 ? 0 : dx < 0 ? 1 : dy > 0 ? 2 : 3;
+        int steps = _straightSteps[direction][y * _width + x];
+
+        // The end is reached first if it is on the way
+        int endX = end % _width;
+        int endY = end / _width;
+        int endSteps = dx != 0 ? (endX - x) * dx : (endY - y) * dy;
+        boolean inLine = dx != 0 ? endY == y : endX == x;
+        if (inLine && endSteps > 0 && endSteps <= steps)
+            return end;
+
+        int stopX = x + dx * steps;
+        int stopY = y + dy * steps;
+        if (stopX < 0 || stopX >= _width || stopY < 0 || stopY >= _height)
+            return -1;
+
+        int stop = stopY * _width + stopX;
+        return _grid.isDriveable(stop) ? stop : -1;
+    }
+
+    /**
+     * @return if the node and all of its neighbors are driveable and have no
+     *         distance weight
+     */
+    private boolean isOpen(int x, int y) {
+        for (int checkY = y - 1; checkY <= y + 1; checkY++) {
+            for (int checkX = x - 1; checkX <= x + 1; checkX++) {
+                int index = checkY * _width + checkX;
+                if (!_grid.isDriveable(index) || _grid.getDistanceWeight(index) != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return the octile distance between two nodes */
+    private double getDistance(int indexA, int indexB) {
+        return Pathfinder.getOctileDistance(Math.abs(indexA % _width - indexB % _width),
+                Math.abs(indexA / _width - indexB / _width));
+    }
+
+    /**
+     * @return the path with the nodes between each pair of jump points filled in
+     */
+    static ArrayList<Node> fillJumps(NodeGrid grid, ArrayList<Node> jumpPoints) {
+        ArrayList<Node> path = new ArrayList<Node>();
+        path.add(jumpPoints.get(0));
+
+        for (int i = 1; i < jumpPoints.size(); i++) {
+            Node from = jumpPoints.get(i - 1);
+            Node to = jumpPoints.get(i);
+
+            int dx = Integer.signum(to.gridX - from.gridX);
+            int dy = Integer.signum(to.gridY - from.gridY);
+            int x = from.gridX;
+            int y = from.gridY;
+            while (x != to.gridX || y != to.gridY) {
+                x += dx;
+                y += dy;
+                path.add(grid.getNodeAt(x, y));
+            }
+        }
+        return path;
+    }
+}
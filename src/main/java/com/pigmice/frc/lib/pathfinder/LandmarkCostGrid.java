@@ -0,0 +1,114 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The cost to drive from every node of a {@link NodeGrid} to one fixed node,
+ * like a scoring location or substation. Built once with a backwards Dijkstra
+ * search, after which the path from any node is found by repeatedly stepping
+ * to the neighbor that lowers the remaining cost the most, without searching.
+ * <p>
+ * Costs are the same as {@link Pathfinder}: entering a node costs the length of
+ * the step plus its distance weight.
+ */
+public final class LandmarkCostGrid {
+    private LandmarkCostGrid() {
+    }
+
+    /**
+     * Calculates the cost of the cheapest path from every node to the landmark
+     *
+     * @param grid          the grid to search
+     * @param landmarkIndex the index of the landmark's node
+     * @return the cost from each node to the landmark, indexed by gridY * width +
+     *         gridX. Infinity for nodes that can't reach it.
+     */
+    public static float[] generate(NodeGrid grid, int landmarkIndex) {
+        int nodeCount = grid.getNodeCount();
+
+        double[] costs = new double[nodeCount];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+
+        if (grid.isDriveable(landmarkIndex)) {
+            IndexedMinHeap openSet = new IndexedMinHeap(nodeCount);
+            costs[landmarkIndex] = 0;
+            openSet.insertOrUpdate(landmarkIndex, 0, 0);
+
+            while (!openSet.isEmpty()) {
+                int current = openSet.pop();
+
+                // Every neighbor pays for entering the current node to get here
+                double enterCost = grid.getDistanceWeight(current) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+                int directions = grid.getNeighborDirections(current);
+                for (int direction = 0; direction < 8; direction++) {
+                    if ((directions & (1 << direction)) == 0)
+                        continue;
+
+                    int neighbor = current + grid.getNeighborOffset(direction);
+                    if (!grid.isDriveable(neighbor))
+                        continue;
+
+                    double cost = costs[current] + NodeGrid.NEIGHBOR_STEP[direction] + enterCost;
+                    if (cost < costs[neighbor]) {
+                        costs[neighbor] = cost;
+                        openSet.insertOrUpdate(neighbor, cost, 0);
+                    }
+                }
+            }
+        }
+
+        float[] result = new float[nodeCount];
+        for (int i = 0; i < nodeCount; i++)
+            result[i] = (float) costs[i];
+        return result;
+    }
+
+    /**
+     * Follows the costs downhill from a node to the landmark
+     *
+     * @param grid  the grid the costs were generated from
+     * @param costs the costs of the landmark
+     * @param start the index of the node to start from
+     * @return the nodes from start to the landmark, or null if the landmark can't
+     *         be reached
+     */
+    public static ArrayList<Node> descend(NodeGrid grid, float[] costs, int start) {
+        if (costs[start] == Float.POSITIVE_INFINITY || !grid.isDriveable(start))
+            return null;
+
+        ArrayList<Node> path = new ArrayList<Node>();
+        int current = start;
+        path.add(grid.getNodeAt(current));
+
+        while (costs[current] != 0) {
+            int next = -1;
+            double nextCost = Double.POSITIVE_INFINITY;
+            int directions = grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = current + grid.getNeighborOffset(direction);
+                if (!grid.isDriveable(neighbor))
+                    continue;
+
+                double cost = costs[neighbor] + NodeGrid.NEIGHBOR_STEP[direction]
+                        + grid.getDistanceWeight(neighbor) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+                if (cost < nextCost) {
+                    next = neighbor;
+                    nextCost = cost;
+                }
+            }
+
+            // Each step costs at least one, so the cost always goes down unless the
+            // costs don't belong to this grid
+            if (next < 0 || costs[next] >= costs[current])
+                return null;
+
+            current = next;
+            path.add(grid.getNodeAt(current));
+        }
+        return path;
+    }
+}
@@ -16,15 +16,6 @@ public class Node {
 
     public final boolean driveable;
 
-    public double gCost;
-    public double hCost;
-
-    public double fCost() {
-        return gCost + hCost;
-    }
-
-    public Node parent;
-
     /**
      * A single node representing a real life position to use in pathfinding
      * 
@@ -55,4 +46,21 @@ public class Node {
                 ? MathUtil.interpolate(1, 0, edgeToBumperDistance / distanceCutoff)
                 : 0;
     }
+
+    /**
+     * A view of a node whose values have already been calculated by a
+     * {@link NodeGrid}
+     */
+    Node(int gridX, int gridY, Translation2d fieldPos, double edgeToCenterDistance, double edgeToBumperDistance,
+            double distanceWeight, boolean driveable) {
+        this.gridX = gridX;
+        this.gridY = gridY;
+        this.fieldPos = fieldPos;
+
+        this.edgeToCenterDistance = edgeToCenterDistance;
+        this.edgeToBumperDistance = edgeToBumperDistance;
+
+        this.distanceWeight = distanceWeight;
+        this.driveable = driveable;
+    }
 }
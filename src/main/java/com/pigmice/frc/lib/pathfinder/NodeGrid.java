@@ -3,67 +3,240 @@ package com.pigmice.frc.lib.pathfinder;
 import java.util.ArrayList;
 
 import com.pigmice.frc.lib.pathfinder.field_loading.Field;
-import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator;
 
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Translation2d;
 
+/**
+ * A grid of nodes covering the field, as seen by a robot of one width. Node
+ * data is stored in flat arrays indexed by gridY * width + gridX rather than as
+ * individual objects; {@link Node} instances returned from this grid are
+ * lightweight views created on demand.
+ * <p>
+ * The clearances come from a {@link ClearanceGrid} that can be shared with the
+ * grids of other robot widths. Driveability and distance weights are derived
+ * from the clearance and the robot width when they are read, so each grid
+ * only adds a few fields on top of the shared clearances.
+ */
 public class NodeGrid {
-    private final Field _field;
+    /** Notified when the clearance of a rectangle of nodes changes */
+    public interface ChangeListener {
+        /**
+         * Called after the clearance of every node in the rectangle may have changed
+         *
+         * @param minGridX the smallest x of the changed nodes
+         * @param minGridY the smallest y of the changed nodes
+         * @param maxGridX the largest x of the changed nodes
+         * @param maxGridY the largest y of the changed nodes
+         */
+        void nodesChanged(int minGridX, int minGridY, int maxGridX, int maxGridY);
+    }
+
+    /** The x offsets of the eight neighbor directions */
+    static final int[] NEIGHBOR_X = { 1, 1, 0, -1, -1, -1, 0, 1 };
+    /** The y offsets of the eight neighbor directions */
+    static final int[] NEIGHBOR_Y = { 0, 1, 1, 1, 0, -1, -1, -1 };
+    /** The length of a step in each of the eight neighbor directions, in nodes */
+    static final double[] NEIGHBOR_STEP = { 1, Math.sqrt(2), 1, Math.sqrt(2), 1, Math.sqrt(2), 1, Math.sqrt(2) };
 
-    private final Node[][] _nodes;
+    /** The directions that leave the grid from a node on each of its edges */
+    private static final int LEFT_DIRECTIONS = getDirections(NEIGHBOR_X, -1);
+    private static final int RIGHT_DIRECTIONS = getDirections(NEIGHBOR_X, 1);
+    private static final int BOTTOM_DIRECTIONS = getDirections(NEIGHBOR_Y, -1);
+    private static final int TOP_DIRECTIONS = getDirections(NEIGHBOR_Y, 1);
+
+    private final Field _field;
 
     private final int _numNodesX;
     private final int _numNodesY;
 
+    private final double _originX;
+    private final double _originY;
+    private final double _nodeSpacing;
+
+    private final double _robotWidth;
+
+    /** The difference in index to the neighbor in each direction */
+    private final int[] _neighborOffsets = new int[8];
+
+    /** Half the robot width, the clearance a node needs to be driveable */
+    private final double _halfRobotWidth;
+
+    private final ClearanceGrid _clearanceGrid;
+    /** The clearances of the shared grid, read directly by searches */
+    private final float[] _clearance;
+
     /**
      * Creates a new {@link NodeGrid}
-     * 
+     *
      * @param robotWidth the width of the robot including the bumper
      * @param field      the field to generate nodes from
      */
     public NodeGrid(double robotWidth, Field field) {
+        this(robotWidth, field, false);
+    }
+
+    /**
+     * Creates a new {@link NodeGrid}
+     *
+     * @param robotWidth    the width of the robot including the bumper
+     * @param field         the field to generate nodes from
+     * @param parallelBuild if true, the distance to the nearest obstacle is
+     *                      calculated for bands of rows in parallel. The grid is
+     *                      identical to one built serially.
+     */
+    public NodeGrid(double robotWidth, Field field, boolean parallelBuild) {
+        this(robotWidth, new ClearanceGrid(field, parallelBuild));
+    }
+
+    /**
+     * Creates a new {@link NodeGrid} from clearances that have already been
+     * calculated, for example by
+     * {@link com.pigmice.frc.lib.pathfinder.field_loading.DistanceTransform} or
+     * loaded from a {@link com.pigmice.frc.lib.pathfinder.field_loading.FieldCache}
+     *
+     * @param robotWidth the width of the robot including the bumper
+     * @param field      the field to generate nodes from
+     * @param clearance  the distance from each node to the nearest obstacle,
+     *                   indexed by gridY * width + gridX
+     */
+    public NodeGrid(double robotWidth, Field field, float[] clearance) {
+        this(robotWidth, new ClearanceGrid(field, clearance));
+    }
+
+    /**
+     * Creates a new {@link NodeGrid} that shares its clearances with every other
+     * grid made from the same {@link ClearanceGrid}
+     *
+     * @param robotWidth    the width of the robot including the bumper
+     * @param clearanceGrid the distance from each node to the nearest obstacle
+     */
+    public NodeGrid(double robotWidth, ClearanceGrid clearanceGrid) {
+        Field field = clearanceGrid.getField();
         this._field = field;
+        this._robotWidth = robotWidth;
+        _halfRobotWidth = robotWidth / 2d;
 
-        _numNodesX = (int) (field.config.fieldSizeMeters.getX() / field.config.nodeSpacingMeters);
-        _numNodesY = (int) (field.config.fieldSizeMeters.getY() / field.config.nodeSpacingMeters);
+        _clearanceGrid = clearanceGrid;
+        _clearance = clearanceGrid.getClearances();
+
+        _numNodesX = clearanceGrid.getWidth();
+        _numNodesY = clearanceGrid.getHeight();
+
+        _originX = field.config.bottomLeftPositionMeters.getX();
+        _originY = field.config.bottomLeftPositionMeters.getY();
+        _nodeSpacing = field.config.nodeSpacingMeters;
+
+        for (int direction = 0; direction < 8; direction++)
+            _neighborOffsets[direction] = NEIGHBOR_Y[direction] * _numNodesX + NEIGHBOR_X[direction];
 
         // TODO: Center nodes within the field
         // Translation2d centerOffset = new Translation2d(fieldSize.getX() %
         // nodeSpacing, fieldSize.getY() % nodeSpacing);
         // this.bottomRightPosition = bottomRightPosition.plus(centerOffset.div(2d));
+    }
 
-        _nodes = new Node[_numNodesX][_numNodesY];
+    /**
+     * Sets the clearance of a node in the shared {@link ClearanceGrid}, which
+     * changes it for every grid sharing it. Call
+     * {@link #nodesChanged(int, int, int, int)} once all the changed nodes have
+     * been set.
+     *
+     * @param index     the index of the node
+     * @param clearance the new distance from the node to the nearest obstacle
+     */
+    public void setClearance(int index, float clearance) {
+        _clearanceGrid.setClearance(index, clearance);
+    }
 
-        for (int x = 0; x < _numNodesX; x++) {
-            for (int y = 0; y < _numNodesY; y++) {
-                Translation2d fieldPos = GridToFieldPos(x, y);
-                double distanceFromEdge = SDFGenerator.getDistanceFromNearestObstacle(field, fieldPos);
-                _nodes[x][y] = new Node(x, y, fieldPos, distanceFromEdge, Pathfinder.DISTANCE_CUTOFF, robotWidth);
-            }
-        }
+    /**
+     * Tells everything depending on the shared {@link ClearanceGrid} that the
+     * clearance of a rectangle of nodes changed, and increments its version
+     *
+     * @param minGridX the smallest x of the changed nodes
+     * @param minGridY the smallest y of the changed nodes
+     * @param maxGridX the largest x of the changed nodes
+     * @param maxGridY the largest y of the changed nodes
+     */
+    public void nodesChanged(int minGridX, int minGridY, int maxGridX, int maxGridY) {
+        _clearanceGrid.nodesChanged(minGridX, minGridY, maxGridX, maxGridY);
+    }
+
+    /**
+     * Registers a listener to be called whenever nodes of this grid change,
+     * including changes made through other grids sharing its clearances
+     */
+    public void addChangeListener(ChangeListener listener) {
+        _clearanceGrid.addChangeListener(listener);
+    }
+
+    /** Unregisters a listener added with {@link #addChangeListener(ChangeListener)} */
+    public void removeChangeListener(ChangeListener listener) {
+        _clearanceGrid.removeChangeListener(listener);
+    }
+
+    /**
+     * @return a number that changes every time nodes of this grid change, so
+     *         results computed from the grid can tell if they are stale
+     */
+    public long getVersion() {
+        return _clearanceGrid.getVersion();
+    }
+
+    /** @see ClearanceGrid#getStaticVersion() */
+    public long getStaticVersion() {
+        return _clearanceGrid.getStaticVersion();
+    }
+
+    /** @return the clearances this grid shares with grids of other robot widths */
+    public ClearanceGrid getClearanceGrid() {
+        return _clearanceGrid;
     }
 
     /** @return the field position of the given grid position */
     private Translation2d GridToFieldPos(int gridX, int gridY) {
-        return _field.config.bottomLeftPositionMeters
-                .plus(new Translation2d(gridX, gridY).times(_field.config.nodeSpacingMeters));
+        return new Translation2d(_originX + gridX * _nodeSpacing, _originY + gridY * _nodeSpacing);
     }
 
-    /** @return the closest node to the given position (clamped to be in bounds) */
-    public Node FindCloseNode(Translation2d position) {
-        int x = (int) Math.round(
-                (position.getX() - _field.config.bottomLeftPositionMeters.getX()) / _field.config.nodeSpacingMeters);
-        int y = (int) Math.round(
-                (position.getY() - _field.config.bottomLeftPositionMeters.getY()) / _field.config.nodeSpacingMeters);
+    /** @return the field position of the node with the given index */
+    public Translation2d getFieldPos(int index) {
+        return GridToFieldPos(getGridX(index), getGridY(index));
+    }
+
+    /**
+     * @return the index of the closest node to the given position (clamped to be
+     *         in bounds)
+     */
+    public int FindCloseIndex(Translation2d position) {
+        return FindCloseIndex(position.getX(), position.getY());
+    }
+
+    /**
+     * @return the index of the closest node to the given field position (clamped
+     *         to be in bounds)
+     */
+    public int FindCloseIndex(double fieldX, double fieldY) {
+        int x = (int) Math.round((fieldX - _originX) / _nodeSpacing);
+        int y = (int) Math.round((fieldY - _originY) / _nodeSpacing);
 
         // Clamp position to be in bounds
-        x = MathUtil.clamp(x, 0, _nodes.length - 1);
-        y = MathUtil.clamp(y, 0, _nodes[0].length - 1);
-        return _nodes[x][y];
+        x = MathUtil.clamp(x, 0, _numNodesX - 1);
+        y = MathUtil.clamp(y, 0, _numNodesY - 1);
+        return y * _numNodesX + x;
+    }
+
+    /** @return the closest node to the given position (clamped to be in bounds) */
+    public Node FindCloseNode(Translation2d position) {
+        return getNodeAt(FindCloseIndex(position));
     }
 
-    /** @return a list of all the nodes within a 3x3 square of the center */
+    /**
+     * @return a list of all the nodes within a 3x3 square of the center
+     * @deprecated allocates a list and a node for every neighbor. Searches should
+     *             use {@link #getNeighborDirections(int)} and
+     *             {@link #getNeighborOffset(int)} instead.
+     */
+    @Deprecated
     public ArrayList<Node> GetNeighbors(Node center) {
         ArrayList<Node> neighbors = new ArrayList<Node>();
 
@@ -75,8 +248,8 @@ public class NodeGrid {
                 int checkX = center.gridX + x;
                 int checkY = center.gridY + y;
 
-                if (checkX >= 0 && checkX < _nodes.length && checkY >= 0 && checkY < _nodes[0].length)
-                    neighbors.add(_nodes[checkX][checkY]);
+                if (checkX >= 0 && checkX < _numNodesX && checkY >= 0 && checkY < _numNodesY)
+                    neighbors.add(getNodeAt(checkY * _numNodesX + checkX));
             }
         }
         return neighbors;
@@ -92,11 +265,327 @@ public class NodeGrid {
         return _numNodesY;
     }
 
+    /** @return the real life distance between adjacent nodes */
+    public double getNodeSpacing() {
+        return _nodeSpacing;
+    }
+
+    /** @return the field this grid was generated from */
+    public Field getField() {
+        return _field;
+    }
+
+    /** @return the width of the robot including bumpers this grid was built for */
+    public double getRobotWidth() {
+        return _robotWidth;
+    }
+
     /** @return the node at (x, y) clamped to be instide the grid */
     public Node getNodeAt(int x, int y) {
         x = MathUtil.clamp(x, 0, _numNodesX - 1);
         y = MathUtil.clamp(y, 0, _numNodesY - 1);
 
-        return _nodes[x][y];
+        return getNodeAt(y * _numNodesX + x);
+    }
+
+    /** @return a view of the node with the given index */
+    public Node getNodeAt(int index) {
+        int x = getGridX(index);
+        int y = getGridY(index);
+        double clearance = _clearance[index];
+
+        return new Node(x, y, GridToFieldPos(x, y), clearance, clearance - _halfRobotWidth,
+                getDistanceWeight(index), isDriveable(index));
+    }
+
+    /** @return the index of the given node, equal to gridY * width + gridX */
+    public int getIndex(Node node) {
+        return node.gridY * _numNodesX + node.gridX;
+    }
+
+    /** @return the x position within the grid of the given index */
+    public int getGridX(int index) {
+        return index % _numNodesX;
+    }
+
+    /** @return the y position within the grid of the given index */
+    public int getGridY(int index) {
+        return index / _numNodesX;
+    }
+
+    /**
+     * @param index     the index of the center node
+     * @param direction the direction of the neighbor (0-7), see
+     *                  {@link #NEIGHBOR_X} and {@link #NEIGHBOR_Y}
+     * @return the index of the neighbor, or -1 if it is outside the grid
+     */
+    public int getNeighborIndex(int index, int direction) {
+        if ((getNeighborDirections(index) & (1 << direction)) == 0)
+            return -1;
+        return index + _neighborOffsets[direction];
+    }
+
+    /**
+     * Finds which neighbors of a node are inside the grid without allocating, so
+     * a search can visit them with
+     *
+     * <pre>
+     * int directions = grid.getNeighborDirections(index);
+     * for (int direction = 0; direction &lt; 8; direction++) {
+     *     if ((directions &amp; (1 &lt;&lt; direction)) == 0)
+     *         continue;
+     *     int neighbor = index + grid.getNeighborOffset(direction);
+     *     double step = NodeGrid.NEIGHBOR_STEP[direction];
+     * }
+     * </pre>
+     *
+     * @param index the index of the center node
+     * @return a bit mask with bit n set if the neighbor in direction n is inside
+     *         the grid
+     */
+    public int getNeighborDirections(int index) {
+        int x = index % _numNodesX;
+        int y = index / _numNodesX;
+
+        int directions = 0xFF;
+        if (x == 0)
+            directions &= ~LEFT_DIRECTIONS;
+        if (x == _numNodesX - 1)
+            directions &= ~RIGHT_DIRECTIONS;
+        if (y == 0)
+            directions &= ~BOTTOM_DIRECTIONS;
+        if (y == _numNodesY - 1)
+            directions &= ~TOP_DIRECTIONS;
+        return directions;
+    }
+
+    /**
+     * @param direction the direction of the neighbor (0-7)
+     * @return the difference between the index of a node and its neighbor in the
+     *         direction. Only valid if {@link #getNeighborDirections(int)}
+     *         contains the direction.
+     */
+    public int getNeighborOffset(int direction) {
+        return _neighborOffsets[direction];
+    }
+
+    /** @return a bit mask of the directions whose offset is the given value */
+    private static int getDirections(int[] offsets, int offset) {
+        int directions = 0;
+        for (int direction = 0; direction < offsets.length; direction++) {
+            if (offsets[direction] == offset)
+                directions |= 1 << direction;
+        }
+        return directions;
+    }
+
+    /** @return if the node with the given index can be driven on */
+    public boolean isDriveable(int index) {
+        return _clearance[index] > _halfRobotWidth;
+    }
+
+    /**
+     * @return the distance weight of the node with the given index, which goes
+     *         from 1 at the edge of the driveable area to 0 at
+     *         {@link Pathfinder#DISTANCE_CUTOFF} from it
+     */
+    public double getDistanceWeight(int index) {
+        double edgeToBumperDistance = _clearance[index] - _halfRobotWidth;
+        if (edgeToBumperDistance <= 0 || edgeToBumperDistance >= Pathfinder.DISTANCE_CUTOFF)
+            return 0;
+        return 1 - edgeToBumperDistance / Pathfinder.DISTANCE_CUTOFF;
+    }
+
+    /** @return the distance from the node with the given index to the nearest obstacle */
+    public double getClearance(int index) {
+        return _clearance[index];
+    }
+
+    /**
+     * Walks every node a straight line between the centers of two nodes passes
+     * through. Where the line passes exactly through a corner, the two nodes
+     * touching that corner must also be driveable.
+     *
+     * @param fromIndex the index of the node the line starts at
+     * @param toIndex   the index of the node the line ends at
+     * @return the average distance weight of the nodes along the line after the
+     *         first, times the number of single steps between the two nodes (so it
+     *         matches the weight a path of single steps would collect), or
+     *         infinity if any of the nodes aren't driveable
+     */
+    public double getLineWeight(int fromIndex, int toIndex) {
+        int x = getGridX(fromIndex);
+        int y = getGridY(fromIndex);
+        int endX = getGridX(toIndex);
+        int endY = getGridY(toIndex);
+
+        int dx = Math.abs(endX - x);
+        int dy = Math.abs(endY - y);
+        int stepX = endX > x ? 1 : -1;
+        int stepY = endY > y ? 1 : -1;
+
+        int steps = Math.max(dx, dy);
+        int error = dx - dy;
+        dx *= 2;
+        dy *= 2;
+
+        double weight = 0;
+        int nodes = 0;
+        while (x != endX || y != endY) {
+            if (error > 0) {
+                x += stepX;
+                error -= dy;
+            } else if (error < 0) {
+                y += stepY;
+                error += dx;
+            } else {
+                if (!isDriveable(y * _numNodesX + x + stepX) || !isDriveable((y + stepY) * _numNodesX + x))
+                    return Double.POSITIVE_INFINITY;
+                x += stepX;
+                y += stepY;
+                error += dx - dy;
+            }
+
+            int index = y * _numNodesX + x;
+            if (!isDriveable(index))
+                return Double.POSITIVE_INFINITY;
+            weight += getDistanceWeight(index);
+            nodes++;
+        }
+        return nodes == 0 ? 0 : weight * steps / nodes;
+    }
+
+    /**
+     * @return if a straight line between the centers of two nodes only passes
+     *         through driveable nodes
+     */
+    public boolean hasLineOfSight(int fromIndex, int toIndex) {
+        return isDriveable(fromIndex) && getLineWeight(fromIndex, toIndex) != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Casts a ray between two field positions through every node whose square
+     * it touches (a supercover traversal), stopping at the first node with too
+     * little clearance. Where the ray passes exactly through a corner, both
+     * nodes beside the corner are checked. Positions outside the grid block the
+     * ray.
+     *
+     * @param fromX        the x position the ray starts at
+     * @param fromY        the y position the ray starts at
+     * @param toX          the x position the ray ends at
+     * @param toY          the y position the ray ends at
+     * @param minClearance nodes with this clearance or less block the ray. Half
+     *                     the robot width checks if the bumpers stay clear, and 0
+     *                     checks if obstacles are in the way. Keep out zones
+     *                     block the ray like any obstacle; use
+     *                     {@link #isVisible(Translation2d, Translation2d)} to
+     *                     only check physical obstacles.
+     * @return the distance from the start to where the ray enters the first
+     *         blocking node, or infinity if nothing blocks it
+     */
+    public double raycast(double fromX, double fromY, double toX, double toY, double minClearance) {
+        return raycast(fromX, fromY, toX, toY, minClearance, false);
+    }
+
+    /**
+     * @param physicalOnly if true, nodes only inside obstacles that aren't
+     *                     physical don't block the ray
+     * @see #raycast(double, double, double, double, double)
+     */
+    private double raycast(double fromX, double fromY, double toX, double toY, double minClearance,
+            boolean physicalOnly) {
+        double length = Math.hypot(toX - fromX, toY - fromY);
+
+        // Grid coordinates where each node's square goes from its index to index + 1
+        double startX = (fromX - _originX) / _nodeSpacing + 0.5;
+        double startY = (fromY - _originY) / _nodeSpacing + 0.5;
+        double deltaX = (toX - _originX) / _nodeSpacing + 0.5 - startX;
+        double deltaY = (toY - _originY) / _nodeSpacing + 0.5 - startY;
+
+        int x = (int) Math.floor(startX);
+        int y = (int) Math.floor(startY);
+        int endX = (int) Math.floor(startX + deltaX);
+        int endY = (int) Math.floor(startY + deltaY);
+
+        int stepX = deltaX > 0 ? 1 : -1;
+        int stepY = deltaY > 0 ? 1 : -1;
+        double tDeltaX = deltaX != 0 ? 1 / Math.abs(deltaX) : Double.POSITIVE_INFINITY;
+        double tDeltaY = deltaY != 0 ? 1 / Math.abs(deltaY) : Double.POSITIVE_INFINITY;
+        double tMaxX = deltaX > 0 ? (x + 1 - startX) * tDeltaX
+                : deltaX < 0 ? (startX - x) * tDeltaX : Double.POSITIVE_INFINITY;
+        double tMaxY = deltaY > 0 ? (y + 1 - startY) * tDeltaY
+                : deltaY < 0 ? (startY - y) * tDeltaY : Double.POSITIVE_INFINITY;
+
+        double t = 0;
+        while (t <= 1) {
+            if (isBlocked(x, y, minClearance, physicalOnly))
+                return t * length;
+            if (x == endX && y == endY)
+                break;
+
+            if (tMaxX < tMaxY) {
+                t = tMaxX;
+                x += stepX;
+                tMaxX += tDeltaX;
+            } else if (tMaxY < tMaxX) {
+                t = tMaxY;
+                y += stepY;
+                tMaxY += tDeltaY;
+            } else {
+                t = tMaxX;
+                if (t <= 1 && (isBlocked(x + stepX, y, minClearance, physicalOnly)
+                        || isBlocked(x, y + stepY, minClearance, physicalOnly)))
+                    return t * length;
+                x += stepX;
+                y += stepY;
+                tMaxX += tDeltaX;
+                tMaxY += tDeltaY;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the distance from the start to the first node with minClearance or
+     *         less, or infinity if there is none
+     * @see #raycast(double, double, double, double, double)
+     */
+    public double raycast(Translation2d from, Translation2d to, double minClearance) {
+        return raycast(from.getX(), from.getY(), to.getX(), to.getY(), minClearance);
+    }
+
+    /**
+     * @return if the robot can drive in a straight line between two field
+     *         positions with its bumpers clear of every obstacle
+     */
+    public boolean hasLineOfSight(Translation2d from, Translation2d to) {
+        return raycast(from, to, _halfRobotWidth) == Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return if no physical obstacle is between two field positions, for example
+     *         a camera and a game piece. Keep out zones don't block sight lines.
+     */
+    public boolean isVisible(Translation2d from, Translation2d to) {
+        return raycast(from.getX(), from.getY(), to.getX(), to.getY(), 0, true) == Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return if the node at (x, y) is outside the grid or has too little
+     *         clearance, and isn't only inside obstacles that aren't physical when
+     *         only physical obstacles block
+     */
+    private boolean isBlocked(int x, int y, double minClearance, boolean physicalOnly) {
+        if (x < 0 || x >= _numNodesX || y < 0 || y >= _numNodesY)
+            return true;
+        int index = y * _numNodesX + x;
+        if (physicalOnly && _clearanceGrid.isInsideOnlyRules(index))
+            return false;
+        return _clearance[index] <= minClearance;
+    }
+
+    /** @return the total number of nodes in this grid */
+    public int getNodeCount() {
+        return _numNodesX * _numNodesY;
     }
 }
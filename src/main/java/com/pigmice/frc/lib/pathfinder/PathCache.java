@@ -0,0 +1,185 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pigmice.frc.lib.pathfinder.Pathfinder.SearchMode;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A least recently used cache of paths in front of a {@link Pathfinder}. Queries
+ * are keyed on the grid nodes closest to the start and goal, so asking for the
+ * same path again from nearby positions is a hash lookup instead of a search.
+ * <p>
+ * Every entry is dropped when the grid changes, for example when a
+ * {@link DynamicObstacleLayer} adds or moves an obstacle, when the pathfinder
+ * is given another grid and when its search mode changes. The waypoints of
+ * results from the cache can't be modified, since cached results are shared
+ * between callers.
+ */
+public class PathCache {
+    private final Pathfinder _pathfinder;
+    private final int _capacity;
+
+    private final LinkedHashMap<Key, PathfinderResult> _entries;
+
+    /** The grid, grid version and search mode the entries were found with */
+    private NodeGrid _grid;
+    private long _gridVersion;
+    private SearchMode _searchMode;
+
+    private long _hits = 0;
+    private long _misses = 0;
+
+    /**
+     * Creates a new {@link PathCache}
+     *
+     * @param pathfinder the pathfinder to find paths with when they aren't cached
+     * @param capacity   the largest number of paths to keep
+     */
+    public PathCache(Pathfinder pathfinder, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+
+        _pathfinder = pathfinder;
+        _capacity = capacity;
+
+        _entries = new LinkedHashMap<Key, PathfinderResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PathfinderResult> eldest) {
+                return size() > _capacity;
+            }
+        };
+
+        _grid = pathfinder.grid;
+        _gridVersion = _grid.getVersion();
+        _searchMode = pathfinder.getSearchMode();
+    }
+
+    /**
+     * Finds a path, reusing the cached path between the same nodes if there is one.
+     * The search runs without holding the cache's lock, so other threads can use
+     * the cache while it runs.
+     *
+     * @return PathfinderResult contains an unmodifiable list of waypoints from
+     *         currentPos to goalPos avoiding obstacles
+     */
+    public PathfinderResult findPath(Translation2d currentPos, Translation2d goalPos) {
+        NodeGrid grid = _pathfinder.grid;
+        Key key = new Key(grid.FindCloseIndex(currentPos), grid.FindCloseIndex(goalPos));
+
+        long gridVersion;
+        SearchMode searchMode;
+        synchronized (this) {
+            invalidateIfChanged();
+            gridVersion = _gridVersion;
+            searchMode = _searchMode;
+
+            PathfinderResult cached = _entries.get(key);
+            if (cached != null) {
+                _hits++;
+                return withEndpoints(cached, currentPos, goalPos);
+            }
+            _misses++;
+        }
+
+        PathfinderResult result = unmodifiable(_pathfinder.findPath(currentPos, goalPos));
+
+        synchronized (this) {
+            // Don't keep results found on a grid that changed during the search
+            if (_pathfinder.grid == grid && grid.getVersion() == gridVersion
+                    && _pathfinder.getSearchMode() == searchMode && _grid == grid && _gridVersion == gridVersion)
+                _entries.put(key, result);
+        }
+        return result;
+    }
+
+    /** Removes every cached path */
+    public synchronized void clear() {
+        _entries.clear();
+    }
+
+    /** @return the number of cached paths */
+    public synchronized int size() {
+        invalidateIfChanged();
+        return _entries.size();
+    }
+
+    /** @return the number of queries answered from the cache */
+    public synchronized long getHits() {
+        return _hits;
+    }
+
+    /** @return the number of queries that had to search */
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    /** Drops every entry if the grid or search mode changed since they were found */
+    private void invalidateIfChanged() {
+        NodeGrid grid = _pathfinder.grid;
+        long gridVersion = grid.getVersion();
+        SearchMode searchMode = _pathfinder.getSearchMode();
+        if (grid != _grid || gridVersion != _gridVersion || searchMode != _searchMode) {
+            _entries.clear();
+            _grid = grid;
+            _gridVersion = gridVersion;
+            _searchMode = searchMode;
+        }
+    }
+
+    /** @return the cached result with its path moved to start and end at the given positions */
+    private static PathfinderResult withEndpoints(PathfinderResult cached, Translation2d currentPos,
+            Translation2d goalPos) {
+        List<Translation2d> path = cached.getPositionList();
+        if (!cached.pathFound() || path == null || path.isEmpty())
+            return cached;
+
+        ArrayList<Translation2d> waypoints = new ArrayList<Translation2d>(path);
+        waypoints.set(0, currentPos);
+        waypoints.set(waypoints.size() - 1, goalPos);
+        return new PathfinderResult(true, Collections.unmodifiableList(waypoints), cached.getPathCost(), 0);
+    }
+
+    /** @return the result with an unmodifiable copy of its waypoints */
+    private static PathfinderResult unmodifiable(PathfinderResult result) {
+        List<Translation2d> path = result.getPositionList();
+        if (path == null)
+            return result;
+
+        return new PathfinderResult(result.pathFound(),
+                Collections.unmodifiableList(new ArrayList<Translation2d>(path)), result.getPathCost(),
+                result.getExpandedNodes());
+    }
+
+    /** The nodes a path goes between */
+    private static final class Key {
+        private final int _start;
+        private final int _end;
+
+        Key(int start, int end) {
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key))
+                return false;
+
+            Key key = (Key) other;
+            return _start == key._start && _end == key._end;
+        }
+
+        @Override
+        public int hashCode() {
+            return _start * 31 + _end;
+        }
+    }
+}
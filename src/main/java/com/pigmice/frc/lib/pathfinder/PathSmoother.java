@@ -0,0 +1,293 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Turns the waypoints of a path into a smooth, time parameterized
+ * {@link PathTrajectory} without going through PathPlanner:
+ * <ol>
+ * <li>Waypoints that can be skipped with a straight line through driveable
+ * nodes are removed.</li>
+ * <li>A cubic Hermite spline is fit through the remaining waypoints. Where the
+ * spline would leave the driveable area its tangents are shortened, down to
+ * straight lines between the waypoints.</li>
+ * <li>The spline is sampled every {@link #SAMPLE_SPACING} meters and the
+ * fastest speed at each sample is found under velocity, acceleration and
+ * centripetal acceleration limits, starting and ending at rest.</li>
+ * </ol>
+ */
+public final class PathSmoother {
+    /** The distance between the states of generated trajectories, in meters */
+    public static final double SAMPLE_SPACING = 0.02;
+
+    /**
+     * How many times the tangents of a spline segment that leaves the driveable
+     * area are halved before it is made straight
+     */
+    private static final int MAX_TANGENT_HALVINGS = 4;
+    /** How many points are evaluated per sample spacing when measuring the spline */
+    private static final int POINTS_PER_SAMPLE = 4;
+
+    private PathSmoother() {
+    }
+
+    /**
+     * Removes every waypoint that can be skipped, going from each kept waypoint
+     * straight to the furthest later waypoint it can reach with the bumpers clear
+     * (see {@link NodeGrid#hasLineOfSight(Translation2d, Translation2d)})
+     *
+     * @param grid      the grid to check line of sight against
+     * @param waypoints the waypoints of the path
+     * @return the waypoints that are left, including the first and last
+     */
+    public static List<Translation2d> shortcut(NodeGrid grid, List<Translation2d> waypoints) {
+        if (waypoints.size() <= 2)
+            return new ArrayList<Translation2d>(waypoints);
+
+        ArrayList<Translation2d> shortcut = new ArrayList<Translation2d>();
+        shortcut.add(waypoints.get(0));
+
+        int current = 0;
+        while (current < waypoints.size() - 1) {
+            Translation2d from = waypoints.get(current);
+
+            int next = current + 1;
+            for (int candidate = waypoints.size() - 1; candidate > current + 1; candidate--) {
+                if (grid.hasLineOfSight(from, waypoints.get(candidate))) {
+                    next = candidate;
+                    break;
+                }
+            }
+
+            shortcut.add(waypoints.get(next));
+            current = next;
+        }
+        return shortcut;
+    }
+
+    /**
+     * Shortcuts and smooths a path and finds the fastest way to drive it
+     *
+     * @param grid                       the grid the path was found on
+     * @param waypoints                  the waypoints of the path, at least two
+     * @param maxVelocity                the fastest the robot can drive, in meters
+     *                                   per second
+     * @param maxAcceleration            the fastest the robot can speed up or slow
+     *                                   down, in meters per second squared
+     * @param maxCentripetalAcceleration the largest sideways acceleration allowed
+     *                                   while turning, in meters per second
+     *                                   squared
+     * @return the trajectory, starting and ending at rest
+     */
+    public static PathTrajectory generateTrajectory(NodeGrid grid, List<Translation2d> waypoints, double maxVelocity,
+            double maxAcceleration, double maxCentripetalAcceleration) {
+        if (waypoints.size() < 2)
+            throw new IllegalArgumentException("A trajectory needs at least two waypoints");
+        if (maxVelocity <= 0 || maxAcceleration <= 0 || maxCentripetalAcceleration <= 0)
+            throw new IllegalArgumentException("Trajectory limits must be positive");
+
+        List<Translation2d> points = shortcut(grid, waypoints);
+        int count = points.size();
+
+        double[] pointX = new double[count];
+        double[] pointY = new double[count];
+        for (int i = 0; i < count; i++) {
+            pointX[i] = points.get(i).getX();
+            pointY[i] = points.get(i).getY();
+        }
+
+        double[] tangentX = new double[count];
+        double[] tangentY = new double[count];
+        fitTangents(pointX, pointY, tangentX, tangentY);
+
+        // Shorten the tangents of segments that leave the driveable area until every
+        // segment stays inside it. Straight segments have line of sight already.
+        double[] tangentScale = new double[count];
+        Arrays.fill(tangentScale, 1);
+        for (int attempt = 0;; attempt++) {
+            boolean changed = false;
+            for (int segment = 0; segment < count - 1; segment++) {
+                if (tangentScale[segment] == 0 && tangentScale[segment + 1] == 0)
+                    continue;
+                if (isSegmentDriveable(grid, pointX, pointY, tangentX, tangentY, tangentScale, segment))
+                    continue;
+
+                double scale = attempt < MAX_TANGENT_HALVINGS ? 0.5 : 0;
+                tangentScale[segment] *= scale;
+                tangentScale[segment + 1] *= scale;
+                changed = true;
+            }
+            if (!changed)
+                break;
+        }
+
+        // Evaluate the spline densely to measure its length
+        int[] segmentPoints = new int[count - 1];
+        int densePointCount = 1;
+        for (int segment = 0; segment < count - 1; segment++) {
+            double chord = Math.hypot(pointX[segment + 1] - pointX[segment], pointY[segment + 1] - pointY[segment]);
+            segmentPoints[segment] = Math.max(8, (int) Math.ceil(chord / SAMPLE_SPACING * POINTS_PER_SAMPLE));
+            densePointCount += segmentPoints[segment];
+        }
+
+        double[] denseX = new double[densePointCount];
+        double[] denseY = new double[densePointCount];
+        double[] denseDistance = new double[densePointCount];
+        double[] point = new double[2];
+
+        denseX[0] = pointX[0];
+        denseY[0] = pointY[0];
+        int dense = 1;
+        for (int segment = 0; segment < count - 1; segment++) {
+            for (int step = 1; step <= segmentPoints[segment]; step++) {
+                evaluate(pointX, pointY, tangentX, tangentY, tangentScale, segment,
+                        step / (double) segmentPoints[segment], point);
+                denseX[dense] = point[0];
+                denseY[dense] = point[1];
+                denseDistance[dense] = denseDistance[dense - 1]
+                        + Math.hypot(point[0] - denseX[dense - 1], point[1] - denseY[dense - 1]);
+                dense++;
+            }
+        }
+
+        // Resample evenly along the spline
+        double length = denseDistance[densePointCount - 1];
+        int sampleCount = Math.max(2, (int) Math.ceil(length / SAMPLE_SPACING) + 1);
+        double spacing = length / (sampleCount - 1);
+
+        double[] x = new double[sampleCount];
+        double[] y = new double[sampleCount];
+        double[] distance = new double[sampleCount];
+        int denseIndex = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            double target = i == sampleCount - 1 ? length : i * spacing;
+            while (denseIndex < densePointCount - 2 && denseDistance[denseIndex + 1] < target)
+                denseIndex++;
+
+            double span = denseDistance[denseIndex + 1] - denseDistance[denseIndex];
+            double t = span > 0 ? Math.min(1, Math.max(0, (target - denseDistance[denseIndex]) / span)) : 0;
+            x[i] = denseX[denseIndex] + (denseX[denseIndex + 1] - denseX[denseIndex]) * t;
+            y[i] = denseY[denseIndex] + (denseY[denseIndex + 1] - denseY[denseIndex]) * t;
+            distance[i] = target;
+        }
+
+        double[] heading = new double[sampleCount];
+        double[] curvature = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            int before = Math.max(0, i - 1);
+            int after = Math.min(sampleCount - 1, i + 1);
+            heading[i] = Math.atan2(y[after] - y[before], x[after] - x[before]);
+            if (i > 0 && i < sampleCount - 1)
+                curvature[i] = getCurvature(x[before], y[before], x[i], y[i], x[after], y[after]);
+        }
+        if (sampleCount > 2) {
+            curvature[0] = curvature[1];
+            curvature[sampleCount - 1] = curvature[sampleCount - 2];
+        }
+
+        // Fastest speed allowed by the turn at each sample, then limited by
+        // accelerating forward from the start and backward from the end
+        double[] velocity = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            double turnLimit = Math.abs(curvature[i]) > 1e-9
+                    ? Math.sqrt(maxCentripetalAcceleration / Math.abs(curvature[i]))
+                    : Double.POSITIVE_INFINITY;
+            velocity[i] = Math.min(maxVelocity, turnLimit);
+        }
+        velocity[0] = 0;
+        velocity[sampleCount - 1] = 0;
+        for (int i = 1; i < sampleCount; i++)
+            velocity[i] = Math.min(velocity[i],
+                    Math.sqrt(velocity[i - 1] * velocity[i - 1] + 2 * maxAcceleration * spacing));
+        for (int i = sampleCount - 2; i >= 0; i--)
+            velocity[i] = Math.min(velocity[i],
+                    Math.sqrt(velocity[i + 1] * velocity[i + 1] + 2 * maxAcceleration * spacing));
+
+        double[] time = new double[sampleCount];
+        double[] acceleration = new double[sampleCount];
+        for (int i = 1; i < sampleCount; i++) {
+            double speedSum = velocity[i - 1] + velocity[i];
+            // Both ends at rest only happens when the whole path is one step
+            double duration = speedSum > 0 ? 2 * spacing / speedSum : 2 * Math.sqrt(spacing / maxAcceleration);
+            time[i] = time[i - 1] + duration;
+            acceleration[i - 1] = spacing > 0
+                    ? (velocity[i] * velocity[i] - velocity[i - 1] * velocity[i - 1]) / (2 * spacing)
+                    : 0;
+        }
+        acceleration[sampleCount - 1] = acceleration[Math.max(0, sampleCount - 2)];
+
+        return new PathTrajectory(time, x, y, heading, distance, velocity, acceleration, curvature);
+    }
+
+    /**
+     * Sets the tangent at each waypoint. Inner waypoints point from the waypoint
+     * before to the one after, as long as the shorter of their two segments so the
+     * spline doesn't overshoot. The ends point along their segment.
+     */
+    private static void fitTangents(double[] pointX, double[] pointY, double[] tangentX, double[] tangentY) {
+        int count = pointX.length;
+
+        tangentX[0] = pointX[1] - pointX[0];
+        tangentY[0] = pointY[1] - pointY[0];
+        tangentX[count - 1] = pointX[count - 1] - pointX[count - 2];
+        tangentY[count - 1] = pointY[count - 1] - pointY[count - 2];
+
+        for (int i = 1; i < count - 1; i++) {
+            double directionX = pointX[i + 1] - pointX[i - 1];
+            double directionY = pointY[i + 1] - pointY[i - 1];
+            double directionLength = Math.hypot(directionX, directionY);
+            if (directionLength == 0)
+                continue;
+
+            double magnitude = Math.min(Math.hypot(pointX[i] - pointX[i - 1], pointY[i] - pointY[i - 1]),
+                    Math.hypot(pointX[i + 1] - pointX[i], pointY[i + 1] - pointY[i]));
+            tangentX[i] = directionX / directionLength * magnitude;
+            tangentY[i] = directionY / directionLength * magnitude;
+        }
+    }
+
+    /** @return if every point of the spline segment is on a driveable node */
+    private static boolean isSegmentDriveable(NodeGrid grid, double[] pointX, double[] pointY, double[] tangentX,
+            double[] tangentY, double[] tangentScale, int segment) {
+        double chord = Math.hypot(pointX[segment + 1] - pointX[segment], pointY[segment + 1] - pointY[segment]);
+        int steps = Math.max(4, (int) Math.ceil(chord / (grid.getNodeSpacing() / 2)));
+
+        double[] point = new double[2];
+        for (int step = 1; step < steps; step++) {
+            evaluate(pointX, pointY, tangentX, tangentY, tangentScale, segment, step / (double) steps, point);
+            if (!grid.isDriveable(grid.FindCloseIndex(point[0], point[1])))
+                return false;
+        }
+        return true;
+    }
+
+    /** Evaluates a segment of the cubic Hermite spline at t (0-1) into point */
+    private static void evaluate(double[] pointX, double[] pointY, double[] tangentX, double[] tangentY,
+            double[] tangentScale, int segment, double t, double[] point) {
+        double t2 = t * t;
+        double t3 = t2 * t;
+        double startWeight = 2 * t3 - 3 * t2 + 1;
+        double startTangentWeight = (t3 - 2 * t2 + t) * tangentScale[segment];
+        double endWeight = -2 * t3 + 3 * t2;
+        double endTangentWeight = (t3 - t2) * tangentScale[segment + 1];
+
+        point[0] = startWeight * pointX[segment] + startTangentWeight * tangentX[segment]
+                + endWeight * pointX[segment + 1] + endTangentWeight * tangentX[segment + 1];
+        point[1] = startWeight * pointY[segment] + startTangentWeight * tangentY[segment]
+                + endWeight * pointY[segment + 1] + endTangentWeight * tangentY[segment + 1];
+    }
+
+    /**
+     * @return the signed curvature of the circle through three points, positive
+     *         when turning left
+     */
+    private static double getCurvature(double x0, double y0, double x1, double y1, double x2, double y2) {
+        double cross = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+        double sides = Math.hypot(x1 - x0, y1 - y0) * Math.hypot(x2 - x1, y2 - y1) * Math.hypot(x2 - x0, y2 - y0);
+        return sides > 0 ? 2 * cross / sides : 0;
+    }
+}
@@ -0,0 +1,149 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.Arrays;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A time parameterized path made by {@link PathSmoother}, stored as parallel
+ * primitive arrays of states evenly spaced along the path. States between two
+ * samples are linearly interpolated.
+ */
+public final class PathTrajectory {
+    private final double[] _time;
+    private final double[] _x;
+    private final double[] _y;
+    private final double[] _heading;
+    private final double[] _distance;
+    private final double[] _velocity;
+    private final double[] _acceleration;
+    private final double[] _curvature;
+
+    /**
+     * Creates a new {@link PathTrajectory}. Every array must have the same length
+     * and is used directly rather than copied.
+     */
+    PathTrajectory(double[] time, double[] x, double[] y, double[] heading, double[] distance, double[] velocity,
+            double[] acceleration, double[] curvature) {
+        _time = time;
+        _x = x;
+        _y = y;
+        _heading = heading;
+        _distance = distance;
+        _velocity = velocity;
+        _acceleration = acceleration;
+        _curvature = curvature;
+    }
+
+    /** @return the number of states in this trajectory */
+    public int size() {
+        return _time.length;
+    }
+
+    /** @return the time it takes to drive this trajectory, in seconds */
+    public double getTotalTime() {
+        return _time[_time.length - 1];
+    }
+
+    /** @return the length of this trajectory, in meters */
+    public double getLength() {
+        return _distance[_distance.length - 1];
+    }
+
+    /** @return the time of the state with the given index, in seconds */
+    public double getTime(int index) {
+        return _time[index];
+    }
+
+    /** @return the x position of the state with the given index, in meters */
+    public double getX(int index) {
+        return _x[index];
+    }
+
+    /** @return the y position of the state with the given index, in meters */
+    public double getY(int index) {
+        return _y[index];
+    }
+
+    /**
+     * @return the direction the robot is driving at the state with the given
+     *         index, in radians
+     */
+    public double getHeading(int index) {
+        return _heading[index];
+    }
+
+    /**
+     * @return the distance along the path of the state with the given index, in
+     *         meters
+     */
+    public double getDistance(int index) {
+        return _distance[index];
+    }
+
+    /** @return the speed of the state with the given index, in meters per second */
+    public double getVelocity(int index) {
+        return _velocity[index];
+    }
+
+    /**
+     * @return the acceleration along the path of the state with the given index,
+     *         in meters per second squared
+     */
+    public double getAcceleration(int index) {
+        return _acceleration[index];
+    }
+
+    /**
+     * @return the curvature of the path at the state with the given index, in
+     *         radians per meter
+     */
+    public double getCurvature(int index) {
+        return _curvature[index];
+    }
+
+    /**
+     * @return the index of the last state at or before the time, clamped to the
+     *         states of this trajectory
+     */
+    public int getIndex(double time) {
+        int index = Arrays.binarySearch(_time, time);
+        if (index < 0)
+            index = -index - 2;
+        return Math.max(0, Math.min(index, _time.length - 1));
+    }
+
+    /**
+     * @return the position at the time, in meters, interpolated between the
+     *         states around it
+     */
+    public Translation2d samplePosition(double time) {
+        int index = getIndex(time);
+        double t = getInterpolation(index, time);
+        if (t == 0)
+            return new Translation2d(_x[index], _y[index]);
+
+        return new Translation2d(_x[index] + (_x[index + 1] - _x[index]) * t,
+                _y[index] + (_y[index + 1] - _y[index]) * t);
+    }
+
+    /**
+     * @return the speed at the time, in meters per second, interpolated between
+     *         the states around it
+     */
+    public double sampleVelocity(double time) {
+        int index = getIndex(time);
+        double t = getInterpolation(index, time);
+        if (t == 0)
+            return _velocity[index];
+
+        return _velocity[index] + (_velocity[index + 1] - _velocity[index]) * t;
+    }
+
+    /** @return how far the time is between the state and the next one, from 0 to 1 */
+    private double getInterpolation(int index, double time) {
+        if (index >= _time.length - 1 || time <= _time[index])
+            return 0;
+        return Math.min(1, (time - _time[index]) / (_time[index + 1] - _time[index]));
+    }
+}
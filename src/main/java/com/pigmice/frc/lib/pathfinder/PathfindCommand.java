@@ -0,0 +1,65 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+/**
+ * Asks a {@link PathfinderService} for a path when scheduled and finishes once
+ * the path has been found, without blocking the scheduler while the search
+ * runs. The result is handed to the callback on the scheduler's thread.
+ * Interrupting the command cancels the search.
+ */
+public class PathfindCommand extends Command {
+    private final PathfinderService _service;
+    private final Supplier<Translation2d> _currentPos;
+    private final Supplier<Translation2d> _goalPos;
+    private final Consumer<PathfinderResult> _onResult;
+
+    private CompletableFuture<PathfinderResult> _result;
+
+    /**
+     * Creates a new {@link PathfindCommand}
+     *
+     * @param service      the service to find the path with
+     * @param currentPos   supplies the start of the path when the command is
+     *                     scheduled
+     * @param goalPos      supplies the end of the path when the command is
+     *                     scheduled
+     * @param onResult     called with the result once it is found. Not called if
+     *                     the search fails or is cancelled.
+     * @param requirements the subsystems required by this command
+     */
+    public PathfindCommand(PathfinderService service, Supplier<Translation2d> currentPos,
+            Supplier<Translation2d> goalPos, Consumer<PathfinderResult> onResult, Subsystem... requirements) {
+        _service = service;
+        _currentPos = currentPos;
+        _goalPos = goalPos;
+        _onResult = onResult;
+
+        addRequirements(requirements);
+    }
+
+    @Override
+    public void initialize() {
+        _result = _service.findPathAsync(this, _currentPos.get(), _goalPos.get());
+    }
+
+    @Override
+    public boolean isFinished() {
+        return _result.isDone();
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        if (interrupted) {
+            _result.cancel(false);
+        } else if (!_result.isCompletedExceptionally()) {
+            _onResult.accept(_result.join());
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.pigmice.frc.lib.pathfinder;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.pigmice.frc.lib.pathfinder.field_loading.Field;
-import com.pigmice.frc.lib.pathfinder.field_loading.FieldParser;
+import com.pigmice.frc.lib.pathfinder.field_loading.FieldCache;
 
 import edu.wpi.first.math.geometry.Translation2d;
 
@@ -13,89 +17,489 @@ public class Pathfinder {
     public static final double DISTANCE_CUTOFF = 1;
     public static final double BIAS_AWAY_FROM_EDGE = 1;
 
+    /**
+     * The algorithm used to search the grid.
+     * <p>
+     * {@link #JUMP_POINT}, {@link #HIERARCHICAL} and {@link #QUADTREE} build a
+     * structure over the whole grid, only from its static obstacles (see
+     * {@link ClearanceGrid#getStaticVersion()}). While a
+     * {@link DynamicObstacleLayer} of the grid has obstacles they search with
+     * {@link #A_STAR} instead, so moving obstacles never rebuild them.
+     */
+    public enum SearchMode {
+        /** A* over every node of the grid */
+        A_STAR,
+        /**
+         * Jump Point Search, which jumps across open areas of the grid and falls back
+         * to A* near obstacles. Finds paths with the same cost as A*.
+         */
+        JUMP_POINT,
+        /**
+         * Theta*, which finds any-angle paths using line of sight checks against the
+         * grid. Paths have far fewer waypoints and don't need to be simplified.
+         */
+        THETA_STAR,
+        /**
+         * Hierarchical pathfinding, which searches a graph of the entrances between
+         * clusters of nodes and then only the clusters along the route. Much faster
+         * on fine grids, but paths can cost slightly more than A*.
+         */
+        HIERARCHICAL,
+        /**
+         * A* over a quadtree that merges open areas of the grid into large cells and
+         * keeps single nodes near obstacles. Expands far fewer cells than A*, with
+         * paths that go between cell centers in open areas.
+         */
+        QUADTREE,
+        /**
+         * A* from both ends of the path at once, stopping once the searches have met
+         * on the cheapest path. Finds paths with the same cost as A*, and expands far
+         * fewer nodes when the goal is in a dead end.
+         */
+        BIDIRECTIONAL
+    }
+
+    /** The width and height of the clusters used by {@link SearchMode#HIERARCHICAL}, in nodes */
+    public static final int HIERARCHICAL_CLUSTER_SIZE = 16;
+
     public NodeGrid grid = null;
     public Field field;
 
+    /** Search state for each thread calling findPath, reused between queries */
+    private final ThreadLocal<SearchWorkspace> _workspaces = new ThreadLocal<SearchWorkspace>();
+    /** Search state of the backward half of bidirectional searches */
+    private final ThreadLocal<SearchWorkspace> _backwardWorkspaces = new ThreadLocal<SearchWorkspace>();
+
+    private volatile SearchMode _searchMode = SearchMode.A_STAR;
+
+    /** Built the first time a jump point search runs, and again when the grid changes */
+    private volatile JumpPointSearch _jumpPointSearch = null;
+    /** Built the first time a hierarchical search runs, and again when the grid changes */
+    private volatile HierarchicalSearch _hierarchicalSearch = null;
+    /** Built the first time a quadtree search runs, and again when the grid changes */
+    private volatile QuadtreeGrid _quadtreeGrid = null;
+
+    /** The cost grid of each landmark of the field, see {@link LandmarkCostGrid} */
+    private final Map<String, float[]> _landmarkCosts;
     /**
+     * The static version of the grid the landmark cost grids were built from, or
+     * -1 if they were built with dynamic obstacles
+     */
+    private final long _landmarkGridVersion;
+
+    /**
+     * Loads a field from the deploy directory. The field, its grid and the cost
+     * grids of its landmarks are read from a binary cache next to the JSON when it
+     * is up to date, and the cache is rebuilt when it isn't (see
+     * {@link FieldCache}).
+     * 
      * @param robotWidthMeters the width of the robot including bumpers
      * @param distanceMapName  the name of the imported distance map to use when
      *                         pathfinding
      */
     public Pathfinder(double robotWidthMeters, String distanceMapName) {
-        field = FieldParser.parseField(distanceMapName);
+        FieldCache cache = FieldCache.load(distanceMapName, robotWidthMeters);
+        field = cache.field;
+
+        grid = new NodeGrid(robotWidthMeters, field, cache.clearance);
+
+        _landmarkCosts = cache.landmarkCosts;
+        _landmarkGridVersion = getStaticVersionWithoutDynamicObstacles();
+    }
+
+    /**
+     * @param robotWidthMeters the width of the robot including bumpers
+     * @param field            the field to generate the grid and landmark cost
+     *                         grids from
+     */
+    public Pathfinder(double robotWidthMeters, Field field) {
+        this(robotWidthMeters, new ClearanceGrid(field));
+    }
+
+    /**
+     * Creates a pathfinder for one robot footprint that shares the clearances of
+     * the field with every other pathfinder made from the same
+     * {@link ClearanceGrid}, so several footprints only cost one signed distance
+     * field
+     *
+     * @param robotWidthMeters the width of the robot including bumpers
+     * @param clearanceGrid    the clearances of the field to generate the grid and
+     *                         landmark cost grids from
+     */
+    public Pathfinder(double robotWidthMeters, ClearanceGrid clearanceGrid) {
+        this.field = clearanceGrid.getField();
+
+        grid = new NodeGrid(robotWidthMeters, clearanceGrid);
 
-        grid = new NodeGrid(robotWidthMeters, field);
+        _landmarkCosts = new LinkedHashMap<String, float[]>();
+        for (Map.Entry<String, Translation2d> landmark : field.landmarks.entrySet())
+            _landmarkCosts.put(landmark.getKey(),
+                    LandmarkCostGrid.generate(grid, grid.FindCloseIndex(landmark.getValue())));
+        _landmarkGridVersion = getStaticVersionWithoutDynamicObstacles();
     }
 
     /**
+     * Finds a path using a search workspace owned by the calling thread, so one
+     * Pathfinder can be queried from several threads at once. If the calling
+     * thread is interrupted the search gives up and no path is found.
+     * 
      * @return PathfinderResult contains a list of waypoints from currentPos to
      *         goalPos avoiding obstacles
      */
     public PathfinderResult findPath(Translation2d currentPos, Translation2d goalPos) {
-        Node start = grid.FindCloseNode(currentPos);
-        Node end = grid.FindCloseNode(goalPos);
+        int start = grid.FindCloseIndex(currentPos);
+        int end = grid.FindCloseIndex(goalPos);
 
-        if (start == end || !start.driveable || !end.driveable)
+        if (start == end || !grid.isDriveable(start) || !grid.isDriveable(end))
             return new PathfinderResult(false, null);
 
-        boolean pathFound = false;
-        ArrayList<Node> path = new ArrayList<Node>();
-        ArrayList<Translation2d> simplifiedPath = new ArrayList<Translation2d>();
-
-        ArrayList<Node> openSet = new ArrayList<Node>();
-        HashSet<Node> closedSet = new HashSet<Node>();
-
-        openSet.add(start);
-        while (openSet.size() > 0) {
-            Node currentNode = openSet.get(0);
-            for (int i = 1; i < openSet.size(); i++) {
-                if (openSet.get(i).fCost() < currentNode.fCost()
-                        || openSet.get(i).fCost() == currentNode.fCost() && openSet.get(i).hCost < currentNode.hCost) {
-                    currentNode = openSet.get(i);
-                }
-            }
+        SearchMode searchMode = _searchMode;
+        if (isBuiltFromGrid(searchMode) && grid.getClearanceGrid().hasDynamicObstacles())
+            searchMode = SearchMode.A_STAR;
+        SearchWorkspace workspace = getWorkspace();
+
+        if (searchMode == SearchMode.HIERARCHICAL)
+            return getHierarchicalSearch().findPath(workspace, currentPos, goalPos, start, end);
+        if (searchMode == SearchMode.QUADTREE)
+            return getQuadtreeGrid().findPath(currentPos, goalPos, start, end);
+        if (searchMode == SearchMode.BIDIRECTIONAL)
+            return findPathBidirectional(workspace, currentPos, goalPos, start, end);
+
+        boolean pathFound;
+        switch (searchMode) {
+            case JUMP_POINT:
+                pathFound = getJumpPointSearch().search(workspace, start, end);
+                break;
+
+            case THETA_STAR:
+                pathFound = ThetaStarSearch.search(grid, workspace, start, end);
+                break;
+
+            default:
+                pathFound = search(workspace, start, end);
+                break;
+        }
 
-            openSet.remove(currentNode);
-            closedSet.add(currentNode);
+        if (!pathFound)
+            return new PathfinderResult(false, new ArrayList<Translation2d>(), Double.POSITIVE_INFINITY,
+                    workspace.expandedNodes);
 
-            if (currentNode == end) {
-                path = retracePath(start, end);
+        ArrayList<Node> path = retracePath(workspace, start, end);
+        ArrayList<Translation2d> simplifiedPath;
+        switch (searchMode) {
+            case JUMP_POINT:
+                simplifiedPath = simplifyPath(JumpPointSearch.fillJumps(grid, path));
+                break;
 
+            case THETA_STAR:
+                // Theta* paths only contain their corners already
+                simplifiedPath = new ArrayList<Translation2d>();
+                for (Node node : path)
+                    simplifiedPath.add(node.fieldPos);
+                break;
+
+            default:
                 simplifiedPath = simplifyPath(path);
+                break;
+        }
+
+        simplifiedPath.set(0, currentPos);
+        simplifiedPath.set(simplifiedPath.size() - 1, goalPos);
+
+        return new PathfinderResult(true, simplifiedPath, workspace.gCost[end], workspace.expandedNodes);
+    }
+
+    /**
+     * Finds paths from one position to many goals with a single Dijkstra search
+     * that stops once every goal has been reached, which is much faster than
+     * calling findPath for each goal. Always searches every node the same way,
+     * regardless of the search mode.
+     *
+     * @param currentPos    the position to start from
+     * @param goalPositions the positions to find paths to
+     * @return a result for each goal in the same order, with the cost of each path
+     */
+    public List<PathfinderResult> findPaths(Translation2d currentPos, List<Translation2d> goalPositions) {
+        int start = grid.FindCloseIndex(currentPos);
 
+        int[] ends = new int[goalPositions.size()];
+        BitSet goals = new BitSet(grid.getNodeCount());
+        for (int i = 0; i < ends.length; i++) {
+            ends[i] = grid.FindCloseIndex(goalPositions.get(i));
+            if (ends[i] != start && grid.isDriveable(ends[i]))
+                goals.set(ends[i]);
+        }
+
+        SearchWorkspace workspace = getWorkspace();
+        if (grid.isDriveable(start) && !goals.isEmpty())
+            searchAll(workspace, start, goals);
+        else
+            workspace.reset();
+
+        ArrayList<PathfinderResult> results = new ArrayList<PathfinderResult>(ends.length);
+        for (int i = 0; i < ends.length; i++) {
+            int end = ends[i];
+
+            if (!goals.get(end)) {
+                results.add(new PathfinderResult(false, null));
+            } else if (!workspace.closedSet.get(end)) {
+                results.add(new PathfinderResult(false, new ArrayList<Translation2d>(), Double.POSITIVE_INFINITY,
+                        workspace.expandedNodes));
+            } else {
+                ArrayList<Translation2d> simplifiedPath = simplifyPath(retracePath(workspace, start, end));
                 simplifiedPath.set(0, currentPos);
-                simplifiedPath.set(simplifiedPath.size() - 1, goalPos);
+                simplifiedPath.set(simplifiedPath.size() - 1, goalPositions.get(i));
+
+                results.add(new PathfinderResult(true, simplifiedPath, workspace.gCost[end],
+                        workspace.expandedNodes));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds a path to one of the field's landmarks by following its precomputed
+     * cost grid, which takes microseconds instead of a full search. While a
+     * {@link DynamicObstacleLayer} has obstacles, or if the static obstacles have
+     * changed since the cost grids were built, falls back to {@link #findPath}.
+     *
+     * @param currentPos the position to start from
+     * @param landmark   the name of the landmark
+     * @return PathfinderResult contains a list of waypoints from currentPos to the
+     *         landmark avoiding obstacles
+     * @throws IllegalArgumentException if the field has no landmark with the name
+     */
+    public PathfinderResult findPathToLandmark(Translation2d currentPos, String landmark) {
+        Translation2d goalPos = field.landmarks.get(landmark);
+        float[] costs = _landmarkCosts.get(landmark);
+        if (goalPos == null || costs == null)
+            throw new IllegalArgumentException("No landmark named " + landmark);
+
+        if (grid.getClearanceGrid().hasDynamicObstacles() || grid.getStaticVersion() != _landmarkGridVersion)
+            return findPath(currentPos, goalPos);
+
+        int start = grid.FindCloseIndex(currentPos);
+        ArrayList<Node> path = LandmarkCostGrid.descend(grid, costs, start);
+        if (path == null)
+            return new PathfinderResult(false, new ArrayList<Translation2d>(), Double.POSITIVE_INFINITY, 0);
+        if (path.size() < 2)
+            return new PathfinderResult(false, null);
+
+        ArrayList<Translation2d> simplifiedPath = simplifyPath(path);
+        simplifiedPath.set(0, currentPos);
+        simplifiedPath.set(simplifiedPath.size() - 1, goalPos);
+
+        return new PathfinderResult(true, simplifiedPath, costs[start], 0);
+    }
+
+    /** @return the names of the field's landmarks */
+    public Set<String> getLandmarks() {
+        return Collections.unmodifiableSet(_landmarkCosts.keySet());
+    }
+
+    /** Sets the algorithm used by findPath */
+    public void setSearchMode(SearchMode searchMode) {
+        _searchMode = searchMode;
+    }
+
+    /** @return the algorithm used by findPath */
+    public SearchMode getSearchMode() {
+        return _searchMode;
+    }
+
+    /** @return the jump point search of the current grid, building it if needed */
+    JumpPointSearch getJumpPointSearch() {
+        JumpPointSearch search = _jumpPointSearch;
+        if (search == null || search.getGridVersion() != grid.getStaticVersion()) {
+            synchronized (this) {
+                search = _jumpPointSearch;
+                if (search == null || search.getGridVersion() != grid.getStaticVersion()) {
+                    search = new JumpPointSearch(grid);
+                    _jumpPointSearch = search;
+                }
+            }
+        }
+        return search;
+    }
+
+    /** @return the hierarchical search of the current grid, building it if needed */
+    HierarchicalSearch getHierarchicalSearch() {
+        HierarchicalSearch search = _hierarchicalSearch;
+        if (search == null || search.getGridVersion() != grid.getStaticVersion()) {
+            synchronized (this) {
+                search = _hierarchicalSearch;
+                if (search == null || search.getGridVersion() != grid.getStaticVersion()) {
+                    search = new HierarchicalSearch(grid, HIERARCHICAL_CLUSTER_SIZE);
+                    _hierarchicalSearch = search;
+                }
+            }
+        }
+        return search;
+    }
 
-                pathFound = true;
+    /** @return the quadtree of the current grid, building it if needed */
+    QuadtreeGrid getQuadtreeGrid() {
+        QuadtreeGrid quadtree = _quadtreeGrid;
+        if (quadtree == null || quadtree.getGridVersion() != grid.getStaticVersion()) {
+            synchronized (this) {
+                quadtree = _quadtreeGrid;
+                if (quadtree == null || quadtree.getGridVersion() != grid.getStaticVersion()) {
+                    quadtree = new QuadtreeGrid(grid);
+                    _quadtreeGrid = quadtree;
+                }
             }
+        }
+        return quadtree;
+    }
+
+    /**
+     * @return if a search mode searches a structure built from the static
+     *         obstacles of the grid
+     */
+    private static boolean isBuiltFromGrid(SearchMode searchMode) {
+        return searchMode == SearchMode.JUMP_POINT || searchMode == SearchMode.HIERARCHICAL
+                || searchMode == SearchMode.QUADTREE;
+    }
+
+    /**
+     * @return the static version of the grid, or -1 if it has dynamic obstacles
+     *         so nothing built from it matches only the static obstacles
+     */
+    private long getStaticVersionWithoutDynamicObstacles() {
+        return grid.getClearanceGrid().hasDynamicObstacles() ? -1 : grid.getStaticVersion();
+    }
+
+    /** @return the search workspace for the calling thread, sized to the grid */
+    SearchWorkspace getWorkspace() {
+        return getWorkspace(_workspaces);
+    }
+
+    private SearchWorkspace getWorkspace(ThreadLocal<SearchWorkspace> workspaces) {
+        SearchWorkspace workspace = workspaces.get();
+        if (workspace == null || workspace.size() != grid.getNodeCount()) {
+            workspace = new SearchWorkspace(grid.getNodeCount());
+            workspaces.set(workspace);
+        }
+        return workspace;
+    }
+
+    /** Finds a path with {@link BidirectionalSearch} */
+    private PathfinderResult findPathBidirectional(SearchWorkspace workspace, Translation2d currentPos,
+            Translation2d goalPos, int start, int end) {
+        SearchWorkspace backward = getWorkspace(_backwardWorkspaces);
+
+        int meetingNode = BidirectionalSearch.search(grid, workspace, backward, start, end);
+        if (meetingNode < 0)
+            return new PathfinderResult(false, new ArrayList<Translation2d>(), Double.POSITIVE_INFINITY,
+                    workspace.expandedNodes);
+
+        ArrayList<Translation2d> simplifiedPath = simplifyPath(
+                BidirectionalSearch.retracePath(grid, workspace, backward, meetingNode));
+        simplifiedPath.set(0, currentPos);
+        simplifiedPath.set(simplifiedPath.size() - 1, goalPos);
+
+        return new PathfinderResult(true, simplifiedPath,
+                workspace.gCost[meetingNode] + backward.gCost[meetingNode], workspace.expandedNodes);
+    }
 
-            for (Node neighbor : grid.GetNeighbors(currentNode)) {
-                if (!neighbor.driveable || closedSet.contains(neighbor))
+    /**
+     * Runs A* from start to end, leaving the scores and parents in the workspace
+     * 
+     * @return true if end was reached
+     */
+    boolean search(SearchWorkspace workspace, int start, int end) {
+        workspace.reset();
+
+        // Open set is a min-heap keyed on fCost (ties broken by hCost)
+        IndexedMinHeap openSet = workspace.openSet;
+
+        workspace.visit(start, 0, getDistance(start, end), -1);
+        openSet.insertOrUpdate(start, workspace.fCost(start), workspace.hCost[start]);
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.pop();
+            workspace.closedSet.set(current);
+            workspace.expandedNodes++;
+
+            if (current == end)
+                return true;
+            if (workspace.isInterrupted())
+                return false;
+
+            int directions = grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = current + grid.getNeighborOffset(direction);
+                if (!grid.isDriveable(neighbor) || workspace.closedSet.get(neighbor))
                     continue;
-                double newMovementCostToNeighbor = currentNode.gCost + getDistance(currentNode, neighbor);
-                newMovementCostToNeighbor += neighbor.distanceWeight * BIAS_AWAY_FROM_EDGE;
-                if (newMovementCostToNeighbor < neighbor.gCost || !openSet.contains(neighbor)) {
-                    neighbor.gCost = newMovementCostToNeighbor;
-                    neighbor.hCost = getDistance(neighbor, end);
-                    neighbor.parent = currentNode;
-                    if (!openSet.contains(neighbor))
-                        openSet.add(neighbor);
+
+                double newMovementCostToNeighbor = workspace.gCost[current] + NodeGrid.NEIGHBOR_STEP[direction];
+                newMovementCostToNeighbor += grid.getDistanceWeight(neighbor) * BIAS_AWAY_FROM_EDGE;
+                if (newMovementCostToNeighbor < workspace.getGCost(neighbor)) {
+                    workspace.visit(neighbor, newMovementCostToNeighbor, getDistance(neighbor, end), current);
+                    openSet.insertOrUpdate(neighbor, workspace.fCost(neighbor), workspace.hCost[neighbor]);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs Dijkstra from start until every goal has been expanded or no more
+     * nodes can be reached, leaving the scores and parents in the workspace
+     *
+     * @param goals the indices of the goals
+     */
+    void searchAll(SearchWorkspace workspace, int start, BitSet goals) {
+        workspace.reset();
+
+        IndexedMinHeap openSet = workspace.openSet;
+        int remainingGoals = goals.cardinality();
+
+        workspace.visit(start, 0, 0, -1);
+        openSet.insertOrUpdate(start, 0, 0);
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.pop();
+            workspace.closedSet.set(current);
+            workspace.expandedNodes++;
+
+            if (goals.get(current) && --remainingGoals == 0)
+                return;
+            if (workspace.isInterrupted())
+                return;
+
+            int directions = grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = current + grid.getNeighborOffset(direction);
+                if (!grid.isDriveable(neighbor) || workspace.closedSet.get(neighbor))
+                    continue;
+
+                double newMovementCostToNeighbor = workspace.gCost[current] + NodeGrid.NEIGHBOR_STEP[direction];
+                newMovementCostToNeighbor += grid.getDistanceWeight(neighbor) * BIAS_AWAY_FROM_EDGE;
+                if (newMovementCostToNeighbor < workspace.getGCost(neighbor)) {
+                    workspace.visit(neighbor, newMovementCostToNeighbor, 0, current);
+                    openSet.insertOrUpdate(neighbor, newMovementCostToNeighbor, 0);
                 }
             }
         }
-        return new PathfinderResult(pathFound, simplifiedPath);
     }
 
     /** @return the path traced back from the end node */
-    static ArrayList<Node> retracePath(Node start, Node end) {
+    ArrayList<Node> retracePath(SearchWorkspace workspace, int start, int end) {
         ArrayList<Node> path = new ArrayList<Node>();
-        Node currentNode = end;
+        int current = end;
 
-        while (currentNode != start) {
-            path.add(currentNode);
-            currentNode = currentNode.parent;
+        while (current != start) {
+            path.add(grid.getNodeAt(current));
+            current = workspace.parent[current];
         }
-        path.add(start);
+        path.add(grid.getNodeAt(start));
 
         Collections.reverse(path);
         return path;
@@ -123,13 +527,19 @@ public class Pathfinder {
     }
 
     /**
-     * @return the smallest number of steps between nodeA and nodeB ignoring
-     *         obstacles
+     * @return the smallest number of steps between the nodes at indexA and indexB
+     *         ignoring obstacles
      */
-    static double getDistance(Node nodeA, Node nodeB) {
-        double distX = Math.abs(nodeA.gridX - nodeB.gridX);
-        double distY = Math.abs(nodeA.gridY - nodeB.gridY);
+    double getDistance(int indexA, int indexB) {
+        return getOctileDistance(Math.abs(grid.getGridX(indexA) - grid.getGridX(indexB)),
+                Math.abs(grid.getGridY(indexA) - grid.getGridY(indexB)));
+    }
 
+    /**
+     * @return the smallest number of steps to move distX and distY ignoring
+     *         obstacles
+     */
+    static double getOctileDistance(int distX, int distY) {
         if (distX > distY)
             return Math.sqrt(2d) * distY + (distX - distY);
         else
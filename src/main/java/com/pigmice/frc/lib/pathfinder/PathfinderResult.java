@@ -18,10 +18,28 @@ public class PathfinderResult {
     private final boolean _pathFound;
     private final List<Translation2d> _simplifiedPath;
 
+    private final double _pathCost;
+    private final int _expandedNodes;
+
     /** A result returned by Pathfinder.FindPath() */
     public PathfinderResult(boolean pathFound, List<Translation2d> simplifiedPath) {
+        this(pathFound, simplifiedPath, pathFound ? 0 : Double.POSITIVE_INFINITY, 0);
+    }
+
+    /**
+     * A result returned by Pathfinder.FindPath()
+     * 
+     * @param pathFound      if a valid path was found
+     * @param simplifiedPath the waypoints of the path
+     * @param pathCost       the cost of the path as measured by the search
+     * @param expandedNodes  the number of nodes the search expanded
+     */
+    public PathfinderResult(boolean pathFound, List<Translation2d> simplifiedPath, double pathCost,
+            int expandedNodes) {
         this._pathFound = pathFound;
         this._simplifiedPath = simplifiedPath;
+        this._pathCost = pathCost;
+        this._expandedNodes = expandedNodes;
     }
 
     /** @return if a valid path was found */
@@ -29,6 +47,19 @@ public class PathfinderResult {
         return _pathFound;
     }
 
+    /**
+     * @return the cost of the path in nodes traveled plus distance weights, or
+     *         infinity if no path was found
+     */
+    public double getPathCost() {
+        return _pathCost;
+    }
+
+    /** @return the number of nodes the search expanded to find this result */
+    public int getExpandedNodes() {
+        return _expandedNodes;
+    }
+
     /**
      * Generate a PathPlannerTrajectory from this pathfiner result. null if there is
      * no valid path
@@ -64,6 +95,45 @@ public class PathfinderResult {
                 .getTrajectory(new ChassisSpeeds(), points.get(0).rotationTarget.getTarget());
     }
 
+    /**
+     * Removes every waypoint the robot can skip by driving straight with its
+     * bumpers clear, with {@link PathSmoother#shortcut(NodeGrid, List)}. The cost
+     * and expanded nodes are those of the original search.
+     *
+     * @param grid the grid the path was found on
+     * @return a result with the remaining waypoints, or this result if there is no
+     *         valid path
+     */
+    public PathfinderResult shortcut(NodeGrid grid) {
+        if (!_pathFound || _simplifiedPath.size() <= 2)
+            return this;
+
+        return new PathfinderResult(true, PathSmoother.shortcut(grid, _simplifiedPath), _pathCost, _expandedNodes);
+    }
+
+    /**
+     * Generate a smooth, time parameterized trajectory from this pathfinder result
+     * with {@link PathSmoother}, without going through PathPlanner. null if there
+     * is no valid path.
+     *
+     * @param grid                       the grid the path was found on
+     * @param maxVelocity                the fastest the robot can drive, in meters
+     *                                   per second
+     * @param maxAcceleration            the fastest the robot can speed up or slow
+     *                                   down, in meters per second squared
+     * @param maxCentripetalAcceleration the largest sideways acceleration allowed
+     *                                   while turning, in meters per second
+     *                                   squared
+     */
+    public PathTrajectory getSmoothTrajectory(NodeGrid grid, double maxVelocity, double maxAcceleration,
+            double maxCentripetalAcceleration) {
+        if (!_pathFound || _simplifiedPath.size() < 2)
+            return null;
+
+        return PathSmoother.generateTrajectory(grid, _simplifiedPath, maxVelocity, maxAcceleration,
+                maxCentripetalAcceleration);
+    }
+
     public List<Translation2d> getPositionList() {
         return _simplifiedPath;
     }
@@ -0,0 +1,151 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Runs {@link Pathfinder} queries on a pool of worker threads so long searches
+ * don't block the robot loop. Each query belongs to a consumer (usually the
+ * command or subsystem asking), and a new query from a consumer cancels the
+ * one it had in flight, interrupting the search if it already started.
+ */
+public class PathfinderService implements AutoCloseable {
+    /** The number of queries that can wait for a worker before new ones are rejected */
+    private static final int QUEUE_CAPACITY = 32;
+
+    private final Pathfinder _pathfinder;
+    private final ExecutorService _executor;
+
+    private final ConcurrentHashMap<Object, Request> _requests = new ConcurrentHashMap<Object, Request>();
+
+    private static class Request {
+        final CompletableFuture<PathfinderResult> result = new CompletableFuture<PathfinderResult>();
+        volatile Future<?> task;
+
+        void cancel() {
+            result.cancel(false);
+            Future<?> task = this.task;
+            if (task != null)
+                task.cancel(true);
+        }
+    }
+
+    /**
+     * Creates a new {@link PathfinderService} with its own pool of daemon worker
+     * threads
+     *
+     * @param pathfinder the pathfinder to query
+     * @param threads    the number of queries that can run at once
+     */
+    public PathfinderService(Pathfinder pathfinder, int threads) {
+        this(pathfinder, createExecutor(threads));
+    }
+
+    /**
+     * Creates a new {@link PathfinderService} that runs queries on an existing
+     * executor
+     *
+     * @param pathfinder the pathfinder to query
+     * @param executor   the executor to run queries on. Shut down by
+     *                   {@link #close()}.
+     */
+    public PathfinderService(Pathfinder pathfinder, ExecutorService executor) {
+        _pathfinder = pathfinder;
+        _executor = executor;
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "Pathfinder-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /** @return the pathfinder this service queries */
+    public Pathfinder getPathfinder() {
+        return _pathfinder;
+    }
+
+    /**
+     * Finds a path on a worker thread, cancelling the consumer's previous query if
+     * it hasn't finished
+     *
+     * @param consumer   who the query is for, compared with equals
+     * @param currentPos the position to start from
+     * @param goalPos    the position to find a path to
+     * @return the result of the query. Completes exceptionally with a
+     *         {@link java.util.concurrent.CancellationException} if the query is
+     *         superseded or cancelled, or a {@link RejectedExecutionException} if
+     *         too many queries are waiting.
+     */
+    public CompletableFuture<PathfinderResult> findPathAsync(Object consumer, Translation2d currentPos,
+            Translation2d goalPos) {
+        Request request = new Request();
+
+        Request previous = _requests.put(consumer, request);
+        if (previous != null)
+            previous.cancel();
+
+        // Cancelling the result directly also stops the search
+        request.result.whenComplete((result, exception) -> {
+            if (request.result.isCancelled())
+                request.cancel();
+            _requests.remove(consumer, request);
+        });
+
+        try {
+            request.task = _executor.submit(() -> {
+                if (request.result.isDone())
+                    return;
+
+                try {
+                    PathfinderResult result = _pathfinder.findPath(currentPos, goalPos);
+
+                    // An interrupted search gives up without a path, which isn't a real result
+                    if (!Thread.currentThread().isInterrupted())
+                        request.result.complete(result);
+                } catch (RuntimeException e) {
+                    request.result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            request.result.completeExceptionally(e);
+        }
+
+        // Cancelled before the task was stored
+        if (request.result.isCancelled())
+            request.cancel();
+
+        return request.result;
+    }
+
+    /** Cancels the consumer's query if it hasn't finished */
+    public void cancel(Object consumer) {
+        Request request = _requests.remove(consumer);
+        if (request != null)
+            request.cancel();
+    }
+
+    /** Cancels every query and stops the worker threads */
+    @Override
+    public void close() {
+        for (Request request : _requests.values())
+            request.cancel();
+        _requests.clear();
+
+        _executor.shutdownNow();
+    }
+}
@@ -0,0 +1,338 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A quadtree over a {@link NodeGrid} that merges square blocks of driveable
+ * nodes with similar distance weights into single cells. A block, up to
+ * {@link #MAX_CELL_SIZE} nodes wide, becomes one cell if every node in it is
+ * driveable and its distance weights differ by at most
+ * {@link #MAX_WEIGHT_RANGE}; otherwise it is split into four quadrants. Open
+ * areas become a few large cells and the weighted band near obstacles becomes
+ * smaller ones, where the weight changes quickly. A block holding both
+ * driveable and undriveable nodes is split until its quadrants hold only one
+ * kind, and quadrants of undriveable nodes are left out. Searching the cells
+ * instead of the nodes expands far fewer of them, and the search state only
+ * needs to be as large as the number of driveable cells.
+ * <p>
+ * Moving between two touching cells costs the distance between their centers,
+ * plus that distance times the average distance weight of the two cells.
+ * Paths go between cell centers, so costs are close to but not the same as
+ * A*.
+ */
+final class QuadtreeGrid {
+    /** The width of the largest cells, in nodes. Must be a power of two. */
+    static final int MAX_CELL_SIZE = 32;
+
+    /** The largest difference in distance weight between nodes merged into a cell */
+    static final double MAX_WEIGHT_RANGE = 0.25;
+
+    /** Marks a quadrant of the tree that has no driveable cell */
+    private static final int EMPTY = -1;
+
+    private final NodeGrid _grid;
+    /** The static version of the grid this quadtree was built from */
+    private final long _gridVersion;
+
+    private final int _rootsX;
+    /**
+     * The top of the tree for each MAX_CELL_SIZE block of the grid. An entry
+     * (here or in _children) is EMPTY, a cell encoded as -(cell + 2), or the
+     * index of a branch whose children are at _children[4 * branch] onward.
+     */
+    private final int[] _roots;
+    private int[] _children = new int[64];
+    private int _branchCount = 0;
+
+    /** The grid position of the bottom left node of each driveable cell */
+    private int[] _cellX = new int[64];
+    private int[] _cellY = new int[64];
+    /** The width of each driveable cell, in nodes */
+    private int[] _cellSize = new int[64];
+    /** The average distance weight of the nodes in each cell */
+    private double[] _cellWeight = new double[64];
+    private int _cellCount = 0;
+
+    /** Touching cells, the neighbors of cell c are edgeStarts[c] until edgeStarts[c + 1] */
+    private final int[] _edgeStarts;
+    private final int[] _edgeTargets;
+    private final double[] _edgeCosts;
+
+    /**
+     * Builds a quadtree over a grid
+     *
+     * @param grid the grid to merge the nodes of
+     */
+    QuadtreeGrid(NodeGrid grid) {
+        _grid = grid;
+        _gridVersion = grid.getStaticVersion();
+
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+
+        _rootsX = (width + MAX_CELL_SIZE - 1) / MAX_CELL_SIZE;
+        int rootsY = (height + MAX_CELL_SIZE - 1) / MAX_CELL_SIZE;
+        _roots = new int[_rootsX * rootsY];
+        for (int rootY = 0; rootY < rootsY; rootY++) {
+            for (int rootX = 0; rootX < _rootsX; rootX++)
+                _roots[rootY * _rootsX + rootX] = build(rootX * MAX_CELL_SIZE, rootY * MAX_CELL_SIZE, MAX_CELL_SIZE);
+        }
+
+        // Trim the arrays grown while building
+        _children = Arrays.copyOf(_children, _branchCount * 4);
+        _cellX = Arrays.copyOf(_cellX, _cellCount);
+        _cellY = Arrays.copyOf(_cellY, _cellCount);
+        _cellSize = Arrays.copyOf(_cellSize, _cellCount);
+        _cellWeight = Arrays.copyOf(_cellWeight, _cellCount);
+
+        // Find the cells touching each cell, including at corners
+        int[] edgeStarts = new int[_cellCount + 1];
+        int[] edgeTargets = new int[_cellCount * 8];
+        int[] lastSeenBy = new int[_cellCount];
+        Arrays.fill(lastSeenBy, -1);
+
+        int edgeCount = 0;
+        for (int cell = 0; cell < _cellCount; cell++) {
+            edgeStarts[cell] = edgeCount;
+
+            int minX = _cellX[cell] - 1;
+            int minY = _cellY[cell] - 1;
+            int maxX = _cellX[cell] + _cellSize[cell];
+            int maxY = _cellY[cell] + _cellSize[cell];
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y += (x == minX || x == maxX) ? 1 : maxY - minY) {
+                    int neighbor = getCell(x, y);
+                    if (neighbor < 0 || lastSeenBy[neighbor] == cell)
+                        continue;
+                    lastSeenBy[neighbor] = cell;
+
+                    if (edgeCount == edgeTargets.length)
+                        edgeTargets = Arrays.copyOf(edgeTargets, edgeCount * 2);
+                    edgeTargets[edgeCount++] = neighbor;
+                }
+            }
+        }
+        edgeStarts[_cellCount] = edgeCount;
+
+        _edgeStarts = edgeStarts;
+        _edgeTargets = Arrays.copyOf(edgeTargets, edgeCount);
+        _edgeCosts = new double[edgeCount];
+        for (int cell = 0; cell < _cellCount; cell++) {
+            for (int edge = _edgeStarts[cell]; edge < _edgeStarts[cell + 1]; edge++) {
+                int neighbor = _edgeTargets[edge];
+                double averageWeight = (_cellWeight[cell] + _cellWeight[neighbor]) / 2d;
+                _edgeCosts[edge] = getDistance(cell, neighbor)
+                        * (1 + averageWeight * Pathfinder.BIAS_AWAY_FROM_EDGE);
+            }
+        }
+    }
+
+    /**
+     * Builds the part of the tree covering a square of the grid
+     *
+     * @return the entry for the square, see {@link #_roots}
+     */
+    private int build(int x, int y, int size) {
+        int width = _grid.getWidth();
+        int height = _grid.getHeight();
+        if (x >= width || y >= height)
+            return EMPTY;
+
+        if (x + size <= width && y + size <= height) {
+            // Check if every node is undriveable, or every node can be merged
+            int driveableCount = 0;
+            double minWeight = Double.POSITIVE_INFINITY;
+            double maxWeight = Double.NEGATIVE_INFINITY;
+            double totalWeight = 0;
+            for (int checkY = y; checkY < y + size; checkY++) {
+                for (int checkX = x; checkX < x + size; checkX++) {
+                    int index = checkY * width + checkX;
+                    if (!_grid.isDriveable(index))
+                        continue;
+
+                    double weight = _grid.getDistanceWeight(index);
+                    driveableCount++;
+                    minWeight = Math.min(minWeight, weight);
+                    maxWeight = Math.max(maxWeight, weight);
+                    totalWeight += weight;
+                }
+            }
+
+            if (driveableCount == 0)
+                return EMPTY;
+            if (driveableCount == size * size && maxWeight - minWeight <= MAX_WEIGHT_RANGE)
+                return -(addCell(x, y, size, totalWeight / driveableCount) + 2);
+        }
+
+        int half = size / 2;
+        int branch = _branchCount++;
+        if (_children.length < _branchCount * 4)
+            _children = Arrays.copyOf(_children, _children.length * 2);
+
+        // Built separately because building can grow the array
+        int bottomLeft = build(x, y, half);
+        int bottomRight = build(x + half, y, half);
+        int topLeft = build(x, y + half, half);
+        int topRight = build(x + half, y + half, half);
+
+        _children[branch * 4] = bottomLeft;
+        _children[branch * 4 + 1] = bottomRight;
+        _children[branch * 4 + 2] = topLeft;
+        _children[branch * 4 + 3] = topRight;
+        return branch;
+    }
+
+    private int addCell(int x, int y, int size, double weight) {
+        if (_cellCount == _cellX.length) {
+            _cellX = Arrays.copyOf(_cellX, _cellCount * 2);
+            _cellY = Arrays.copyOf(_cellY, _cellCount * 2);
+            _cellSize = Arrays.copyOf(_cellSize, _cellCount * 2);
+            _cellWeight = Arrays.copyOf(_cellWeight, _cellCount * 2);
+        }
+
+        _cellX[_cellCount] = x;
+        _cellY[_cellCount] = y;
+        _cellSize[_cellCount] = size;
+        _cellWeight[_cellCount] = weight;
+        return _cellCount++;
+    }
+
+    /** @return the static version of the grid this quadtree was built from */
+    long getGridVersion() {
+        return _gridVersion;
+    }
+
+    /** @return the number of driveable cells */
+    int getCellCount() {
+        return _cellCount;
+    }
+
+    /** @return the driveable cell containing the node at (x, y), or -1 if there is none */
+    int getCell(int x, int y) {
+        if (x < 0 || y < 0 || x >= _grid.getWidth() || y >= _grid.getHeight())
+            return -1;
+
+        int entry = _roots[y / MAX_CELL_SIZE * _rootsX + x / MAX_CELL_SIZE];
+        int size = MAX_CELL_SIZE;
+        int localX = x % MAX_CELL_SIZE;
+        int localY = y % MAX_CELL_SIZE;
+
+        while (entry >= 0) {
+            size /= 2;
+            int quadrant = (localX >= size ? 1 : 0) + (localY >= size ? 2 : 0);
+            localX %= size;
+            localY %= size;
+            entry = _children[entry * 4 + quadrant];
+        }
+        return entry == EMPTY ? -1 : -entry - 2;
+    }
+
+    /**
+     * Finds a path over the cells with A*
+     *
+     * @return PathfinderResult contains a list of waypoints from currentPos to
+     *         goalPos avoiding obstacles
+     */
+    PathfinderResult findPath(Translation2d currentPos, Translation2d goalPos, int start, int end) {
+        int startCell = getCell(_grid.getGridX(start), _grid.getGridY(start));
+        int endCell = getCell(_grid.getGridX(end), _grid.getGridY(end));
+
+        ArrayList<Translation2d> waypoints = new ArrayList<Translation2d>();
+        waypoints.add(currentPos);
+        if (startCell == endCell) {
+            waypoints.add(goalPos);
+            return new PathfinderResult(true, waypoints, 0, 0);
+        }
+
+        double[] gCost = new double[_cellCount];
+        int[] parent = new int[_cellCount];
+        boolean[] closed = new boolean[_cellCount];
+        Arrays.fill(gCost, Double.POSITIVE_INFINITY);
+        IndexedMinHeap openSet = new IndexedMinHeap(_cellCount);
+
+        gCost[startCell] = 0;
+        parent[startCell] = -1;
+        openSet.insertOrUpdate(startCell, getDistance(startCell, endCell), 0);
+
+        int expandedNodes = 0;
+        while (!openSet.isEmpty()) {
+            int current = openSet.pop();
+            closed[current] = true;
+            expandedNodes++;
+
+            if (current == endCell)
+                break;
+            if (expandedNodes % 1024 == 0 && Thread.currentThread().isInterrupted())
+                break;
+
+            for (int edge = _edgeStarts[current]; edge < _edgeStarts[current + 1]; edge++) {
+                int neighbor = _edgeTargets[edge];
+                if (closed[neighbor])
+                    continue;
+
+                double newCost = gCost[current] + _edgeCosts[edge];
+                if (newCost < gCost[neighbor]) {
+                    gCost[neighbor] = newCost;
+                    parent[neighbor] = current;
+
+                    double hCost = getDistance(neighbor, endCell);
+                    openSet.insertOrUpdate(neighbor, newCost + hCost, hCost);
+                }
+            }
+        }
+
+        if (!closed[endCell])
+            return new PathfinderResult(false, new ArrayList<Translation2d>(), Double.POSITIVE_INFINITY,
+                    expandedNodes);
+
+        // The centers of the cells between the start and end cells
+        ArrayList<Translation2d> centers = new ArrayList<Translation2d>();
+        for (int cell = parent[endCell]; cell != startCell; cell = parent[cell])
+            centers.add(getCenter(cell));
+        for (int i = centers.size() - 1; i >= 0; i--)
+            waypoints.add(centers.get(i));
+        waypoints.add(goalPos);
+
+        return new PathfinderResult(true, removeStraightWaypoints(waypoints), gCost[endCell], expandedNodes);
+    }
+
+    /** @return the waypoints without any that are in a straight line between their neighbors */
+    private static ArrayList<Translation2d> removeStraightWaypoints(ArrayList<Translation2d> waypoints) {
+        ArrayList<Translation2d> result = new ArrayList<Translation2d>();
+        result.add(waypoints.get(0));
+
+        for (int i = 1; i < waypoints.size() - 1; i++) {
+            Translation2d previous = result.get(result.size() - 1);
+            Translation2d current = waypoints.get(i);
+            Translation2d next = waypoints.get(i + 1);
+
+            double cross = (current.getX() - previous.getX()) * (next.getY() - current.getY())
+                    - (current.getY() - previous.getY()) * (next.getX() - current.getX());
+            if (Math.abs(cross) > 1e-9)
+                result.add(current);
+        }
+        result.add(waypoints.get(waypoints.size() - 1));
+        return result;
+    }
+
+    /** @return the field position of the center of a cell */
+    private Translation2d getCenter(int cell) {
+        double spacing = _grid.getNodeSpacing();
+        Translation2d origin = _grid.getFieldPos(0);
+        double offset = (_cellSize[cell] - 1) / 2d;
+
+        return new Translation2d(origin.getX() + (_cellX[cell] + offset) * spacing,
+                origin.getY() + (_cellY[cell] + offset) * spacing);
+    }
+
+    /** @return the straight line distance between the centers of two cells, in nodes */
+    private double getDistance(int cellA, int cellB) {
+        double dx = (_cellX[cellA] + _cellSize[cellA] / 2d) - (_cellX[cellB] + _cellSize[cellB] / 2d);
+        double dy = (_cellY[cellA] + _cellSize[cellA] / 2d) - (_cellY[cellB] + _cellSize[cellB] / 2d);
+        return Math.hypot(dx, dy);
+    }
+}
@@ -0,0 +1,98 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Holds the per-query state of a search over a {@link NodeGrid}. All arrays are
+ * indexed by node index (gridY * width + gridX) and are reused between
+ * queries. Instead of clearing the score arrays, every query bumps a
+ * generation counter and a node's scores only count as set if they were
+ * written during the current generation.
+ */
+class SearchWorkspace {
+    /** How many nodes are expanded between checks for interruption */
+    private static final int INTERRUPT_CHECK_INTERVAL = 1024;
+
+    final double[] gCost;
+    final double[] hCost;
+    final int[] parent;
+
+    final IndexedMinHeap openSet;
+    final BitSet closedSet;
+
+    /** The number of nodes taken from the open set during the current query */
+    int expandedNodes = 0;
+
+    private final int[] _generations;
+    private int _generation = 0;
+
+    /**
+     * Creates a new {@link SearchWorkspace}
+     *
+     * @param nodeCount the number of nodes in the grid this workspace will search
+     */
+    SearchWorkspace(int nodeCount) {
+        gCost = new double[nodeCount];
+        hCost = new double[nodeCount];
+        parent = new int[nodeCount];
+
+        openSet = new IndexedMinHeap(nodeCount);
+        closedSet = new BitSet(nodeCount);
+
+        _generations = new int[nodeCount];
+    }
+
+    /** @return the number of nodes this workspace can hold */
+    int size() {
+        return _generations.length;
+    }
+
+    /** Prepares this workspace for a new query */
+    void reset() {
+        if (_generation == Integer.MAX_VALUE) {
+            Arrays.fill(_generations, 0);
+            _generation = 0;
+        }
+        _generation++;
+        expandedNodes = 0;
+
+        openSet.clear();
+        // Clearing a bitset only touches one word per 64 nodes
+        closedSet.clear();
+    }
+
+    /** @return true if the node has been reached during the current query */
+    boolean isVisited(int index) {
+        return _generations[index] == _generation;
+    }
+
+    /** Sets the scores and parent of a node for the current query */
+    void visit(int index, double gCost, double hCost, int parent) {
+        this.gCost[index] = gCost;
+        this.hCost[index] = hCost;
+        this.parent[index] = parent;
+        _generations[index] = _generation;
+    }
+
+    /**
+     * Called after each expansion so long searches can be cancelled. Only checks
+     * the thread every {@link #INTERRUPT_CHECK_INTERVAL} expansions.
+     *
+     * @return true if the calling thread has been interrupted and the search
+     *         should give up
+     */
+    boolean isInterrupted() {
+        return expandedNodes % INTERRUPT_CHECK_INTERVAL == 0 && Thread.currentThread().isInterrupted();
+    }
+
+    /** @return the gCost of the node, or infinity if it has not been reached */
+    double getGCost(int index) {
+        return isVisited(index) ? gCost[index] : Double.POSITIVE_INFINITY;
+    }
+
+    /** @return the fCost of a node that has been reached */
+    double fCost(int index) {
+        return gCost[index] + hCost[index];
+    }
+}
@@ -0,0 +1,85 @@
+package com.pigmice.frc.lib.pathfinder;
+
+/**
+ * Theta* over a {@link NodeGrid} (Nash et al., "Theta*: Any-Angle Path Planning
+ * on Grids"). Works like A*, but when a node's parent has line of sight to a
+ * neighbor, the neighbor can be connected straight to that parent. The parents
+ * left in the workspace are the corners of an any-angle path, so the path
+ * doesn't need to be simplified afterwards.
+ * <p>
+ * The cost of a straight segment is its length in nodes plus the distance
+ * weight it collects from the nodes it passes through (see
+ * {@link NodeGrid#getLineWeight(int, int)}), so it can be compared with the A*
+ * cost of a path made of single steps. Whichever connection is cheaper wins.
+ */
+final class ThetaStarSearch {
+    private ThetaStarSearch() {
+    }
+
+    /**
+     * Runs Theta* from start to end, leaving the scores and parents in the
+     * workspace. The parent of start is start itself.
+     *
+     * @return true if end was reached
+     */
+    static boolean search(NodeGrid grid, SearchWorkspace workspace, int start, int end) {
+        workspace.reset();
+
+        IndexedMinHeap openSet = workspace.openSet;
+
+        workspace.visit(start, 0, getDistance(grid, start, end), start);
+        openSet.insertOrUpdate(start, workspace.fCost(start), workspace.hCost[start]);
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.pop();
+            workspace.closedSet.set(current);
+            workspace.expandedNodes++;
+
+            if (current == end)
+                return true;
+            if (workspace.isInterrupted())
+                return false;
+
+            int parent = workspace.parent[current];
+
+            int directions = grid.getNeighborDirections(current);
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = current + grid.getNeighborOffset(direction);
+                if (!grid.isDriveable(neighbor) || workspace.closedSet.get(neighbor))
+                    continue;
+
+                // A normal step from the current node
+                int newParent = current;
+                double newMovementCostToNeighbor = workspace.gCost[current] + NodeGrid.NEIGHBOR_STEP[direction]
+                        + grid.getDistanceWeight(neighbor) * Pathfinder.BIAS_AWAY_FROM_EDGE;
+
+                // A straight line from the current node's parent, if it can see the
+                // neighbor. Lines through weighted nodes can cost more than going around
+                // them, so the cheaper of the two is kept.
+                if (parent != current) {
+                    double lineWeight = grid.getLineWeight(parent, neighbor);
+                    double lineCost = workspace.gCost[parent] + getDistance(grid, parent, neighbor)
+                            + lineWeight * Pathfinder.BIAS_AWAY_FROM_EDGE;
+                    if (lineCost <= newMovementCostToNeighbor) {
+                        newParent = parent;
+                        newMovementCostToNeighbor = lineCost;
+                    }
+                }
+
+                if (newMovementCostToNeighbor < workspace.getGCost(neighbor)) {
+                    workspace.visit(neighbor, newMovementCostToNeighbor, getDistance(grid, neighbor, end), newParent);
+                    openSet.insertOrUpdate(neighbor, workspace.fCost(neighbor), workspace.hCost[neighbor]);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** @return the straight line distance between two nodes, in nodes */
+    private static double getDistance(NodeGrid grid, int indexA, int indexB) {
+        return Math.hypot(grid.getGridX(indexA) - grid.getGridX(indexB), grid.getGridY(indexA) - grid.getGridY(indexB));
+    }
+}
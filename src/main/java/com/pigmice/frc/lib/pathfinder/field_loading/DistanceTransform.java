@@ -0,0 +1,254 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Builds the clearance grid of a field by rasterizing obstacles into an
+ * occupancy bitmap and running an exact Euclidean distance transform over it
+ * (Felzenszwalb and Huttenlocher, "Distance Transforms of Sampled Functions").
+ * Away from obstacles the build time is linear in the number of nodes instead
+ * of nodes times obstacles.
+ * <p>
+ * Every node within an exact reach of an obstacle is evaluated with the
+ * obstacle's analytic SDF, so it is the same as
+ * {@link SDFGenerator#generateClearanceGrid(Field)}. The nodes within half a
+ * diagonal of a node spacing of an obstacle are occupied. Every point of an
+ * obstacle is that close to some node, so the distance from a node to the
+ * nearest occupied node is within that much of the distance to the nearest
+ * obstacle, and the obstacle occupying that node is another bound. Every other
+ * node gets the middle of those bounds, which is within half a diagonal (about
+ * 0.71 node spacings) of the analytic distance and never below the exact
+ * reach.
+ * <p>
+ * Unbounded obstacles (like {@link SDFGenerator.FieldBoundaries}) and
+ * obstacles reaching past the edge of the grid are evaluated at every node.
+ */
+public final class DistanceTransform {
+    /** Stands in for infinity so the parabola intersections stay finite */
+    private static final double FAR = 1e20;
+
+    /**
+     * Calculates the signed distance to the nearest obstacle for every node of the
+     * field, only evaluating obstacles at the nodes they occupy
+     *
+     * @param field the field to use
+     * @return the distance from each node to the nearest obstacle, indexed by
+     *         gridY * width + gridX
+     */
+    public static float[] generateClearanceGrid(Field field) {
+        return generateClearanceGrid(field, 0);
+    }
+
+    /**
+     * Calculates the signed distance to the nearest obstacle for every node of the
+     * field
+     *
+     * @param field      the field to use
+     * @param exactReach every node closer than this to an obstacle is exactly the
+     *                   same as the analytic grid. Using half the robot width plus
+     *                   {@link com.pigmice.frc.lib.pathfinder.Pathfinder#DISTANCE_CUTOFF}
+     *                   makes the driveability and distance weight of every node
+     *                   the same as the analytic grid for that robot.
+     * @return the distance from each node to the nearest obstacle, indexed by
+     *         gridY * width + gridX
+     */
+    public static float[] generateClearanceGrid(Field field, double exactReach) {
+        int width = field.config.getGridWidth();
+        int height = field.config.getGridHeight();
+        double spacing = field.config.nodeSpacingMeters;
+        Translation2d origin = field.config.bottomLeftPositionMeters;
+
+        // Every point within the grid is at most this far from a node
+        double occupiedReach = spacing / Math.sqrt(2);
+        double reach = Math.max(exactReach, occupiedReach);
+
+        double[] rowX = new double[width];
+        for (int x = 0; x < width; x++)
+            rowX[x] = origin.getX() + x * spacing;
+        double maxGridX = rowX[width - 1];
+        double maxGridY = origin.getY() + (height - 1) * spacing;
+
+        ArrayList<Obstacle> rasterized = new ArrayList<Obstacle>();
+        ArrayList<Obstacle> everywhere = new ArrayList<Obstacle>();
+        for (Obstacle obstacle : field.obstacles) {
+            Translation2d min = obstacle.getMinBounds();
+            Translation2d max = obstacle.getMaxBounds();
+            if (min != null && max != null && min.getX() >= origin.getX() && min.getY() >= origin.getY()
+                    && max.getX() <= maxGridX && max.getY() <= maxGridY)
+                rasterized.add(obstacle);
+            else
+                everywhere.add(obstacle);
+        }
+
+        // The distance to the nearest rasterized obstacle, for every node within
+        // reach of one
+        double[] nearDistance = new double[width * height];
+        int[] nearOwner = new int[width * height];
+        Arrays.fill(nearDistance, Double.MAX_VALUE);
+        for (int i = 0; i < rasterized.size(); i++)
+            rasterize(rasterized.get(i), i, reach, nearDistance, nearOwner, rowX, width, height, origin, spacing);
+
+        double[] squaredDistance = new double[width * height];
+        int[] nearestOccupied = new int[width * height];
+        for (int i = 0; i < squaredDistance.length; i++)
+            squaredDistance[i] = nearDistance[i] <= occupiedReach ? 0 : FAR;
+        squaredDistanceTransform(squaredDistance, width, height, nearestOccupied);
+
+        float[] clearance = new float[width * height];
+        double[] direct = new double[width];
+        double[] ownerDistance = new double[width];
+        for (int y = 0; y < height; y++) {
+            double rowY = origin.getY() + y * spacing;
+
+            Arrays.fill(direct, Double.MAX_VALUE);
+            for (Obstacle obstacle : everywhere)
+                obstacle.minDistancesAlongRow(rowX, rowY, direct);
+
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+
+                double distance;
+                if (nearDistance[index] <= reach) {
+                    distance = nearDistance[index];
+                } else if (squaredDistance[index] < FAR / 2) {
+                    int occupied = nearestOccupied[index];
+                    double occupiedDistance = Math.sqrt(squaredDistance[index]) * spacing;
+
+                    // Nodes past the exact reach have no obstacle within it
+                    double lower = Math.max(occupiedDistance - occupiedReach, reach);
+                    ownerDistance[x] = Double.MAX_VALUE;
+                    rasterized.get(nearOwner[occupied]).minDistancesAlongRow(rowX, rowY, ownerDistance, x, x + 1);
+                    double upper = ownerDistance[x];
+
+                    distance = lower >= upper ? upper : (lower + upper) / 2;
+                } else {
+                    distance = Double.MAX_VALUE;
+                }
+
+                clearance[index] = (float) Math.min(distance, direct[x]);
+            }
+        }
+        return clearance;
+    }
+
+    /**
+     * Evaluates an obstacle at every node within reach of its bounds, keeping the
+     * distance and the obstacle at each node it is the closest to so far
+     */
+    private static void rasterize(Obstacle obstacle, int obstacleIndex, double reach, double[] nearDistance,
+            int[] nearOwner, double[] rowX, int width, int height, Translation2d origin, double spacing) {
+        Translation2d min = obstacle.getMinBounds();
+        Translation2d max = obstacle.getMaxBounds();
+
+        int minX = Math.max(0, (int) Math.floor((min.getX() - reach - origin.getX()) / spacing));
+        int minY = Math.max(0, (int) Math.floor((min.getY() - reach - origin.getY()) / spacing));
+        int maxX = Math.min(width - 1, (int) Math.ceil((max.getX() + reach - origin.getX()) / spacing));
+        int maxY = Math.min(height - 1, (int) Math.ceil((max.getY() + reach - origin.getY()) / spacing));
+
+        double[] distances = new double[width];
+        for (int y = minY; y <= maxY; y++) {
+            Arrays.fill(distances, minX, maxX + 1, Double.MAX_VALUE);
+            obstacle.minDistancesAlongRow(rowX, origin.getY() + y * spacing, distances, minX, maxX + 1);
+
+            for (int x = minX; x <= maxX; x++) {
+                int index = y * width + x;
+                if (distances[x] < nearDistance[index]) {
+                    nearDistance[index] = distances[x];
+                    nearOwner[index] = obstacleIndex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces every value of the grid with the squared distance (in nodes) to the
+     * nearest node whose value was zero, by transforming each column and then each
+     * row
+     *
+     * @param grid        the grid to transform, zero at occupied nodes and a very
+     *                    large value everywhere else
+     * @param width       the width of the grid
+     * @param height      the height of the grid
+     * @param nearestSite filled with the index of the nearest occupied node of
+     *                    each node
+     */
+    static void squaredDistanceTransform(double[] grid, int width, int height, int[] nearestSite) {
+        int length = Math.max(width, height);
+        double[] line = new double[length];
+        double[] result = new double[length];
+        int[] closest = new int[length];
+        int[] lineSites = new int[length];
+        int[] parabolas = new int[length];
+        double[] boundaries = new double[length + 1];
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++)
+                line[y] = grid[y * width + x];
+            transform(line, height, result, closest, parabolas, boundaries);
+            for (int y = 0; y < height; y++) {
+                grid[y * width + x] = result[y];
+                nearestSite[y * width + x] = closest[y] * width + x;
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(grid, y * width, line, 0, width);
+            System.arraycopy(nearestSite, y * width, lineSites, 0, width);
+            transform(line, width, result, closest, parabolas, boundaries);
+            for (int x = 0; x < width; x++) {
+                grid[y * width + x] = result[x];
+                nearestSite[y * width + x] = lineSites[closest[x]];
+            }
+        }
+    }
+
+    /**
+     * One dimensional squared distance transform: computes the lower envelope of
+     * the parabolas rooted at each sample
+     *
+     * @param f          the sampled function
+     * @param n          the number of samples
+     * @param result     the output, result[q] = min over p of (q - p)^2 + f[p]
+     * @param closest    the output, the p that minimizes result[q]
+     * @param parabolas  scratch space for the locations of envelope parabolas
+     * @param boundaries scratch space for the ranges of envelope parabolas
+     */
+    private static void transform(double[] f, int n, double[] result, int[] closest, int[] parabolas,
+            double[] boundaries) {
+        int k = 0;
+        parabolas[0] = 0;
+        boundaries[0] = Double.NEGATIVE_INFINITY;
+        boundaries[1] = Double.POSITIVE_INFINITY;
+
+        for (int q = 1; q < n; q++) {
+            double s = intersection(f, parabolas[k], q);
+            while (s <= boundaries[k]) {
+                k--;
+                s = intersection(f, parabolas[k], q);
+            }
+            k++;
+            parabolas[k] = q;
+            boundaries[k] = s;
+            boundaries[k + 1] = Double.POSITIVE_INFINITY;
+        }
+
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (boundaries[k + 1] < q)
+                k++;
+            int p = parabolas[k];
+            result[q] = (q - p) * (double) (q - p) + f[p];
+            closest[q] = p;
+        }
+    }
+
+    /** @return where the parabolas rooted at p and q intersect */
+    private static double intersection(double[] f, int p, int q) {
+        return ((f[q] + (double) q * q) - (f[p] + (double) p * p)) / (2d * q - 2d * p);
+    }
+}
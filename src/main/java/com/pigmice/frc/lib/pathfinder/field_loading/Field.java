@@ -1,6 +1,10 @@
 package com.pigmice.frc.lib.pathfinder.field_loading;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
 
@@ -28,20 +32,69 @@ public class Field {
             this.fieldSizeMeters = fieldSizeMeters;
             this.nodeSpacingMeters = nodeSpacingMeters;
         }
+
+        /** @return the number of nodes along the x axis of the field */
+        public int getGridWidth() {
+            return (int) (fieldSizeMeters.getX() / nodeSpacingMeters);
+        }
+
+        /** @return the number of nodes along the y axis of the field */
+        public int getGridHeight() {
+            return (int) (fieldSizeMeters.getY() / nodeSpacingMeters);
+        }
     }
 
     public final FieldConfig config;
-    public final ArrayList<Obstacle> obstacles;
+    /** The obstacles of this field, which can't be changed after it is created */
+    public final List<Obstacle> obstacles;
+    /** Named locations that paths are often found to, like scoring locations */
+    public final Map<String, Translation2d> landmarks;
+
+    private volatile ObstacleTree _obstacleTree;
+
+    /**
+     * Contains all the information needed to generate a NodeGrid including
+     * positions of objects
+     * 
+     * @param fieldConfig the configuration of this field (size, node spacing, etc.)
+     * @param obstacles   a list of all the obstacles present on the field, which
+     *                    is copied
+     */
+    public Field(FieldConfig config, List<Obstacle> obstacles) {
+        this(config, obstacles, new LinkedHashMap<String, Translation2d>());
+    }
 
     /**
      * Contains all the information needed to generate a NodeGrid including
      * positions of objects
      * 
      * @param fieldConfig the configuration of this field (size, node spacing, etc.)
-     * @param obstacles   a list of all the obstacles present on the field
+     * @param obstacles   a list of all the obstacles present on the field, which
+     *                    is copied
+     * @param landmarks   named locations on the field that paths are often found
+     *                    to
      */
-    public Field(FieldConfig config, ArrayList<Obstacle> obstacles) {
+    public Field(FieldConfig config, List<Obstacle> obstacles, Map<String, Translation2d> landmarks) {
         this.config = config;
-        this.obstacles = obstacles;
+        this.obstacles = Collections.unmodifiableList(new ArrayList<Obstacle>(obstacles));
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * @return a tree of this field's obstacles for finding the nearest one
+     *         quickly, built the first time it is needed
+     */
+    public ObstacleTree getObstacleTree() {
+        ObstacleTree tree = _obstacleTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = _obstacleTree;
+                if (tree == null) {
+                    tree = new ObstacleTree(obstacles);
+                    _obstacleTree = tree;
+                }
+            }
+        }
+        return tree;
     }
 }
@@ -0,0 +1,442 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pigmice.frc.lib.pathfinder.LandmarkCostGrid;
+import com.pigmice.frc.lib.pathfinder.NodeGrid;
+import com.pigmice.frc.lib.pathfinder.Pathfinder;
+import com.pigmice.frc.lib.pathfinder.field_loading.Field.FieldConfig;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A field together with its precomputed clearance grid and the cost grids of
+ * its landmarks, stored in a versioned binary file next to the field's JSON.
+ * Loading a cache memory-maps the file instead of parsing JSON and rebuilding
+ * the grid. A cache is only used if it was built from the same JSON contents
+ * and robot width, otherwise it is rebuilt and rewritten.
+ */
+public final class FieldCache {
+    private static final int MAGIC = 0x524C5046; // "RLPF"
+    private static final int VERSION = 3;
+
+    private static final byte RECTANGLE = 0;
+    private static final byte CIRCLE = 1;
+    private static final byte FIELD_BOUNDARIES = 2;
+    private static final byte ROTATED_RECTANGLE = 3;
+    private static final byte POLYGON = 4;
+    private static final byte KEEP_OUT_ZONE = 5;
+
+    public final Field field;
+    public final float[] clearance;
+    /** The cost grid of each landmark of the field, see {@link LandmarkCostGrid} */
+    public final Map<String, float[]> landmarkCosts;
+
+    /**
+     * A field and its clearance grid, without landmark cost grids
+     *
+     * @param field     the field
+     * @param clearance the distance from each node of the field to the nearest
+     *                  obstacle, indexed by gridY * width + gridX
+     */
+    public FieldCache(Field field, float[] clearance) {
+        this(field, clearance, new LinkedHashMap<String, float[]>());
+    }
+
+    /**
+     * A field, its clearance grid and the cost grids of its landmarks
+     *
+     * @param field         the field
+     * @param clearance     the distance from each node of the field to the nearest
+     *                      obstacle, indexed by gridY * width + gridX
+     * @param landmarkCosts the cost from each node to each landmark by name
+     */
+    public FieldCache(Field field, float[] clearance, Map<String, float[]> landmarkCosts) {
+        this.field = field;
+        this.clearance = clearance;
+        this.landmarkCosts = landmarkCosts;
+    }
+
+    /**
+     * Builds the clearance grid and landmark cost grids of a field
+     *
+     * @param field      the field
+     * @param robotWidth the width of the robot including bumpers
+     * @return the field and its grids
+     */
+    public static FieldCache build(Field field, double robotWidth) {
+        return build(field, robotWidth, false);
+    }
+
+    /**
+     * Builds the clearance grid and landmark cost grids of a field
+     *
+     * @param field             the field
+     * @param robotWidth        the width of the robot including bumpers
+     * @param distanceTransform if true, the clearance grid is built with
+     *                          {@link DistanceTransform}, exact within half the
+     *                          robot width plus {@link Pathfinder#DISTANCE_CUTOFF}
+     *                          of obstacles so the robot's nodes are the same
+     * @return the field and its grids
+     */
+    public static FieldCache build(Field field, double robotWidth, boolean distanceTransform) {
+        float[] clearance = distanceTransform
+                ? DistanceTransform.generateClearanceGrid(field, robotWidth / 2 + Pathfinder.DISTANCE_CUTOFF)
+                : SDFGenerator.generateClearanceGrid(field, true);
+        NodeGrid grid = new NodeGrid(robotWidth, field, clearance);
+
+        Map<String, float[]> landmarkCosts = new LinkedHashMap<String, float[]>();
+        for (Map.Entry<String, Translation2d> landmark : field.landmarks.entrySet())
+            landmarkCosts.put(landmark.getKey(),
+                    LandmarkCostGrid.generate(grid, grid.FindCloseIndex(landmark.getValue())));
+
+        return new FieldCache(field, clearance, landmarkCosts);
+    }
+
+    /**
+     * Loads a field from the deploy directory, using its cache if it is up to
+     * date and rebuilding the cache otherwise
+     *
+     * @param fieldName  the name of the field's JSON file
+     * @param robotWidth the width of the robot including bumpers
+     * @return the field and its clearance grid
+     */
+    public static FieldCache load(String fieldName, double robotWidth) {
+        File jsonFile = FieldParser.getFieldFile(fieldName);
+        return load(jsonFile, getCacheFile(jsonFile, robotWidth), robotWidth);
+    }
+
+    /**
+     * Loads a field, using its cache if it is up to date and rebuilding the cache
+     * otherwise
+     *
+     * @param jsonFile   the field's JSON file
+     * @param cacheFile  where the field's cache is stored
+     * @param robotWidth the width of the robot including bumpers
+     * @return the field and its clearance grid
+     */
+    public static FieldCache load(File jsonFile, File cacheFile, double robotWidth) {
+        byte[] sourceHash = null;
+        try {
+            sourceHash = hashSource(Files.readAllBytes(jsonFile.toPath()), robotWidth);
+
+            FieldCache cache = read(cacheFile, sourceHash, robotWidth);
+            if (cache != null)
+                return cache;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        FieldCache cache = build(FieldParser.parseField(jsonFile), robotWidth);
+
+        if (sourceHash != null) {
+            try {
+                cache.write(cacheFile, sourceHash, robotWidth);
+            } catch (IOException | IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+        }
+        return cache;
+    }
+
+    /** @return where the cache of a field's JSON file for a robot width is stored */
+    public static File getCacheFile(File jsonFile, double robotWidth) {
+        String name = jsonFile.getName();
+        if (name.endsWith(".json"))
+            name = name.substring(0, name.length() - ".json".length());
+
+        return new File(jsonFile.getParentFile(), name + "-" + Math.round(robotWidth * 1000) + "mm.bin");
+    }
+
+    /**
+     * @return a hash of the contents of a field's JSON file and the robot width,
+     *         used to tell if a cache is stale
+     */
+    public static byte[] hashSource(byte[] json, double robotWidth) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(json);
+            digest.update(ByteBuffer.allocate(Double.BYTES).putDouble(robotWidth).array());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads a cache by memory-mapping it. The header is read and checked first,
+     * so a stale cache is never mapped and can be replaced right away, even on
+     * Windows where a mapped file can't be.
+     *
+     * @param cacheFile  the cache to read
+     * @param sourceHash the hash the cache must have been built from
+     * @param robotWidth the robot width the cache must have been built for
+     * @return the cached field, or null if the cache is missing, stale or invalid
+     */
+    public static FieldCache read(File cacheFile, byte[] sourceHash, double robotWidth) throws IOException {
+        if (!cacheFile.isFile())
+            return null;
+
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES + sourceHash.length + Double.BYTES);
+            while (header.hasRemaining()) {
+                // Too short to be a cache
+                if (channel.read(header) < 0)
+                    return null;
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                return null;
+
+            byte[] storedHash = new byte[sourceHash.length];
+            header.get(storedHash);
+            if (!Arrays.equals(storedHash, sourceHash) || header.getDouble() != robotWidth)
+                return null;
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, header.limit(),
+                    channel.size() - header.limit());
+
+            FieldConfig config = new FieldConfig(readTranslation(buffer), readTranslation(buffer),
+                    buffer.getDouble());
+
+            int obstacleCount = buffer.getInt();
+            ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>(obstacleCount);
+            for (int i = 0; i < obstacleCount; i++)
+                obstacles.add(readObstacle(buffer));
+
+            int landmarkCount = buffer.getInt();
+            Map<String, Translation2d> landmarks = new LinkedHashMap<String, Translation2d>();
+            for (int i = 0; i < landmarkCount; i++)
+                landmarks.put(readString(buffer), readTranslation(buffer));
+
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if (width != config.getGridWidth() || height != config.getGridHeight())
+                return null;
+
+            float[] clearance = readGrid(buffer, width * height);
+
+            Map<String, float[]> landmarkCosts = new LinkedHashMap<String, float[]>();
+            for (String name : landmarks.keySet())
+                landmarkCosts.put(name, readGrid(buffer, width * height));
+
+            return new FieldCache(new Field(config, obstacles, landmarks), clearance, landmarkCosts);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Truncated or corrupt cache
+            return null;
+        }
+    }
+
+    /**
+     * Writes this cache to a file
+     *
+     * @param cacheFile  where to write the cache
+     * @param sourceHash the hash of the JSON this cache was built from
+     * @param robotWidth the robot width this cache was built for
+     * @throws IllegalArgumentException if the field has an obstacle type that
+     *                                  can't be cached, or a landmark without a
+     *                                  cost grid
+     */
+    public void write(File cacheFile, byte[] sourceHash, double robotWidth) throws IOException {
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.write(sourceHash);
+            output.writeDouble(robotWidth);
+
+            writeTranslation(output, field.config.bottomLeftPositionMeters);
+            writeTranslation(output, field.config.fieldSizeMeters);
+            output.writeDouble(field.config.nodeSpacingMeters);
+
+            output.writeInt(field.obstacles.size());
+            for (Obstacle obstacle : field.obstacles)
+                writeObstacle(output, obstacle);
+
+            output.writeInt(field.landmarks.size());
+            for (Map.Entry<String, Translation2d> landmark : field.landmarks.entrySet()) {
+                output.writeUTF(landmark.getKey());
+                writeTranslation(output, landmark.getValue());
+            }
+
+            output.writeInt(field.config.getGridWidth());
+            output.writeInt(field.config.getGridHeight());
+            writeGrid(output, clearance);
+
+            for (String name : field.landmarks.keySet()) {
+                float[] costs = landmarkCosts.get(name);
+                if (costs == null)
+                    throw new IllegalArgumentException("Missing the cost grid of landmark " + name);
+                writeGrid(output, costs);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            tempFile.delete();
+            throw e;
+        }
+
+        // Replace the old cache only once the new one is complete
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeObstacle(DataOutputStream output, Obstacle obstacle) throws IOException {
+        if (obstacle instanceof SDFGenerator.Rectangle) {
+            SDFGenerator.Rectangle rectangle = (SDFGenerator.Rectangle) obstacle;
+            output.writeByte(RECTANGLE);
+            writeTranslation(output, rectangle.getPosition());
+            writeTranslation(output, rectangle.getScale());
+        } else if (obstacle instanceof SDFGenerator.Circle) {
+            SDFGenerator.Circle circle = (SDFGenerator.Circle) obstacle;
+            output.writeByte(CIRCLE);
+            writeTranslation(output, circle.getPosition());
+            output.writeDouble(circle.getRadius());
+        } else if (obstacle instanceof SDFGenerator.FieldBoundaries) {
+            SDFGenerator.FieldBoundaries boundaries = (SDFGenerator.FieldBoundaries) obstacle;
+            output.writeByte(FIELD_BOUNDARIES);
+            writeTranslation(output, boundaries.getMinCorner());
+            writeTranslation(output, boundaries.getMaxCorner());
+        } else if (obstacle instanceof SDFGenerator.RotatedRectangle) {
+            SDFGenerator.RotatedRectangle rectangle = (SDFGenerator.RotatedRectangle) obstacle;
+            output.writeByte(ROTATED_RECTANGLE);
+            writeTranslation(output, rectangle.getPosition());
+            writeTranslation(output, rectangle.getScale());
+            output.writeDouble(rectangle.getRotation().getRadians());
+        } else if (obstacle instanceof SDFGenerator.Polygon) {
+            List<Translation2d> vertices = ((SDFGenerator.Polygon) obstacle).getVertices();
+            output.writeByte(obstacle instanceof SDFGenerator.KeepOutZone ? KEEP_OUT_ZONE : POLYGON);
+            output.writeInt(vertices.size());
+            for (Translation2d vertex : vertices)
+                writeTranslation(output, vertex);
+        } else {
+            throw new IllegalArgumentException("Can't cache obstacle of type " + obstacle.getClass().getName());
+        }
+    }
+
+    private static Obstacle readObstacle(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case RECTANGLE:
+                return new SDFGenerator.Rectangle(readTranslation(buffer), readTranslation(buffer));
+
+            case CIRCLE:
+                return new SDFGenerator.Circle(readTranslation(buffer), buffer.getDouble());
+
+            case FIELD_BOUNDARIES:
+                return new SDFGenerator.FieldBoundaries(readTranslation(buffer), readTranslation(buffer));
+
+            case ROTATED_RECTANGLE:
+                return new SDFGenerator.RotatedRectangle(readTranslation(buffer), readTranslation(buffer),
+                        new Rotation2d(buffer.getDouble()));
+
+            case POLYGON:
+                return new SDFGenerator.Polygon(readVertices(buffer));
+
+            case KEEP_OUT_ZONE:
+                return new SDFGenerator.KeepOutZone(readVertices(buffer));
+
+            default:
+                throw new IllegalArgumentException("Unknown cached obstacle type " + type);
+        }
+    }
+
+    private static List<Translation2d> readVertices(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / (2 * Double.BYTES))
+            throw new IllegalArgumentException("Invalid cached vertex count " + count);
+
+        ArrayList<Translation2d> vertices = new ArrayList<Translation2d>(count);
+        for (int i = 0; i < count; i++)
+            vertices.add(readTranslation(buffer));
+        return vertices;
+    }
+
+    private static void writeGrid(DataOutputStream output, float[] grid) throws IOException {
+        for (float value : grid)
+            output.writeFloat(value);
+    }
+
+    private static float[] readGrid(ByteBuffer buffer, int length) {
+        float[] grid = new float[length];
+        buffer.asFloatBuffer().get(grid);
+        buffer.position(buffer.position() + length * Float.BYTES);
+        return grid;
+    }
+
+    /** Reads a string written by {@link DataOutputStream#writeUTF(String)} */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTranslation(DataOutputStream output, Translation2d translation) throws IOException {
+        output.writeDouble(translation.getX());
+        output.writeDouble(translation.getY());
+    }
+
+    private static Translation2d readTranslation(ByteBuffer buffer) {
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        return new Translation2d(x, y);
+    }
+
+    /**
+     * Builds the caches for every field JSON in a directory, used by the
+     * generatePathfinderCache Gradle task
+     *
+     * @param args the directory containing the field JSONs, followed by one or
+     *             more robot widths in meters
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: FieldCache <pathfinder directory> <robot width>...");
+            System.exit(1);
+        }
+
+        File directory = new File(args[0]);
+        File[] jsonFiles = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (jsonFiles == null) {
+            System.err.println("No pathfinder directory at " + directory);
+            return;
+        }
+
+        for (File jsonFile : jsonFiles) {
+            for (int i = 1; i < args.length; i++) {
+                double robotWidth = Double.parseDouble(args[i]);
+                File cacheFile = getCacheFile(jsonFile, robotWidth);
+
+                byte[] sourceHash = hashSource(Files.readAllBytes(jsonFile.toPath()), robotWidth);
+                if (read(cacheFile, sourceHash, robotWidth) != null) {
+                    System.out.println(cacheFile + " is up to date");
+                    continue;
+                }
+
+                build(FieldParser.parseField(jsonFile), robotWidth).write(cacheFile, sourceHash, robotWidth);
+                System.out.println("Generated " + cacheFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+/**
+ * Thrown when a field file isn't valid JSON or doesn't describe a field, with
+ * the line and column of the problem
+ */
+public class FieldParseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int _line;
+    private final int _column;
+
+    /**
+     * Creates a new {@link FieldParseException}
+     * 
+     * @param message what is wrong with the field file
+     * @param line    the line of the problem, starting at 1
+     * @param column  the column of the problem, starting at 1
+     */
+    public FieldParseException(String message, int line, int column) {
+        super(message + " at line " + line + ", column " + column);
+        _line = line;
+        _column = column;
+    }
+
+    /** @return the line of the problem, starting at 1 */
+    public int getLine() {
+        return _line;
+    }
+
+    /** @return the column of the problem, starting at 1 */
+    public int getColumn() {
+        return _column;
+    }
+}
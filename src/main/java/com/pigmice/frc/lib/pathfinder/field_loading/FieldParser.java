@@ -1,91 +1,319 @@
 package com.pigmice.frc.lib.pathfinder.field_loading;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.pigmice.frc.lib.pathfinder.field_loading.Field.FieldConfig;
 import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
-
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.wpilibj.Filesystem;
 
+/**
+ * Reads saved field JSON files. The file is streamed in one pass, building each
+ * obstacle as soon as its JSON object ends, and members may be in any order.
+ * Obstacles have a "type" and these members:
+ * <ul>
+ * <li>"rectangle": "xPos", "yPos", "width", "height"</li>
+ * <li>"rotatedRectangle": "xPos", "yPos", "width", "height",
+ * "rotationDegrees"</li>
+ * <li>"circle": "xPos", "yPos", "radius"</li>
+ * <li>"polygon" and "keepOutZone": "vertices", an array of [x, y] corners</li>
+ * <li>"fieldBoundaries": "xPos", "yPos", "fieldSizeX", "FieldSizeY"</li>
+ * </ul>
+ * Unknown members are skipped.
+ */
 public final class FieldParser {
     /**
      * Parses a field saved in a JSON file into a {@link Field} object
      * 
      * @param fieldName the name of the JSON file
      * @return a {@link Field} object containing data from the JSON file
+     * @throws FieldParseException if the file doesn't describe a field
      */
     public static Field parseField(String fieldName) {
-        JSONParser parser = new JSONParser();
-
-        JSONObject fieldData = null;
-        try {
-            fieldData = (JSONObject) parser.parse(
-                    new FileReader(new File(Filesystem.getDeployDirectory(), "pathfinder/" + fieldName + ".json")));
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        return parseField(getFieldFile(fieldName));
+    }
+
+    /**
+     * @param fieldName the name of the JSON file
+     * @return the location of the field's JSON file in the deploy directory
+     */
+    public static File getFieldFile(String fieldName) {
+        return new File(Filesystem.getDeployDirectory(), "pathfinder/" + fieldName + ".json");
+    }
+
+    /**
+     * Parses a field saved in a JSON file into a {@link Field} object
+     * 
+     * @param fieldFile the JSON file
+     * @return a {@link Field} object containing data from the JSON file
+     * @throws FieldParseException if the file doesn't describe a field
+     * @throws UncheckedIOException if the file can't be read
+     */
+    public static Field parseField(File fieldFile) {
+        try (Reader reader = new InputStreamReader(new FileInputStream(fieldFile), StandardCharsets.UTF_8)) {
+            return parseField(reader);
         } catch (IOException e) {
-            e.printStackTrace();
-        } catch (ParseException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Couldn't read field " + fieldFile, e);
         }
+    }
+
+    /**
+     * Parses a field saved as JSON into a {@link Field} object
+     * 
+     * @param reader the JSON, which doesn't need to be buffered
+     * @return a {@link Field} object containing data from the JSON
+     * @throws FieldParseException if the JSON doesn't describe a field
+     */
+    public static Field parseField(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
 
-        JSONObject configJSON = (JSONObject) fieldData.get("config");
-        JSONArray obstaclesJSON = (JSONArray) fieldData.get("obstacles");
+        FieldConfig config = null;
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        Map<String, Translation2d> landmarks = new LinkedHashMap<String, Translation2d>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "config":
+                    config = parseConfig(json);
+                    break;
+
+                case "obstacles":
+                    json.beginArray();
+                    while (json.hasNext())
+                        obstacles.add(parseObstacle(json));
+                    json.endArray();
+                    break;
 
-        ArrayList<Obstacle> obstacles = parseObstacles(obstaclesJSON);
+                case "landmarks":
+                    parseLandmarks(json, landmarks);
+                    break;
 
-        FieldConfig config = parseConfig(configJSON);
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        json.endDocument();
+
+        if (config == null)
+            throw json.error("Missing the field config");
 
         obstacles.add(new SDFGenerator.FieldBoundaries(config.bottomLeftPositionMeters,
                 config.bottomLeftPositionMeters.plus(config.fieldSizeMeters)));
 
-        return new Field(config, obstacles);
+        return new Field(config, obstacles, landmarks);
     }
 
     /**
-     * Parses through the obstacles in a saved field JSON
+     * Parses through the landmarks in a saved field JSON
      * 
-     * @param obstaclesJSON the JSON object containing the obstacles
-     * @return an array of obstacles
+     * @param json      the reader, positioned at the array of landmarks
+     * @param landmarks the map to add the position of each landmark to by name, in
+     *                  the order they were saved
      */
-    private static ArrayList<Obstacle> parseObstacles(JSONArray obstaclesJSON) {
-        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+    private static void parseLandmarks(JsonReader json, Map<String, Translation2d> landmarks) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            json.beginObject();
+            int line = json.getLine();
+            int column = json.getColumn();
 
-        for (Object obstacle : obstaclesJSON) {
-            obstacles.add(Obstacle.fromJSON((JSONObject) obstacle));
+            String name = null;
+            double x = Double.NaN;
+            double y = Double.NaN;
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "name":
+                        name = json.nextString();
+                        break;
+                    case "xPos":
+                        x = json.nextDouble();
+                        break;
+                    case "yPos":
+                        y = json.nextDouble();
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+
+            if (name == null)
+                throw new FieldParseException("Landmark is missing \"name\"", line, column);
+            landmarks.put(name, new Translation2d(require(x, "xPos", line, column), require(y, "yPos", line, column)));
+        }
+        json.endArray();
+    }
+
+    /**
+     * Parses one obstacle in a saved field JSON
+     * 
+     * @param json the reader, positioned at the obstacle's object
+     * @return the obstacle
+     */
+    private static Obstacle parseObstacle(JsonReader json) throws IOException {
+        json.beginObject();
+        int line = json.getLine();
+        int column = json.getColumn();
+
+        String type = null;
+        double x = Double.NaN;
+        double y = Double.NaN;
+        double width = Double.NaN;
+        double height = Double.NaN;
+        double radius = Double.NaN;
+        double rotationDegrees = Double.NaN;
+        ArrayList<Translation2d> vertices = null;
+
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "type":
+                    type = json.nextString();
+                    break;
+                case "xPos":
+                    x = json.nextDouble();
+                    break;
+                case "yPos":
+                    y = json.nextDouble();
+                    break;
+                case "width":
+                case "fieldSizeX":
+                    width = json.nextDouble();
+                    break;
+                case "height":
+                case "FieldSizeY":
+                    height = json.nextDouble();
+                    break;
+                case "radius":
+                    radius = json.nextDouble();
+                    break;
+                case "rotationDegrees":
+                    rotationDegrees = json.nextDouble();
+                    break;
+                case "vertices":
+                    vertices = new ArrayList<Translation2d>();
+                    json.beginArray();
+                    while (json.hasNext())
+                        vertices.add(parseTranslation(json));
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+            }
         }
+        json.endObject();
+
+        if (type == null)
+            throw new FieldParseException("Obstacle is missing \"type\"", line, column);
+
+        switch (type) {
+            case "rectangle":
+            case "fieldBoundaries":
+                return new SDFGenerator.Rectangle(
+                        new Translation2d(require(x, "xPos", line, column), require(y, "yPos", line, column)),
+                        new Translation2d(require(width, "width", line, column),
+                                require(height, "height", line, column)));
+
+            case "rotatedRectangle":
+                return new SDFGenerator.RotatedRectangle(
+                        new Translation2d(require(x, "xPos", line, column), require(y, "yPos", line, column)),
+                        new Translation2d(require(width, "width", line, column),
+                                require(height, "height", line, column)),
+                        Rotation2d.fromDegrees(require(rotationDegrees, "rotationDegrees", line, column)));
 
-        return obstacles;
+            case "circle":
+                return new SDFGenerator.Circle(
+                        new Translation2d(require(x, "xPos", line, column), require(y, "yPos", line, column)),
+                        require(radius, "radius", line, column));
+
+            case "polygon":
+                return new SDFGenerator.Polygon(requireVertices(vertices, line, column));
+
+            case "keepOutZone":
+                return new SDFGenerator.KeepOutZone(requireVertices(vertices, line, column));
+
+            default:
+                throw new FieldParseException("Unknown obstacle type \"" + type + "\"", line, column);
+        }
     }
 
     /**
      * Parses through the config in a saved field JSON
      * 
-     * @param config the JSON object containing field config
+     * @param json the reader, positioned at the config's object
      * @return a {@link FieldConfig} object containing data from the JSON
      */
-    private static FieldConfig parseConfig(JSONObject config) {
-        JSONArray bottomLeftPositionMetersJSON = (JSONArray) config.get("bottomLeftPositionMeters");
-        JSONArray fieldSizeMetersJSON = (JSONArray) config.get("fieldSizeMeters");
+    private static FieldConfig parseConfig(JsonReader json) throws IOException {
+        json.beginObject();
+        int line = json.getLine();
+        int column = json.getColumn();
+
+        Translation2d bottomLeftPositionMeters = null;
+        Translation2d fieldSizeMeters = null;
+        double nodeSpacingMeters = Double.NaN;
+
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "bottomLeftPositionMeters":
+                    bottomLeftPositionMeters = parseTranslation(json);
+                    break;
+                case "fieldSizeMeters":
+                    fieldSizeMeters = parseTranslation(json);
+                    break;
+                case "nodeSpacingMeters":
+                    nodeSpacingMeters = json.nextDouble();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (bottomLeftPositionMeters == null)
+            throw new FieldParseException("Config is missing \"bottomLeftPositionMeters\"", line, column);
+        if (fieldSizeMeters == null)
+            throw new FieldParseException("Config is missing \"fieldSizeMeters\"", line, column);
+
+        return new FieldConfig(bottomLeftPositionMeters, fieldSizeMeters,
+                require(nodeSpacingMeters, "nodeSpacingMeters", line, column));
+    }
 
-        Translation2d bottomLeftPositionMeters = new Translation2d(
-                (double) bottomLeftPositionMetersJSON.get(0), (double) bottomLeftPositionMetersJSON.get(1));
+    /** @return the position saved as a [x, y] array */
+    private static Translation2d parseTranslation(JsonReader json) throws IOException {
+        json.beginArray();
+        if (!json.hasNext())
+            throw json.error("Expected [x, y]");
+        double x = json.nextDouble();
+        if (!json.hasNext())
+            throw json.error("Expected [x, y]");
+        double y = json.nextDouble();
+        json.endArray();
 
-        Translation2d fieldSizeMeters = new Translation2d(
-                (double) fieldSizeMetersJSON.get(0), (double) fieldSizeMetersJSON.get(1));
+        return new Translation2d(x, y);
+    }
 
-        double nodeSpacingMeters = (double) config.get("nodeSpacingMeters");
+    /** @return the value of a member, which is NaN if the member wasn't in the object */
+    private static double require(double value, String name, int line, int column) {
+        if (Double.isNaN(value))
+            throw new FieldParseException("Missing \"" + name + "\"", line, column);
+        return value;
+    }
 
-        return new FieldConfig(bottomLeftPositionMeters, fieldSizeMeters, nodeSpacingMeters);
+    private static ArrayList<Translation2d> requireVertices(ArrayList<Translation2d> vertices, int line, int column) {
+        if (vertices == null || vertices.size() < 3)
+            throw new FieldParseException("Polygon needs at least 3 \"vertices\"", line, column);
+        return vertices;
     }
-}
\ No newline at end of file
+}
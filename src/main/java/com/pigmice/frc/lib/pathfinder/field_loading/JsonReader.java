@@ -0,0 +1,327 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads JSON one token at a time from a {@link Reader}, so a document is parsed
+ * in a single pass without building a tree of it first. Numbers are read
+ * straight into doubles. Every error is a {@link FieldParseException} with the
+ * line and column of the token that caused it.
+ * <p>
+ * Members of an object are read with
+ * 
+ * <pre>
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     // read or skip the value
+ * }
+ * reader.endObject();
+ * </pre>
+ * 
+ * and arrays the same way without the names. {@link #hasNext()} consumes the
+ * comma between values, so it must be called exactly once before each value.
+ */
+final class JsonReader {
+    private static final int EMPTY_OBJECT = 0;
+    private static final int NONEMPTY_OBJECT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+
+    private final Reader _reader;
+    private final char[] _buffer = new char[8192];
+    private int _position = 0;
+    private int _limit = 0;
+
+    /** The position of the next character */
+    private int _line = 1;
+    private int _column = 1;
+
+    /** The position of the last token that was started */
+    private int _tokenLine = 1;
+    private int _tokenColumn = 1;
+
+    /** The kind of each object or array being read, innermost last */
+    private int[] _scopes = new int[16];
+    private int _depth = 0;
+
+    /** Reused to collect strings and numbers */
+    private final StringBuilder _text = new StringBuilder();
+
+    /**
+     * Creates a new {@link JsonReader}
+     * 
+     * @param reader the JSON to read, which is buffered by this reader
+     */
+    JsonReader(Reader reader) {
+        _reader = reader;
+    }
+
+    /** @return the line of the last token that was started, starting at 1 */
+    int getLine() {
+        return _tokenLine;
+    }
+
+    /** @return the column of the last token that was started, starting at 1 */
+    int getColumn() {
+        return _tokenColumn;
+    }
+
+    /** @return an exception at the position of the last token that was started */
+    FieldParseException error(String message) {
+        return new FieldParseException(message, _tokenLine, _tokenColumn);
+    }
+
+    void beginObject() throws IOException {
+        expect('{', "an object");
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        expect('}', "'}'");
+        pop(EMPTY_OBJECT, NONEMPTY_OBJECT);
+    }
+
+    void beginArray() throws IOException {
+        expect('[', "an array");
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        expect(']', "']'");
+        pop(EMPTY_ARRAY, NONEMPTY_ARRAY);
+    }
+
+    /**
+     * Checks for another member of the current object or value of the current
+     * array, consuming the comma before it
+     * 
+     * @return true if there is another member or value to read
+     */
+    boolean hasNext() throws IOException {
+        if (_depth == 0)
+            throw new IllegalStateException("Not reading an object or array");
+
+        int scope = _scopes[_depth - 1];
+        int c = nextNonWhitespace();
+        if (c == '}' || c == ']')
+            return false;
+
+        if (scope == NONEMPTY_OBJECT || scope == NONEMPTY_ARRAY) {
+            if (c != ',')
+                throw error("Expected ',' or '" + (scope == NONEMPTY_OBJECT ? '}' : ']') + "' but found "
+                        + describe(c));
+            readChar();
+            nextNonWhitespace();
+        } else {
+            _scopes[_depth - 1] = scope + 1;
+        }
+        return true;
+    }
+
+    /** @return the name of the next member of the current object */
+    String nextName() throws IOException {
+        if (nextNonWhitespace() != '"')
+            throw error("Expected a name but found " + describe(peekChar()));
+        String name = readString();
+        expect(':', "':'");
+        return name;
+    }
+
+    String nextString() throws IOException {
+        if (nextNonWhitespace() != '"')
+            throw error("Expected a string but found " + describe(peekChar()));
+        return readString();
+    }
+
+    double nextDouble() throws IOException {
+        int c = nextNonWhitespace();
+        if (c != '-' && (c < '0' || c > '9'))
+            throw error("Expected a number but found " + describe(c));
+
+        _text.setLength(0);
+        while (isNumberChar(peekChar()))
+            _text.append((char) readChar());
+
+        try {
+            return Double.parseDouble(_text.toString());
+        } catch (NumberFormatException e) {
+            throw error("Malformed number '" + _text + "'");
+        }
+    }
+
+    /** Skips the next value, including everything inside it if it is an object or array */
+    void skipValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+                break;
+
+            case '[':
+                beginArray();
+                while (hasNext())
+                    skipValue();
+                endArray();
+                break;
+
+            case '"':
+                readString();
+                break;
+
+            case 't':
+            case 'f':
+            case 'n':
+                _text.setLength(0);
+                while (Character.isLetter(peekChar()))
+                    _text.append((char) readChar());
+
+                String literal = _text.toString();
+                if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null"))
+                    throw error("Unexpected '" + literal + "'");
+                break;
+
+            default:
+                nextDouble();
+        }
+    }
+
+    /** Checks that nothing but whitespace is left after the document */
+    void endDocument() throws IOException {
+        int c = nextNonWhitespace();
+        if (c >= 0)
+            throw error("Expected the end of the file but found " + describe(c));
+    }
+
+    private void push(int scope) {
+        if (_depth == _scopes.length)
+            _scopes = Arrays.copyOf(_scopes, _depth * 2);
+        _scopes[_depth++] = scope;
+    }
+
+    private void pop(int emptyScope, int nonEmptyScope) {
+        if (_depth == 0 || (_scopes[_depth - 1] != emptyScope && _scopes[_depth - 1] != nonEmptyScope))
+            throw new IllegalStateException("Closing a scope that isn't open");
+        _depth--;
+    }
+
+    /** Consumes the next token, which must be the given character */
+    private void expect(char expected, String description) throws IOException {
+        int c = nextNonWhitespace();
+        if (c != expected)
+            throw error("Expected " + description + " but found " + describe(c));
+        readChar();
+    }
+
+    /** Reads the string starting at the next character, which is its opening quote */
+    private String readString() throws IOException {
+        readChar();
+        _text.setLength(0);
+
+        while (true) {
+            int c = readChar();
+            if (c == '"')
+                return _text.toString();
+            if (c < 0)
+                throw error("Unterminated string");
+            if (c < 0x20)
+                throw error("Unescaped control character in string");
+
+            if (c == '\\')
+                c = readEscape();
+            _text.append((char) c);
+        }
+    }
+
+    /** @return the character of the escape sequence after a backslash */
+    private int readEscape() throws IOException {
+        int c = readChar();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(readChar(), 16);
+                    if (digit < 0)
+                        throw error("Malformed unicode escape in string");
+                    value = value * 16 + digit;
+                }
+                return value;
+            default:
+                throw error("Invalid escape sequence in string");
+        }
+    }
+
+    /**
+     * Skips whitespace and marks the start of the next token
+     * 
+     * @return the next character without consuming it, or -1 at the end of the
+     *         document
+     */
+    private int nextNonWhitespace() throws IOException {
+        int c = peekChar();
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            readChar();
+            c = peekChar();
+        }
+
+        _tokenLine = _line;
+        _tokenColumn = _column;
+        return c;
+    }
+
+    private int peekChar() throws IOException {
+        if (_position == _limit) {
+            _limit = _reader.read(_buffer, 0, _buffer.length);
+            _position = 0;
+            if (_limit <= 0) {
+                _limit = 0;
+                return -1;
+            }
+        }
+        return _buffer[_position];
+    }
+
+    private int readChar() throws IOException {
+        int c = peekChar();
+        if (c < 0)
+            return c;
+
+        _position++;
+        if (c == '\n') {
+            _line++;
+            _column = 1;
+        } else {
+            _column++;
+        }
+        return c;
+    }
+
+    private static boolean isNumberChar(int c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    private static String describe(int c) {
+        return c < 0 ? "the end of the file" : "'" + (char) c + "'";
+    }
+}
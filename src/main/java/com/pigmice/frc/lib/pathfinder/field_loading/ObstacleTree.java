@@ -0,0 +1,247 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A bounding volume hierarchy over the obstacles of a field, used to find the
+ * distance to the nearest obstacle without checking every obstacle. Each node
+ * of the tree stores the box around the obstacles below it; an obstacle can't
+ * be closer than the signed distance to its box, so a whole branch is skipped
+ * once an obstacle closer than its box has been found. Unbounded obstacles like
+ * {@link SDFGenerator.FieldBoundaries} are always checked.
+ * <p>
+ * The tree is immutable and built once from a list of obstacles, so it is safe
+ * to query from several threads.
+ */
+public final class ObstacleTree {
+    private final Obstacle[] _unbounded;
+
+    /** The obstacle of each leaf, or null for the inner nodes */
+    private final Obstacle[] _obstacles;
+    /** The children of each inner node. The first child is always the next node. */
+    private final int[] _secondChild;
+    private final double[] _minX;
+    private final double[] _minY;
+    private final double[] _maxX;
+    private final double[] _maxY;
+    private int _nodeCount = 0;
+    /** The number of levels below the root of the tree */
+    private int _depth = 0;
+
+    /**
+     * The state of a query for each thread, so queries at a high rate don't
+     * allocate. Each stack holds every node that can be waiting at once.
+     */
+    private final ThreadLocal<Query> _queries = ThreadLocal.withInitial(() -> new Query(_depth + 2));
+
+    /**
+     * Creates a new {@link ObstacleTree}
+     * 
+     * @param obstacles the obstacles to put in the tree, which must not change
+     *                  shape afterwards
+     */
+    public ObstacleTree(List<Obstacle> obstacles) {
+        ArrayList<Obstacle> unbounded = new ArrayList<Obstacle>();
+        ArrayList<Obstacle> bounded = new ArrayList<Obstacle>();
+        for (Obstacle obstacle : obstacles) {
+            if (obstacle.getMinBounds() == null || obstacle.getMaxBounds() == null)
+                unbounded.add(obstacle);
+            else
+                bounded.add(obstacle);
+        }
+        _unbounded = unbounded.toArray(new Obstacle[0]);
+
+        int maxNodes = Math.max(0, 2 * bounded.size() - 1);
+        _obstacles = new Obstacle[maxNodes];
+        _secondChild = new int[maxNodes];
+        _minX = new double[maxNodes];
+        _minY = new double[maxNodes];
+        _maxX = new double[maxNodes];
+        _maxY = new double[maxNodes];
+
+        if (!bounded.isEmpty())
+            build(bounded.toArray(new Obstacle[0]), 0, bounded.size(), 0);
+    }
+
+    /**
+     * Calculates the distance from a position to the nearest obstacle in this
+     * tree. The result is exactly the same as checking every obstacle.
+     * 
+     * @param position the position to measure from
+     * @return the distance to the nearest edge of any obstacle, negative inside an
+     *         obstacle, or {@link Double#MAX_VALUE} if there are no obstacles
+     */
+    public double getDistanceFrom(Translation2d position) {
+        return search(position).minDistance;
+    }
+
+    /**
+     * Finds the obstacle closest to a position, for example to know what the
+     * robot is about to hit
+     * 
+     * @param position the position to measure from
+     * @return the obstacle with the smallest distance from the position, the one
+     *         the position is deepest inside if it is inside any, or null if
+     *         there are no obstacles
+     */
+    public Obstacle getNearestObstacle(Translation2d position) {
+        return search(position).nearest;
+    }
+
+    /**
+     * Finds the nearest obstacle to a position, skipping every branch whose box is
+     * farther than the nearest obstacle found so far
+     * 
+     * @return the calling thread's query, holding the nearest obstacle and its
+     *         distance
+     */
+    private Query search(Translation2d position) {
+        Query query = _queries.get();
+        query.nearest = null;
+        query.minDistance = Double.MAX_VALUE;
+
+        for (Obstacle obstacle : _unbounded)
+            query.consider(obstacle, obstacle.getDistanceFrom(position));
+
+        if (_nodeCount == 0)
+            return query;
+
+        double x = position.getX();
+        double y = position.getY();
+
+        int[] stack = query.stack;
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            // Ties are still checked so the result matches checking every obstacle
+            if (getBoxDistance(node, x, y) > query.minDistance)
+                continue;
+
+            if (_obstacles[node] != null) {
+                query.consider(_obstacles[node], _obstacles[node].getDistanceFrom(position));
+                continue;
+            }
+
+            int first = node + 1;
+            int second = _secondChild[node];
+
+            // Visit the closer child first, so the other is more likely to be skipped
+            if (getBoxDistance(first, x, y) <= getBoxDistance(second, x, y)) {
+                stack[stackSize++] = second;
+                stack[stackSize++] = first;
+            } else {
+                stack[stackSize++] = first;
+                stack[stackSize++] = second;
+            }
+        }
+        return query;
+    }
+
+    /** @return the number of obstacles in this tree */
+    public int size() {
+        return _unbounded.length + (_nodeCount + 1) / 2;
+    }
+
+    /**
+     * Builds the subtree of the obstacles from start to end, splitting them in
+     * half along the axis their centers are most spread out on
+     * 
+     * @return the index of the subtree's root
+     */
+    private int build(Obstacle[] obstacles, int start, int end, int depth) {
+        int node = _nodeCount++;
+        _depth = Math.max(_depth, depth);
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double minCenterX = Double.POSITIVE_INFINITY;
+        double minCenterY = Double.POSITIVE_INFINITY;
+        double maxCenterX = Double.NEGATIVE_INFINITY;
+        double maxCenterY = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++) {
+            Translation2d min = obstacles[i].getMinBounds();
+            Translation2d max = obstacles[i].getMaxBounds();
+            minX = Math.min(minX, min.getX());
+            minY = Math.min(minY, min.getY());
+            maxX = Math.max(maxX, max.getX());
+            maxY = Math.max(maxY, max.getY());
+
+            double centerX = getCenterX(obstacles[i]);
+            double centerY = getCenterY(obstacles[i]);
+            minCenterX = Math.min(minCenterX, centerX);
+            minCenterY = Math.min(minCenterY, centerY);
+            maxCenterX = Math.max(maxCenterX, centerX);
+            maxCenterY = Math.max(maxCenterY, centerY);
+        }
+        _minX[node] = minX;
+        _minY[node] = minY;
+        _maxX[node] = maxX;
+        _maxY[node] = maxY;
+
+        if (end - start == 1) {
+            _obstacles[node] = obstacles[start];
+            return node;
+        }
+
+        Comparator<Obstacle> byCenter = maxCenterX - minCenterX >= maxCenterY - minCenterY
+                ? Comparator.comparingDouble(ObstacleTree::getCenterX)
+                : Comparator.comparingDouble(ObstacleTree::getCenterY);
+        Arrays.sort(obstacles, start, end, byCenter);
+
+        int middle = (start + end) / 2;
+        build(obstacles, start, middle, depth + 1);
+        _secondChild[node] = build(obstacles, middle, end, depth + 1);
+        return node;
+    }
+
+    /**
+     * @return the signed distance from a point to the box of a node, which no
+     *         obstacle inside the box can be closer than
+     */
+    private double getBoxDistance(int node, double x, double y) {
+        double distanceX = Math.max(_minX[node] - x, x - _maxX[node]);
+        double distanceY = Math.max(_minY[node] - y, y - _maxY[node]);
+
+        double outsideX = Math.max(distanceX, 0);
+        double outsideY = Math.max(distanceY, 0);
+        return Math.sqrt(outsideX * outsideX + outsideY * outsideY) + Math.min(Math.max(distanceX, distanceY), 0);
+    }
+
+    private static double getCenterX(Obstacle obstacle) {
+        return (obstacle.getMinBounds().getX() + obstacle.getMaxBounds().getX()) / 2;
+    }
+
+    private static double getCenterY(Obstacle obstacle) {
+        return (obstacle.getMinBounds().getY() + obstacle.getMaxBounds().getY()) / 2;
+    }
+
+    /** The nearest obstacle found so far by a query, and its stack of nodes to visit */
+    private static final class Query {
+        final int[] stack;
+        Obstacle nearest;
+        double minDistance;
+
+        Query(int stackSize) {
+            stack = new int[stackSize];
+        }
+
+        /** Keeps the obstacle if it is closer than the nearest one so far */
+        void consider(Obstacle obstacle, double distance) {
+            if (nearest == null || distance < minDistance) {
+                nearest = obstacle;
+                minDistance = distance;
+            }
+        }
+    }
+}
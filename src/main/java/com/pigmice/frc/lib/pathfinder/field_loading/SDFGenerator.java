@@ -1,26 +1,149 @@
 package com.pigmice.frc.lib.pathfinder.field_loading;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
 import org.json.simple.JSONObject;
 
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 
 public class SDFGenerator {
+    /** The number of nodes in a row that obstacles are culled for together */
+    static final int CHUNK_SIZE = 32;
+
     /**
-     * Calculates the distance from position to the nearest obstacle on field
+     * Calculates the distance from position to the nearest obstacle on field,
+     * skipping obstacles that are too far away with the field's
+     * {@link ObstacleTree}
      * 
      * @param field    the field to use
      * @param position the real life position of the robot on the field
      * @return the distance to the nearest edge of any obstacle or wall
      */
     public static double getDistanceFromNearestObstacle(Field field, Translation2d position) {
-        double minDistance = Double.MAX_VALUE;
+        return field.getObstacleTree().getDistanceFrom(position);
+    }
+
+    /**
+     * Finds the obstacle nearest to a position on the field with the field's
+     * {@link ObstacleTree}
+     * 
+     * @param field    the field to use
+     * @param position the real life position of the robot on the field
+     * @return the obstacle or wall with the nearest edge, or null if the field has
+     *         no obstacles
+     */
+    public static Obstacle getNearestObstacle(Field field, Translation2d position) {
+        return field.getObstacleTree().getNearestObstacle(position);
+    }
+
+    /**
+     * Calculates the distance to the nearest obstacle for every node of the field
+     * by evaluating every obstacle at every node
+     * 
+     * @param field the field to use
+     * @return the distance from each node to the nearest obstacle, indexed by
+     *         gridY * width + gridX
+     */
+    public static float[] generateClearanceGrid(Field field) {
+        return generateClearanceGrid(field, false);
+    }
+
+    /**
+     * Calculates the distance to the nearest obstacle for every node of the field,
+     * one row of nodes at a time with
+     * {@link Obstacle#minDistancesAlongRow(double[], double, double[], int, int)}.
+     * Each row is split into chunks of {@link #CHUNK_SIZE} nodes, and an obstacle
+     * is skipped for a chunk if its bounds are farther from the chunk than every
+     * node's distance so far, so it couldn't have lowered any of them. The grid
+     * is the same as evaluating every obstacle at every node.
+     * 
+     * @param field    the field to use
+     * @param parallel if true, rows of the grid are split into bands and built on
+     *                 the common fork-join pool. Every node is calculated the same
+     *                 way in both modes, so the results are identical.
+     * @return the distance from each node to the nearest obstacle, indexed by
+     *         gridY * width + gridX
+     */
+    public static float[] generateClearanceGrid(Field field, boolean parallel) {
+        int width = field.config.getGridWidth();
+        int height = field.config.getGridHeight();
+
+        float[] clearance = new float[width * height];
+
+        Translation2d origin = field.config.bottomLeftPositionMeters;
+        double spacing = field.config.nodeSpacingMeters;
+
+        // Every row has the same x positions
+        double[] rowX = new double[width];
+        for (int x = 0; x < width; x++)
+            rowX[x] = origin.getX() + x * spacing;
 
+        ArrayList<Obstacle> unbounded = new ArrayList<Obstacle>();
+        ArrayList<Obstacle> bounded = new ArrayList<Obstacle>();
         for (Obstacle obstacle : field.obstacles) {
-            double distance = obstacle.getDistanceFrom(position);
-            if (distance < minDistance)
-                minDistance = distance;
+            if (obstacle.getMinBounds() == null || obstacle.getMaxBounds() == null)
+                unbounded.add(obstacle);
+            else
+                bounded.add(obstacle);
         }
-        return minDistance;
+
+        double[] minX = new double[bounded.size()];
+        double[] minY = new double[bounded.size()];
+        double[] maxX = new double[bounded.size()];
+        double[] maxY = new double[bounded.size()];
+        for (int i = 0; i < bounded.size(); i++) {
+            minX[i] = bounded.get(i).getMinBounds().getX();
+            minY[i] = bounded.get(i).getMinBounds().getY();
+            maxX[i] = bounded.get(i).getMaxBounds().getX();
+            maxY[i] = bounded.get(i).getMaxBounds().getY();
+        }
+
+        IntStream rows = IntStream.range(0, height);
+        if (parallel)
+            rows = rows.parallel();
+
+        rows.forEach(y -> {
+            double[] distances = new double[width];
+            Arrays.fill(distances, Double.MAX_VALUE);
+
+            double rowY = origin.getY() + y * spacing;
+            for (Obstacle obstacle : unbounded)
+                obstacle.minDistancesAlongRow(rowX, rowY, distances);
+
+            for (int start = 0; start < width; start += CHUNK_SIZE) {
+                int end = Math.min(start + CHUNK_SIZE, width);
+                double chunkMax = getMax(distances, start, end);
+
+                for (int i = 0; i < bounded.size(); i++) {
+                    double gapX = Math.max(0, Math.max(minX[i] - rowX[end - 1], rowX[start] - maxX[i]));
+                    double gapY = Math.max(0, Math.max(minY[i] - rowY, rowY - maxY[i]));
+                    double gapSquared = gapX * gapX + gapY * gapY;
+
+                    // Outside its bounds an obstacle is at least as far as the bounds
+                    if (gapSquared > 0 && (chunkMax < 0 || gapSquared >= chunkMax * chunkMax))
+                        continue;
+
+                    bounded.get(i).minDistancesAlongRow(rowX, rowY, distances, start, end);
+                    chunkMax = getMax(distances, start, end);
+                }
+            }
+
+            for (int x = 0; x < width; x++)
+                clearance[y * width + x] = (float) distances[x];
+        });
+        return clearance;
+    }
+
+    /** @return the largest of some of the values */
+    private static double getMax(double[] values, int start, int end) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++)
+            max = Math.max(max, values[i]);
+        return max;
     }
 
     public static abstract class Obstacle {
@@ -37,12 +160,76 @@ public class SDFGenerator {
 
         public abstract double getDistanceFrom(Translation2d point);
 
+        /**
+         * Finds the distance from this obstacle to a row of points at once, using
+         * primitive arrays instead of a {@link Translation2d} for every point.
+         * Obstacles that override this use loops the JIT compiler can run with SIMD
+         * instructions; the default checks one point at a time with
+         * {@link #getDistanceFrom(Translation2d)}.
+         * 
+         * @param xs        the x positions of the points
+         * @param y         the y position shared by every point
+         * @param distances the distance of each point from the obstacles so far.
+         *                  Each is lowered to the distance from this obstacle if it
+         *                  is closer.
+         */
+        public final void minDistancesAlongRow(double[] xs, double y, double[] distances) {
+            minDistancesAlongRow(xs, y, distances, 0, xs.length);
+        }
+
+        /**
+         * Does the same as {@link #minDistancesAlongRow(double[], double, double[])}
+         * for only some of the points
+         * 
+         * @param xs        the x positions of the points
+         * @param y         the y position shared by every point
+         * @param distances the distance of each point from the obstacles so far
+         * @param start     the index of the first point to check
+         * @param end       the index after the last point to check
+         */
+        public void minDistancesAlongRow(double[] xs, double y, double[] distances, int start, int end) {
+            for (int i = start; i < end; i++)
+                distances[i] = Math.min(distances[i], getDistanceFrom(new Translation2d(xs[i], y)));
+        }
+
+        /** @return the location of this obstacle */
+        public Translation2d getPosition() {
+            return _position;
+        }
+
+        /**
+         * @return if this obstacle is something physical that blocks sight lines,
+         *         instead of an area the robot is only not allowed to drive into
+         */
+        public boolean isPhysical() {
+            return true;
+        }
+
+        /**
+         * @return the bottom left corner of a box containing this obstacle, or null
+         *         if this obstacle is unbounded
+         */
+        public Translation2d getMinBounds() {
+            return null;
+        }
+
+        /**
+         * @return the top right corner of a box containing this obstacle, or null if
+         *         this obstacle is unbounded
+         */
+        public Translation2d getMaxBounds() {
+            return null;
+        }
+
         /**
          * Create an obstacle instace from a JSON obstacle
          * 
          * @param obstacleJSON the JSON object containing the obstacles data
          * @return an obstacle created from the JSON object inputed
+         * @deprecated {@link FieldParser} reads obstacles while streaming the field
+         *             file and supports every obstacle type
          */
+        @Deprecated
         public static Obstacle fromJSON(JSONObject obstacleJSON) {
             Translation2d position = new Translation2d((double) obstacleJSON.get("xPos"),
                     (double) obstacleJSON.get("yPos"));
@@ -70,6 +257,11 @@ public class SDFGenerator {
     public static class Rectangle extends Obstacle {
         private final Translation2d _scale;
 
+        private final double _centerX;
+        private final double _centerY;
+        private final double _halfWidth;
+        private final double _halfHeight;
+
         /**
          * A rectangle shaped obstacle on the field
          * 
@@ -79,17 +271,51 @@ public class SDFGenerator {
         public Rectangle(Translation2d position, Translation2d scale) {
             super(position);
             this._scale = scale;
+
+            _centerX = position.getX();
+            _centerY = position.getY();
+            _halfWidth = scale.getX() / 2;
+            _halfHeight = scale.getY() / 2;
         }
 
         @Override
         public double getDistanceFrom(Translation2d point) {
-            point = point.minus(_position);
+            double distanceX = Math.abs(point.getX() - _centerX) - _halfWidth;
+            double distanceY = Math.abs(point.getY() - _centerY) - _halfHeight;
 
-            Translation2d distance2d = new Translation2d(Math.abs(point.getX()), Math.abs(point.getY()))
-                    .minus(_scale.div(2));
-            return (new Translation2d(
-                    Math.max(distance2d.getX(), 0), Math.max(distance2d.getY(), 0)).getNorm()
-                    + Math.min(Math.max(distance2d.getX(), distance2d.getY()), 0));
+            double outsideX = Math.max(distanceX, 0);
+            double outsideY = Math.max(distanceY, 0);
+            return Math.sqrt(outsideX * outsideX + outsideY * outsideY) + Math.min(Math.max(distanceX, distanceY), 0);
+        }
+
+        @Override
+        public void minDistancesAlongRow(double[] xs, double y, double[] distances, int start, int end) {
+            double distanceY = Math.abs(y - _centerY) - _halfHeight;
+            double outsideY = Math.max(distanceY, 0);
+            double outsideYSquared = outsideY * outsideY;
+
+            for (int i = start; i < end; i++) {
+                double distanceX = Math.abs(xs[i] - _centerX) - _halfWidth;
+                double outsideX = Math.max(distanceX, 0);
+                double distance = Math.sqrt(outsideX * outsideX + outsideYSquared)
+                        + Math.min(Math.max(distanceX, distanceY), 0);
+                distances[i] = Math.min(distances[i], distance);
+            }
+        }
+
+        @Override
+        public Translation2d getMinBounds() {
+            return _position.minus(_scale.div(2));
+        }
+
+        @Override
+        public Translation2d getMaxBounds() {
+            return _position.plus(_scale.div(2));
+        }
+
+        /** @return the scale of this rectangle */
+        public Translation2d getScale() {
+            return _scale;
         }
     }
 
@@ -109,8 +335,239 @@ public class SDFGenerator {
 
         @Override
         public double getDistanceFrom(Translation2d point) {
-            point = point.minus(_position);
-            return point.getNorm() - _radius;
+            double offsetX = point.getX() - _position.getX();
+            double offsetY = point.getY() - _position.getY();
+            return Math.sqrt(offsetX * offsetX + offsetY * offsetY) - _radius;
+        }
+
+        @Override
+        public void minDistancesAlongRow(double[] xs, double y, double[] distances, int start, int end) {
+            double centerX = _position.getX();
+            double offsetY = y - _position.getY();
+            double offsetYSquared = offsetY * offsetY;
+
+            for (int i = start; i < end; i++) {
+                double offsetX = xs[i] - centerX;
+                distances[i] = Math.min(distances[i], Math.sqrt(offsetX * offsetX + offsetYSquared) - _radius);
+            }
+        }
+
+        @Override
+        public Translation2d getMinBounds() {
+            return _position.minus(new Translation2d(_radius, _radius));
+        }
+
+        @Override
+        public Translation2d getMaxBounds() {
+            return _position.plus(new Translation2d(_radius, _radius));
+        }
+
+        /** @return the radius of this circle */
+        public double getRadius() {
+            return _radius;
+        }
+    }
+
+    public static class RotatedRectangle extends Obstacle {
+        private final Translation2d _scale;
+        private final Rotation2d _rotation;
+
+        private final double _centerX;
+        private final double _centerY;
+        private final double _halfWidth;
+        private final double _halfHeight;
+        private final double _cos;
+        private final double _sin;
+
+        /**
+         * A rectangle shaped obstacle on the field that isn't lined up with the
+         * field's axes
+         * 
+         * @param position the center position of this rectangle
+         * @param scale    the scale of this rectangle before it is rotated
+         * @param rotation the counterclockwise rotation of this rectangle around its
+         *                 center
+         */
+        public RotatedRectangle(Translation2d position, Translation2d scale, Rotation2d rotation) {
+            super(position);
+            this._scale = scale;
+            this._rotation = rotation;
+
+            _centerX = position.getX();
+            _centerY = position.getY();
+            _halfWidth = scale.getX() / 2;
+            _halfHeight = scale.getY() / 2;
+            _cos = rotation.getCos();
+            _sin = rotation.getSin();
+        }
+
+        @Override
+        public double getDistanceFrom(Translation2d point) {
+            return getDistanceFrom(point.getX(), point.getY());
+        }
+
+        @Override
+        public void minDistancesAlongRow(double[] xs, double y, double[] distances, int start, int end) {
+            for (int i = start; i < end; i++)
+                distances[i] = Math.min(distances[i], getDistanceFrom(xs[i], y));
+        }
+
+        /** @return the distance from a point, measured in this rectangle's own frame */
+        private double getDistanceFrom(double x, double y) {
+            double offsetX = x - _centerX;
+            double offsetY = y - _centerY;
+
+            double distanceX = Math.abs(offsetX * _cos + offsetY * _sin) - _halfWidth;
+            double distanceY = Math.abs(offsetY * _cos - offsetX * _sin) - _halfHeight;
+
+            double outsideX = Math.max(distanceX, 0);
+            double outsideY = Math.max(distanceY, 0);
+            return Math.sqrt(outsideX * outsideX + outsideY * outsideY) + Math.min(Math.max(distanceX, distanceY), 0);
+        }
+
+        @Override
+        public Translation2d getMinBounds() {
+            return _position.minus(getHalfExtents());
+        }
+
+        @Override
+        public Translation2d getMaxBounds() {
+            return _position.plus(getHalfExtents());
+        }
+
+        /** @return half the size of the axis aligned box containing this rectangle */
+        private Translation2d getHalfExtents() {
+            return new Translation2d(Math.abs(_halfWidth * _cos) + Math.abs(_halfHeight * _sin),
+                    Math.abs(_halfWidth * _sin) + Math.abs(_halfHeight * _cos));
+        }
+
+        /** @return the scale of this rectangle before it is rotated */
+        public Translation2d getScale() {
+            return _scale;
+        }
+
+        /** @return the counterclockwise rotation of this rectangle around its center */
+        public Rotation2d getRotation() {
+            return _rotation;
+        }
+    }
+
+    public static class Polygon extends Obstacle {
+        private final double[] _xs;
+        private final double[] _ys;
+
+        /**
+         * A polygon shaped obstacle on the field
+         * 
+         * @param vertices the corners of this polygon in order around its edge,
+         *                 without repeating the first corner. The edges must not
+         *                 cross each other.
+         */
+        public Polygon(List<Translation2d> vertices) {
+            super(getCentroid(vertices));
+
+            _xs = new double[vertices.size()];
+            _ys = new double[vertices.size()];
+            for (int i = 0; i < _xs.length; i++) {
+                _xs[i] = vertices.get(i).getX();
+                _ys[i] = vertices.get(i).getY();
+            }
+        }
+
+        /** @return the average of the vertices, used as the position of the polygon */
+        private static Translation2d getCentroid(List<Translation2d> vertices) {
+            if (vertices.size() < 3)
+                throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+
+            double x = 0;
+            double y = 0;
+            for (Translation2d vertex : vertices) {
+                x += vertex.getX();
+                y += vertex.getY();
+            }
+            return new Translation2d(x / vertices.size(), y / vertices.size());
+        }
+
+        @Override
+        public double getDistanceFrom(Translation2d point) {
+            return getDistanceFrom(point.getX(), point.getY());
+        }
+
+        @Override
+        public void minDistancesAlongRow(double[] xs, double y, double[] distances, int start, int end) {
+            for (int i = start; i < end; i++)
+                distances[i] = Math.min(distances[i], getDistanceFrom(xs[i], y));
+        }
+
+        /**
+         * @return the distance from a point to the closest edge, negative if the point
+         *         is inside. Inside is found by counting the edges a ray from the point
+         *         crosses.
+         */
+        private double getDistanceFrom(double x, double y) {
+            double minDistanceSquared = Double.MAX_VALUE;
+            boolean inside = false;
+
+            for (int i = 0, j = _xs.length - 1; i < _xs.length; j = i, i++) {
+                double edgeX = _xs[j] - _xs[i];
+                double edgeY = _ys[j] - _ys[i];
+                double offsetX = x - _xs[i];
+                double offsetY = y - _ys[i];
+
+                double t = (offsetX * edgeX + offsetY * edgeY) / (edgeX * edgeX + edgeY * edgeY);
+                t = Math.max(0, Math.min(1, t));
+                double closestX = offsetX - edgeX * t;
+                double closestY = offsetY - edgeY * t;
+                minDistanceSquared = Math.min(minDistanceSquared, closestX * closestX + closestY * closestY);
+
+                boolean aboveI = y >= _ys[i];
+                boolean belowJ = y < _ys[j];
+                boolean leftOfEdge = edgeX * offsetY > edgeY * offsetX;
+                if (aboveI == belowJ && aboveI == leftOfEdge)
+                    inside = !inside;
+            }
+
+            double distance = Math.sqrt(minDistanceSquared);
+            return inside ? -distance : distance;
+        }
+
+        @Override
+        public Translation2d getMinBounds() {
+            return new Translation2d(Arrays.stream(_xs).min().getAsDouble(), Arrays.stream(_ys).min().getAsDouble());
+        }
+
+        @Override
+        public Translation2d getMaxBounds() {
+            return new Translation2d(Arrays.stream(_xs).max().getAsDouble(), Arrays.stream(_ys).max().getAsDouble());
+        }
+
+        /** @return the corners of this polygon in order around its edge */
+        public List<Translation2d> getVertices() {
+            ArrayList<Translation2d> vertices = new ArrayList<Translation2d>(_xs.length);
+            for (int i = 0; i < _xs.length; i++)
+                vertices.add(new Translation2d(_xs[i], _ys[i]));
+            return vertices;
+        }
+    }
+
+    public static class KeepOutZone extends Polygon {
+        /**
+         * An area of the field the robot isn't allowed to drive into even though
+         * nothing physically blocks it, like the other alliance's protected zone.
+         * Paths avoid it exactly like an obstacle, but it doesn't block sight
+         * lines checked with
+         * {@link com.pigmice.frc.lib.pathfinder.NodeGrid#isVisible(Translation2d, Translation2d)}.
+         * 
+         * @param vertices the corners of this zone in order around its edge, without
+         *                 repeating the first corner
+         */
+        public KeepOutZone(List<Translation2d> vertices) {
+            super(vertices);
+        }
+
+        @Override
+        public boolean isPhysical() {
+            return false;
         }
     }
 
@@ -138,5 +595,27 @@ public class SDFGenerator {
 
             return Math.min(xDistance, yDistance);
         }
+
+        @Override
+        public void minDistancesAlongRow(double[] xs, double y, double[] distances, int start, int end) {
+            double minX = _minBounds.getX();
+            double maxX = _maxBounds.getX();
+            double yDistance = Math.min(y - _minBounds.getY(), _maxBounds.getY() - y);
+
+            for (int i = start; i < end; i++) {
+                double xDistance = Math.min(xs[i] - minX, maxX - xs[i]);
+                distances[i] = Math.min(distances[i], Math.min(xDistance, yDistance));
+            }
+        }
+
+        /** @return the bottom left most corner of the field */
+        public Translation2d getMinCorner() {
+            return _minBounds;
+        }
+
+        /** @return the top right most corner of the field */
+        public Translation2d getMaxCorner() {
+            return _maxBounds;
+        }
     }
 }
@@ -0,0 +1,64 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.Pathfinder.SearchMode;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class BidirectionalSearchTest {
+    private static final Pathfinder aStar = new Pathfinder(0.5, FieldMock.openField(0.05));
+    private static final Pathfinder bidirectional = new Pathfinder(0.5, aStar.field);
+
+    static {
+        bidirectional.setSearchMode(SearchMode.BIDIRECTIONAL);
+    }
+
+    @Test
+    public void expandsFewerNodesIntoDeadEnd() {
+        // A cup around the goal that opens away from the start
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(5.5, 4), new Translation2d(0.3, 4)));
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(4, 6), new Translation2d(3.3, 0.3)));
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(4, 2), new Translation2d(3.3, 0.3)));
+        Pathfinder pathfinder = new Pathfinder(0.5,
+                FieldMock.createField(new Translation2d(16, 8), 0.05, obstacles));
+
+        Translation2d start = new Translation2d(12, 4);
+        Translation2d goal = new Translation2d(4.5, 4);
+
+        PathfinderResult expected = pathfinder.findPath(start, goal);
+        pathfinder.setSearchMode(SearchMode.BIDIRECTIONAL);
+        PathfinderResult actual = pathfinder.findPath(start, goal);
+
+        Assertions.assertTrue(actual.pathFound());
+        Assertions.assertEquals(expected.getPathCost(), actual.getPathCost(), 1e-6);
+        Assertions.assertTrue(actual.getExpandedNodes() < expected.getExpandedNodes() * 0.8);
+    }
+
+    @Test
+    public void pathEndsAtPositions() {
+        Translation2d start = new Translation2d(1.5, 1.5);
+        Translation2d goal = new Translation2d(1.7, 1.6);
+
+        PathfinderResult result = bidirectional.findPath(start, goal);
+
+        Assertions.assertTrue(result.pathFound());
+        Assertions.assertEquals(start, result.getPositionList().get(0));
+        Assertions.assertEquals(goal, result.getPositionList().get(result.getPositionList().size() - 1));
+    }
+
+    @Test
+    public void noPathThroughSplitField() {
+        Pathfinder split = new Pathfinder(0.5, FieldMock.splitField(0.05));
+        split.setSearchMode(SearchMode.BIDIRECTIONAL);
+
+        Assertions.assertFalse(split.findPath(new Translation2d(0.8, 1), new Translation2d(3.2, 1)).pathFound());
+        Assertions.assertTrue(split.findPath(new Translation2d(0.8, 1), new Translation2d(0.5, 1.5)).pathFound());
+    }
+}
@@ -0,0 +1,101 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.Field;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class ClearanceGridTest {
+    private static final Field field = FieldMock.clutteredField(0.05);
+
+    @Test
+    public void viewsMatchSeparateGrids() {
+        ClearanceGrid clearance = new ClearanceGrid(field);
+
+        for (double robotWidth : new double[] { 0.3, 0.5, 0.9 }) {
+            NodeGrid expected = new NodeGrid(robotWidth, field);
+            NodeGrid actual = new NodeGrid(robotWidth, clearance);
+
+            for (int i = 0; i < expected.getNodeCount(); i++) {
+                Assertions.assertEquals(expected.isDriveable(i), actual.isDriveable(i));
+                Assertions.assertEquals(expected.getDistanceWeight(i), actual.getDistanceWeight(i), 0);
+            }
+        }
+    }
+
+    @Test
+    public void footprintsShareClearances() {
+        ClearanceGrid clearance = new ClearanceGrid(field);
+        Pathfinder narrow = new Pathfinder(0.3, clearance);
+        Pathfinder wide = new Pathfinder(0.9, clearance);
+
+        Assertions.assertSame(clearance, narrow.grid.getClearanceGrid());
+        Assertions.assertSame(clearance, wide.grid.getClearanceGrid());
+
+        int driveableNarrow = 0;
+        int driveableWide = 0;
+        for (int i = 0; i < clearance.getNodeCount(); i++) {
+            if (narrow.grid.isDriveable(i))
+                driveableNarrow++;
+            if (wide.grid.isDriveable(i)) {
+                driveableWide++;
+                Assertions.assertTrue(narrow.grid.isDriveable(i));
+            }
+        }
+        Assertions.assertTrue(driveableWide < driveableNarrow);
+    }
+
+    @Test
+    public void obstaclesReachEveryFootprint() {
+        ClearanceGrid clearance = new ClearanceGrid(FieldMock.wallField(0.05));
+        Pathfinder narrow = new Pathfinder(0.3, clearance);
+        Pathfinder wide = new Pathfinder(0.5, clearance);
+
+        Translation2d start = new Translation2d(0.8, 0.5);
+        Translation2d goal = new Translation2d(3.2, 0.5);
+        Assertions.assertTrue(narrow.findPath(start, goal).pathFound());
+        Assertions.assertTrue(wide.findPath(start, goal).pathFound());
+
+        int[] changes = new int[1];
+        narrow.grid.addChangeListener((minX, minY, maxX, maxY) -> changes[0]++);
+
+        // Close the gap over the wall
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(clearance, 0.5);
+        layer.addRectangle(new Translation2d(2, 1.7), new Translation2d(0.2, 0.6), 0, Double.POSITIVE_INFINITY);
+
+        Assertions.assertEquals(1, changes[0]);
+        Assertions.assertEquals(clearance.getVersion(), wide.grid.getVersion());
+        Assertions.assertFalse(narrow.findPath(start, goal).pathFound());
+        Assertions.assertFalse(wide.findPath(start, goal).pathFound());
+    }
+
+    @Test
+    public void sampledClearanceIsCloseToExact() {
+        ClearanceGrid clearance = new ClearanceGrid(field);
+        double spacing = field.config.nodeSpacingMeters;
+        Translation2d origin = field.config.bottomLeftPositionMeters;
+        Random random = new Random(2733);
+
+        for (int i = 0; i < 1000; i++) {
+            Translation2d position = origin.plus(new Translation2d(
+                    random.nextDouble() * (clearance.getWidth() - 1) * spacing,
+                    random.nextDouble() * (clearance.getHeight() - 1) * spacing));
+
+            Assertions.assertEquals(SDFGenerator.getDistanceFromNearestObstacle(field, position),
+                    clearance.sampleClearance(position), spacing);
+        }
+
+        // Exactly on a node the sample is that node's clearance
+        int index = 17 * clearance.getWidth() + 23;
+        Assertions.assertEquals(clearance.getClearance(index),
+                clearance.sampleClearance(origin.plus(new Translation2d(23, 17).times(spacing))), 1e-6);
+        // Outside the grid the nearest edge node is used
+        Assertions.assertEquals(clearance.getClearance(0),
+                clearance.sampleClearance(origin.minus(new Translation2d(1, 1))), 1e-6);
+    }
+}
@@ -0,0 +1,157 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.Field;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class DynamicObstacleLayerTest {
+    private static final Field field = FieldMock.openField(0.1);
+
+    private static Field withObstacle(Obstacle obstacle) {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>(field.obstacles);
+        obstacles.add(obstacle);
+        return new Field(field.config, obstacles);
+    }
+
+    private static void assertSameNodes(NodeGrid expected, NodeGrid actual) {
+        for (int i = 0; i < expected.getNodeCount(); i++) {
+            Assertions.assertEquals(expected.isDriveable(i), actual.isDriveable(i));
+            Assertions.assertEquals(expected.getDistanceWeight(i), actual.getDistanceWeight(i), 0);
+        }
+    }
+
+    @Test
+    public void matchesRebuiltGrid() {
+        NodeGrid grid = new NodeGrid(0.5, field);
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(grid);
+
+        SDFGenerator.Circle circle = new SDFGenerator.Circle(new Translation2d(3, 3), 0.3);
+        layer.add(circle, 0, Double.POSITIVE_INFINITY);
+        assertSameNodes(new NodeGrid(0.5, withObstacle(circle)), grid);
+
+        int id = layer.addRectangle(new Translation2d(13, 5), new Translation2d(0.6, 0.4), 0, 1);
+        layer.move(id, new Translation2d(13.5, 5.5), 0.5);
+
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>(withObstacle(circle).obstacles);
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(13.5, 5.5), new Translation2d(0.6, 0.4)));
+        assertSameNodes(new NodeGrid(0.5, new Field(field.config, obstacles)), grid);
+    }
+
+    @Test
+    public void removingRestoresGrid() {
+        NodeGrid original = new NodeGrid(0.5, field);
+        NodeGrid grid = new NodeGrid(0.5, field);
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(grid);
+
+        int id = layer.addCircle(new Translation2d(8, 4), 0.5, 0, Double.POSITIVE_INFINITY);
+        Assertions.assertFalse(grid.isDriveable(grid.FindCloseIndex(new Translation2d(8, 4))));
+
+        Assertions.assertTrue(layer.remove(id));
+        Assertions.assertFalse(layer.remove(id));
+        assertSameNodes(original, grid);
+    }
+
+    @Test
+    public void expiresObstacles() {
+        NodeGrid grid = new NodeGrid(0.5, field);
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(grid);
+
+        int id = layer.addCircle(new Translation2d(8, 4), 0.3, 0, 1);
+        layer.addCircle(new Translation2d(3, 3), 0.3, 0, Double.POSITIVE_INFINITY);
+
+        Assertions.assertEquals(0, layer.removeExpired(0.5));
+        layer.move(id, new Translation2d(8, 4.2), 0.5);
+        Assertions.assertEquals(0, layer.removeExpired(1.2));
+        Assertions.assertEquals(1, layer.removeExpired(1.6));
+        Assertions.assertNull(layer.get(id));
+        Assertions.assertEquals(1, layer.size());
+    }
+
+    @Test
+    public void onlyChangesNearbyNodes() {
+        NodeGrid grid = new NodeGrid(0.5, field);
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(grid);
+
+        int[] changedArea = new int[1];
+        grid.addChangeListener((minX, minY, maxX, maxY) -> changedArea[0] += (maxX - minX + 1) * (maxY - minY + 1));
+
+        long version = grid.getVersion();
+        layer.addCircle(new Translation2d(8, 4), 0.2, 0, Double.POSITIVE_INFINITY);
+
+        Assertions.assertTrue(grid.getVersion() > version);
+        Assertions.assertTrue(changedArea[0] > 0);
+        Assertions.assertTrue(changedArea[0] < grid.getNodeCount() / 10);
+    }
+
+    @Test
+    public void moveChangesTheGridOnce() {
+        NodeGrid grid = new NodeGrid(0.5, field);
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(grid);
+        int robot = layer.addCircle(new Translation2d(8, 3), 0.4, 0, Double.POSITIVE_INFINITY);
+
+        int[] changes = new int[1];
+        grid.addChangeListener((minX, minY, maxX, maxY) -> changes[0]++);
+        long version = grid.getVersion();
+        long staticVersion = grid.getStaticVersion();
+
+        layer.move(robot, new Translation2d(8.1, 3), 0.02);
+
+        Assertions.assertEquals(1, changes[0]);
+        Assertions.assertEquals(version + 1, grid.getVersion());
+        Assertions.assertEquals(staticVersion, grid.getStaticVersion());
+        assertSameNodes(new NodeGrid(0.5, withObstacle(new SDFGenerator.Circle(new Translation2d(8.1, 3), 0.4))),
+                grid);
+    }
+
+    @Test
+    public void acceleratedModesAreNotRebuiltByDynamicObstacles() {
+        Pathfinder jumpPoint = new Pathfinder(0.5, field);
+        jumpPoint.setSearchMode(Pathfinder.SearchMode.JUMP_POINT);
+        Pathfinder aStar = new Pathfinder(0.5, field);
+        aStar.grid = jumpPoint.grid;
+
+        Translation2d start = new Translation2d(2, 4);
+        Translation2d goal = new Translation2d(14, 4);
+        Assertions.assertTrue(jumpPoint.findPath(start, goal).pathFound());
+        JumpPointSearch built = jumpPoint.getJumpPointSearch();
+
+        // While the robot moves, paths are searched with A* and see it
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(jumpPoint.grid);
+        int robot = layer.addCircle(new Translation2d(8, 4), 0.4, 0, Double.POSITIVE_INFINITY);
+        for (int i = 1; i <= 5; i++) {
+            layer.move(robot, new Translation2d(8, 4 + i * 0.1), i * 0.02);
+            Assertions.assertEquals(aStar.findPath(start, goal).getPathCost(),
+                    jumpPoint.findPath(start, goal).getPathCost(), 1e-9);
+        }
+
+        layer.remove(robot);
+        Assertions.assertTrue(jumpPoint.findPath(start, goal).pathFound());
+        Assertions.assertSame(built, jumpPoint.getJumpPointSearch());
+    }
+
+    @Test
+    public void incrementalPathfinderFollowsChanges() {
+        NodeGrid grid = new NodeGrid(0.5, field);
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(grid);
+        IncrementalPathfinder incremental = new IncrementalPathfinder(grid);
+        Pathfinder fresh = new Pathfinder(0.5, field);
+        fresh.grid = grid;
+
+        Translation2d start = new Translation2d(1.5, 4);
+        Translation2d goal = new Translation2d(8, 4);
+        incremental.findPath(start, goal);
+
+        layer.addRectangle(new Translation2d(7, 4), new Translation2d(0.4, 3), 0, Double.POSITIVE_INFINITY);
+
+        Assertions.assertEquals(fresh.findPath(start, goal).getPathCost(),
+                incremental.findPath(start, goal).getPathCost(), 1e-6);
+        incremental.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.Field;
+import com.pigmice.frc.lib.pathfinder.field_loading.Field.FieldConfig;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class FieldMock {
+    /**
+     * A 4m x 2m field with a wall across the middle that leaves a gap at the top
+     */
+    public static Field wallField(double nodeSpacing) {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(2, 0.7), new Translation2d(0.2, 1.4)));
+
+        return createField(new Translation2d(4, 2), nodeSpacing, obstacles);
+    }
+
+    /**
+     * A 4m x 2m field with a wall that completely splits it in two
+     */
+    public static Field splitField(double nodeSpacing) {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(2, 1), new Translation2d(0.2, 2)));
+
+        return createField(new Translation2d(4, 2), nodeSpacing, obstacles);
+    }
+
+    /**
+     * An 8m x 4m field with a mix of rectangles and circles
+     */
+    public static Field clutteredField(double nodeSpacing) {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(2, 1.2), new Translation2d(0.3, 2.4)));
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(5, 2.9), new Translation2d(0.3, 2.2)));
+        obstacles.add(new SDFGenerator.Circle(new Translation2d(3.5, 1.2), 0.4));
+        obstacles.add(new SDFGenerator.Circle(new Translation2d(6.5, 1.0), 0.5));
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(6.8, 3.2), new Translation2d(0.8, 0.4)));
+
+        return createField(new Translation2d(8, 4), nodeSpacing, obstacles);
+    }
+
+    /**
+     * A 16m x 8m field, roughly the size of a real one, with a few obstacles and
+     * lots of open space
+     */
+    public static Field openField(double nodeSpacing) {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(5, 4), new Translation2d(1, 3)));
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(11, 4), new Translation2d(1, 3)));
+        obstacles.add(new SDFGenerator.Circle(new Translation2d(8, 1.5), 0.5));
+        obstacles.add(new SDFGenerator.Circle(new Translation2d(8, 6.5), 0.5));
+
+        return createField(new Translation2d(16, 8), nodeSpacing, obstacles);
+    }
+
+    /** Creates a field at the origin with the given obstacles and its boundaries */
+    public static Field createField(Translation2d size, double nodeSpacing, ArrayList<Obstacle> obstacles) {
+        FieldConfig config = new FieldConfig(new Translation2d(), size, nodeSpacing);
+        obstacles.add(new SDFGenerator.FieldBoundaries(config.bottomLeftPositionMeters,
+                config.bottomLeftPositionMeters.plus(config.fieldSizeMeters)));
+
+        return new Field(config, obstacles);
+    }
+}
@@ -0,0 +1,61 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.Pathfinder.SearchMode;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class HierarchicalSearchTest {
+    private static final Pathfinder aStar = new Pathfinder(0.5, FieldMock.openField(0.05));
+    private static final Pathfinder hierarchical = new Pathfinder(0.5, aStar.field);
+
+    static {
+        hierarchical.setSearchMode(SearchMode.HIERARCHICAL);
+    }
+
+    @Test
+    public void expandsFewerNodes() {
+        Translation2d start = new Translation2d(1.5, 6.5);
+        Translation2d goal = new Translation2d(14.5, 1.5);
+
+        PathfinderResult expected = aStar.findPath(start, goal);
+        PathfinderResult actual = hierarchical.findPath(start, goal);
+
+        Assertions.assertTrue(actual.pathFound());
+        Assertions.assertTrue(actual.getExpandedNodes() < expected.getExpandedNodes() / 2);
+    }
+
+    @Test
+    public void sameCluster() {
+        PathfinderResult result = hierarchical.findPath(new Translation2d(1.5, 1.5), new Translation2d(1.7, 1.6));
+
+        Assertions.assertTrue(result.pathFound());
+    }
+
+    @Test
+    public void noPathThroughSplitField() {
+        Pathfinder split = new Pathfinder(0.5, FieldMock.splitField(0.05));
+        split.setSearchMode(SearchMode.HIERARCHICAL);
+
+        Assertions.assertFalse(split.findPath(new Translation2d(0.8, 1), new Translation2d(3.2, 1)).pathFound());
+        Assertions.assertTrue(split.findPath(new Translation2d(0.8, 1), new Translation2d(0.5, 1.5)).pathFound());
+    }
+
+    @Test
+    public void seesDynamicObstacles() {
+        Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.wallField(0.05));
+        pathfinder.setSearchMode(SearchMode.HIERARCHICAL);
+
+        Translation2d start = new Translation2d(0.8, 0.5);
+        Translation2d goal = new Translation2d(3.2, 0.5);
+        Assertions.assertTrue(pathfinder.findPath(start, goal).pathFound());
+
+        // Close the gap over the wall
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(pathfinder.grid);
+        layer.addRectangle(new Translation2d(2, 1.7), new Translation2d(0.2, 0.6), 0, Double.POSITIVE_INFINITY);
+
+        Assertions.assertFalse(pathfinder.findPath(start, goal).pathFound());
+    }
+}
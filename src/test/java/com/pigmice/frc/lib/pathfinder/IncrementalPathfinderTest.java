@@ -0,0 +1,91 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class IncrementalPathfinderTest {
+    private static final double epsilon = 1e-6;
+
+    private static final Pathfinder aStar = new Pathfinder(0.5, FieldMock.openField(0.1));
+
+    @Test
+    public void sameCostAsAStar() {
+        try (IncrementalPathfinder incremental = new IncrementalPathfinder(aStar.grid)) {
+            Random random = new Random(2733);
+
+            for (int i = 0; i < 20; i++) {
+                Translation2d start = new Translation2d(random.nextDouble() * 16, random.nextDouble() * 8);
+                Translation2d goal = new Translation2d(random.nextDouble() * 16, random.nextDouble() * 8);
+
+                PathfinderResult expected = aStar.findPath(start, goal);
+                PathfinderResult actual = incremental.findPath(start, goal);
+
+                Assertions.assertEquals(expected.pathFound(), actual.pathFound());
+                if (expected.pathFound())
+                    Assertions.assertEquals(expected.getPathCost(), actual.getPathCost(), epsilon);
+            }
+        }
+    }
+
+    @Test
+    public void movingStartReusesSearch() {
+        try (IncrementalPathfinder incremental = new IncrementalPathfinder(aStar.grid)) {
+            Translation2d goal = new Translation2d(14.5, 1.5);
+
+            PathfinderResult first = incremental.findPath(new Translation2d(1.5, 6.5), goal);
+            Assertions.assertTrue(first.pathFound());
+
+            for (double x = 1.6; x < 2.5; x += 0.1) {
+                Translation2d start = new Translation2d(x, 6.5);
+                PathfinderResult replanned = incremental.findPath(start, goal);
+
+                Assertions.assertTrue(replanned.pathFound());
+                Assertions.assertEquals(aStar.findPath(start, goal).getPathCost(), replanned.getPathCost(), epsilon);
+                Assertions.assertTrue(replanned.getExpandedNodes() < first.getExpandedNodes() / 10);
+            }
+        }
+    }
+
+    @Test
+    public void repairsChangedNodes() {
+        NodeGrid grid = new NodeGrid(0.5, aStar.field);
+        Pathfinder fresh = new Pathfinder(0.5, aStar.field);
+        fresh.grid = grid;
+
+        IncrementalPathfinder incremental = new IncrementalPathfinder(grid);
+        Translation2d start = new Translation2d(1.5, 4);
+        Translation2d goal = new Translation2d(8, 4);
+
+        double before = incremental.findPath(start, goal).getPathCost();
+
+        // Block the middle of the field between the two obstacles
+        int minX = grid.FindCloseIndex(new Translation2d(6, 0)) % grid.getWidth();
+        int maxX = grid.FindCloseIndex(new Translation2d(7, 0)) % grid.getWidth();
+        int minY = grid.getGridY(grid.FindCloseIndex(new Translation2d(0, 2)));
+        int maxY = grid.getGridY(grid.FindCloseIndex(new Translation2d(0, 6)));
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++)
+                grid.setClearance(y * grid.getWidth() + x, 0);
+        }
+        grid.nodesChanged(minX, minY, maxX, maxY);
+
+        PathfinderResult blocked = incremental.findPath(start, goal);
+        Assertions.assertTrue(blocked.pathFound());
+        Assertions.assertTrue(blocked.getPathCost() > before);
+        Assertions.assertEquals(fresh.findPath(start, goal).getPathCost(), blocked.getPathCost(), epsilon);
+
+        // And clear it again
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++)
+                grid.setClearance(y * grid.getWidth() + x, 10);
+        }
+        grid.nodesChanged(minX, minY, maxX, maxY);
+
+        PathfinderResult cleared = incremental.findPath(start, goal);
+        Assertions.assertEquals(fresh.findPath(start, goal).getPathCost(), cleared.getPathCost(), epsilon);
+    }
+}
@@ -0,0 +1,91 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class IndexedMinHeapTest {
+    @Test
+    public void popsInOrder() {
+        IndexedMinHeap heap = new IndexedMinHeap(10);
+
+        heap.insertOrUpdate(3, 5.0, 0.0);
+        heap.insertOrUpdate(7, 1.0, 0.0);
+        heap.insertOrUpdate(1, 3.0, 0.0);
+        heap.insertOrUpdate(9, 2.0, 0.0);
+
+        Assertions.assertEquals(4, heap.size());
+        Assertions.assertEquals(7, heap.pop());
+        Assertions.assertEquals(9, heap.pop());
+        Assertions.assertEquals(1, heap.pop());
+        Assertions.assertEquals(3, heap.pop());
+        Assertions.assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void secondaryKeyBreaksTies() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+
+        heap.insertOrUpdate(0, 2.0, 3.0);
+        heap.insertOrUpdate(1, 2.0, 1.0);
+        heap.insertOrUpdate(2, 2.0, 2.0);
+
+        Assertions.assertEquals(1, heap.pop());
+        Assertions.assertEquals(2, heap.pop());
+        Assertions.assertEquals(0, heap.pop());
+    }
+
+    @Test
+    public void updateKey() {
+        IndexedMinHeap heap = new IndexedMinHeap(5);
+
+        heap.insertOrUpdate(0, 4.0, 0.0);
+        heap.insertOrUpdate(1, 3.0, 0.0);
+        heap.insertOrUpdate(2, 2.0, 0.0);
+
+        heap.insertOrUpdate(0, 1.0, 0.0);
+        Assertions.assertEquals(3, heap.size());
+        Assertions.assertEquals(0, heap.peek());
+        Assertions.assertEquals(1.0, heap.peekPrimaryKey(), 0.0);
+
+        heap.insertOrUpdate(0, 10.0, 0.0);
+        Assertions.assertEquals(2, heap.pop());
+        Assertions.assertEquals(1, heap.pop());
+        Assertions.assertEquals(0, heap.pop());
+    }
+
+    @Test
+    public void containsAndRemove() {
+        IndexedMinHeap heap = new IndexedMinHeap(5);
+
+        heap.insertOrUpdate(4, 1.0, 0.0);
+        heap.insertOrUpdate(2, 2.0, 0.0);
+        heap.insertOrUpdate(3, 3.0, 0.0);
+
+        Assertions.assertTrue(heap.contains(2));
+        Assertions.assertFalse(heap.contains(0));
+
+        heap.remove(4);
+        Assertions.assertFalse(heap.contains(4));
+        Assertions.assertEquals(2, heap.pop());
+        Assertions.assertFalse(heap.contains(2));
+
+        heap.clear();
+        Assertions.assertTrue(heap.isEmpty());
+        Assertions.assertFalse(heap.contains(3));
+    }
+
+    @Test
+    public void manyItems() {
+        IndexedMinHeap heap = new IndexedMinHeap(1000);
+        for (int i = 0; i < 1000; i++)
+            heap.insertOrUpdate(i, (i * 7919) % 1000, 0.0);
+
+        double previous = -1;
+        while (!heap.isEmpty()) {
+            double key = heap.peekPrimaryKey();
+            heap.pop();
+            Assertions.assertTrue(key >= previous);
+            previous = key;
+        }
+    }
+}
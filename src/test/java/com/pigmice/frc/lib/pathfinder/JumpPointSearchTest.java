@@ -0,0 +1,64 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.Pathfinder.SearchMode;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class JumpPointSearchTest {
+    private static final double epsilon = 1e-6;
+
+    private static final Pathfinder aStar = new Pathfinder(0.5, FieldMock.openField(0.05));
+    private static final Pathfinder jumpPoint = new Pathfinder(0.5, aStar.field);
+
+    static {
+        jumpPoint.setSearchMode(SearchMode.JUMP_POINT);
+    }
+
+    @Test
+    public void expandsFewerNodes() {
+        Translation2d start = new Translation2d(1.5, 6.5);
+        Translation2d goal = new Translation2d(14.5, 1.5);
+
+        PathfinderResult expected = aStar.findPath(start, goal);
+        PathfinderResult actual = jumpPoint.findPath(start, goal);
+
+        Assertions.assertTrue(actual.pathFound());
+        // Most of this field is the weighted band, where JPS expands like A*
+        Assertions.assertTrue(actual.getExpandedNodes() < expected.getExpandedNodes() * 0.8);
+    }
+
+    @Test
+    public void jumpsAcrossOpenArea() {
+        Pathfinder emptyAStar = new Pathfinder(0.5,
+                FieldMock.createField(new Translation2d(16, 8), 0.05, new ArrayList<Obstacle>()));
+        Pathfinder emptyJumpPoint = new Pathfinder(0.5, emptyAStar.field);
+        emptyJumpPoint.setSearchMode(SearchMode.JUMP_POINT);
+
+        // Both ends are outside the band, so the whole search is a few jumps
+        Translation2d start = new Translation2d(2, 6);
+        Translation2d goal = new Translation2d(14, 2);
+
+        PathfinderResult expected = emptyAStar.findPath(start, goal);
+        PathfinderResult actual = emptyJumpPoint.findPath(start, goal);
+
+        Assertions.assertTrue(actual.pathFound());
+        Assertions.assertEquals(expected.getPathCost(), actual.getPathCost(), epsilon);
+        Assertions.assertTrue(actual.getExpandedNodes() <= 4);
+        Assertions.assertTrue(expected.getExpandedNodes() > 1000);
+    }
+
+    @Test
+    public void pathStaysDriveable() {
+        PathfinderResult result = jumpPoint.findPath(new Translation2d(1, 1), new Translation2d(15, 7));
+
+        Assertions.assertTrue(result.pathFound());
+        for (Translation2d waypoint : result.getPositionList())
+            Assertions.assertTrue(jumpPoint.grid.FindCloseNode(waypoint).driveable);
+    }
+}
@@ -0,0 +1,73 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.Field;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class LandmarkCostGridTest {
+    // Costs are stored as floats
+    private static final double epsilon = 1e-3;
+
+    private static final Pathfinder pathfinder = new Pathfinder(0.5, landmarkField());
+
+    private static Field landmarkField() {
+        Field open = FieldMock.openField(0.1);
+
+        Map<String, Translation2d> landmarks = new LinkedHashMap<String, Translation2d>();
+        landmarks.put("speaker", new Translation2d(14.5, 1.5));
+        landmarks.put("source", new Translation2d(8, 4));
+
+        return new Field(open.config, open.obstacles, landmarks);
+    }
+
+    @Test
+    public void sameCostAsSearch() {
+        Random random = new Random(2733);
+
+        for (String landmark : pathfinder.getLandmarks()) {
+            Translation2d goal = pathfinder.field.landmarks.get(landmark);
+
+            for (int i = 0; i < 10; i++) {
+                Translation2d start = new Translation2d(random.nextDouble() * 16, random.nextDouble() * 8);
+
+                PathfinderResult expected = pathfinder.findPath(start, goal);
+                PathfinderResult actual = pathfinder.findPathToLandmark(start, landmark);
+
+                Assertions.assertEquals(expected.pathFound(), actual.pathFound());
+                if (expected.pathFound()) {
+                    Assertions.assertEquals(expected.getPathCost(), actual.getPathCost(), epsilon);
+                    Assertions.assertEquals(goal, actual.getPositionList().get(actual.getPositionList().size() - 1));
+                    for (Translation2d waypoint : actual.getPositionList())
+                        Assertions.assertTrue(pathfinder.grid.FindCloseNode(waypoint).driveable);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unknownLandmark() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> pathfinder.findPathToLandmark(new Translation2d(1, 1), "amp"));
+    }
+
+    @Test
+    public void searchesAfterGridChanges() {
+        Pathfinder changed = new Pathfinder(0.5, landmarkField());
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(changed.grid);
+        layer.addRectangle(new Translation2d(13, 1.5), new Translation2d(0.4, 2), 0, Double.POSITIVE_INFINITY);
+
+        Translation2d start = new Translation2d(11.5, 1.5);
+        PathfinderResult result = changed.findPathToLandmark(start, "speaker");
+
+        Assertions.assertTrue(result.pathFound());
+        Assertions.assertEquals(changed.findPath(start, new Translation2d(14.5, 1.5)).getPathCost(),
+                result.getPathCost(), 1e-9);
+    }
+}
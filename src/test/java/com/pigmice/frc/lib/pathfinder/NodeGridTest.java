@@ -0,0 +1,168 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.Field;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class NodeGridTest {
+    private static final double epsilon = 1e-6;
+
+    private static final Field field = FieldMock.wallField(0.1);
+    private static final NodeGrid grid = new NodeGrid(0.5, field);
+
+    @Test
+    public void gridSize() {
+        Assertions.assertEquals(40, grid.getWidth());
+        Assertions.assertEquals(20, grid.getHeight());
+        Assertions.assertEquals(800, grid.getNodeCount());
+    }
+
+    @Test
+    public void viewsMatchNodes() {
+        for (int index = 0; index < grid.getNodeCount(); index += 7) {
+            Node view = grid.getNodeAt(index);
+            double distance = SDFGenerator.getDistanceFromNearestObstacle(field, view.fieldPos);
+            Node expected = new Node(view.gridX, view.gridY, view.fieldPos, distance, Pathfinder.DISTANCE_CUTOFF,
+                    0.5);
+
+            Assertions.assertEquals(index, grid.getIndex(view));
+            Assertions.assertEquals(expected.edgeToCenterDistance, view.edgeToCenterDistance, 1e-5);
+            Assertions.assertEquals(expected.edgeToBumperDistance, view.edgeToBumperDistance, 1e-5);
+            Assertions.assertEquals(expected.driveable, view.driveable);
+            // Distance weights are quantized to a byte
+            Assertions.assertEquals(expected.distanceWeight, view.distanceWeight, 1d / 255);
+        }
+    }
+
+    @Test
+    public void fieldPositions() {
+        Node node = grid.getNodeAt(12, 5);
+
+        Assertions.assertEquals(1.2, node.fieldPos.getX(), epsilon);
+        Assertions.assertEquals(0.5, node.fieldPos.getY(), epsilon);
+        Assertions.assertEquals(node.fieldPos, grid.getFieldPos(grid.getIndex(node)));
+    }
+
+    @Test
+    public void findCloseNode() {
+        Node node = grid.FindCloseNode(new Translation2d(1.23, 0.47));
+        Assertions.assertEquals(12, node.gridX);
+        Assertions.assertEquals(5, node.gridY);
+
+        Node clamped = grid.FindCloseNode(new Translation2d(-5, 10));
+        Assertions.assertEquals(0, clamped.gridX);
+        Assertions.assertEquals(19, clamped.gridY);
+    }
+
+    @Test
+    public void neighbors() {
+        Assertions.assertEquals(3, grid.GetNeighbors(grid.getNodeAt(0, 0)).size());
+        Assertions.assertEquals(8, grid.GetNeighbors(grid.getNodeAt(10, 10)).size());
+
+        int index = grid.getIndex(grid.getNodeAt(0, 0));
+        int found = 0;
+        for (int direction = 0; direction < 8; direction++) {
+            if (grid.getNeighborIndex(index, direction) >= 0)
+                found++;
+        }
+        Assertions.assertEquals(3, found);
+    }
+
+    @Test
+    public void neighborDirectionsMatchGetNeighbors() {
+        for (int index = 0; index < grid.getNodeCount(); index++) {
+            int directions = grid.getNeighborDirections(index);
+            Assertions.assertEquals(grid.GetNeighbors(grid.getNodeAt(index)).size(), Integer.bitCount(directions));
+
+            for (int direction = 0; direction < 8; direction++) {
+                if ((directions & (1 << direction)) == 0)
+                    continue;
+
+                int neighbor = index + grid.getNeighborOffset(direction);
+                Assertions.assertEquals(grid.getGridX(index) + NodeGrid.NEIGHBOR_X[direction], grid.getGridX(neighbor));
+                Assertions.assertEquals(grid.getGridY(index) + NodeGrid.NEIGHBOR_Y[direction], grid.getGridY(neighbor));
+                Assertions.assertEquals(Math.hypot(NodeGrid.NEIGHBOR_X[direction], NodeGrid.NEIGHBOR_Y[direction]),
+                        NodeGrid.NEIGHBOR_STEP[direction], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void raycastStopsAtObstacles() {
+        NodeGrid wallGrid = new NodeGrid(0.5, FieldMock.wallField(0.05));
+        Translation2d start = new Translation2d(0.5, 0.5);
+        Translation2d end = new Translation2d(3.5, 0.5);
+
+        // The wall starts at x = 1.9 and the bumpers reach it 0.25 before that
+        Assertions.assertEquals(1.4, wallGrid.raycast(start, end, 0), 0.05);
+        Assertions.assertEquals(1.15, wallGrid.raycast(start, end, 0.25), 0.05);
+        Assertions.assertFalse(wallGrid.isVisible(start, end));
+        Assertions.assertFalse(wallGrid.hasLineOfSight(start, end));
+
+        // Backwards from the other side
+        Assertions.assertEquals(1.4, wallGrid.raycast(end, start, 0), 0.05);
+    }
+
+    @Test
+    public void keepOutZonesDontBlockSight() {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.KeepOutZone(Arrays.asList(new Translation2d(1.5, 0), new Translation2d(2.5, 0),
+                new Translation2d(2.5, 2), new Translation2d(1.5, 2))));
+        NodeGrid zoneGrid = new NodeGrid(0.5, FieldMock.createField(new Translation2d(4, 2), 0.05, obstacles));
+        Translation2d start = new Translation2d(0.5, 1);
+        Translation2d end = new Translation2d(3.5, 1);
+
+        Assertions.assertTrue(zoneGrid.isVisible(start, end));
+        Assertions.assertEquals(1, zoneGrid.raycast(start, end, 0), 0.05);
+        Assertions.assertFalse(zoneGrid.hasLineOfSight(start, end));
+
+        // A robot standing in the zone does block sight
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(zoneGrid);
+        int robot = layer.addCircle(new Translation2d(2, 1), 0.3, 0, Double.POSITIVE_INFINITY);
+        Assertions.assertFalse(zoneGrid.isVisible(start, end));
+
+        layer.remove(robot);
+        Assertions.assertTrue(zoneGrid.isVisible(start, end));
+    }
+
+    @Test
+    public void visibleButNotDriveable() {
+        NodeGrid wallGrid = new NodeGrid(0.5, FieldMock.wallField(0.05));
+
+        // Between the top of the wall and the field boundary, 0.2 from the boundary
+        Translation2d start = new Translation2d(0.5, 1.8);
+        Translation2d end = new Translation2d(3.5, 1.8);
+        Assertions.assertTrue(wallGrid.isVisible(start, end));
+        Assertions.assertFalse(wallGrid.hasLineOfSight(start, end));
+
+        Assertions.assertTrue(wallGrid.hasLineOfSight(new Translation2d(0.5, 0.5), new Translation2d(1.2, 1.5)));
+        Assertions.assertEquals(0, wallGrid.raycast(new Translation2d(2, 0.5), new Translation2d(3, 0.5), 0));
+        Assertions.assertEquals(Double.POSITIVE_INFINITY,
+                wallGrid.raycast(new Translation2d(1, 1), new Translation2d(1, 1), 0.25));
+    }
+
+    @Test
+    public void parallelBuildMatchesSerial() {
+        Field cluttered = FieldMock.clutteredField(0.05);
+
+        float[] serial = SDFGenerator.generateClearanceGrid(cluttered, false);
+        float[] parallel = SDFGenerator.generateClearanceGrid(cluttered, true);
+        Assertions.assertArrayEquals(serial, parallel);
+
+        NodeGrid serialGrid = new NodeGrid(0.5, cluttered, false);
+        NodeGrid parallelGrid = new NodeGrid(0.5, cluttered, true);
+        for (int index = 0; index < serialGrid.getNodeCount(); index++) {
+            Assertions.assertEquals(serialGrid.getClearance(index), parallelGrid.getClearance(index));
+            Assertions.assertEquals(serialGrid.isDriveable(index), parallelGrid.isDriveable(index));
+            Assertions.assertEquals(serialGrid.getDistanceWeight(index), parallelGrid.getDistanceWeight(index));
+        }
+    }
+}
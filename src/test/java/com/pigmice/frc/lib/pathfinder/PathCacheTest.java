@@ -0,0 +1,122 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.Pathfinder.SearchMode;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class PathCacheTest {
+    @Test
+    public void repeatQueriesHitCache() {
+        Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.wallField(0.05));
+        PathCache cache = new PathCache(pathfinder, 8);
+
+        PathfinderResult first = cache.findPath(new Translation2d(0.8, 0.5), new Translation2d(3.2, 0.5));
+        Assertions.assertEquals(0, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+
+        // Less than half a node away from the first query
+        Translation2d start = new Translation2d(0.81, 0.51);
+        Translation2d goal = new Translation2d(3.19, 0.5);
+        PathfinderResult second = cache.findPath(start, goal);
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+
+        Assertions.assertTrue(second.pathFound());
+        Assertions.assertEquals(first.getPathCost(), second.getPathCost());
+        Assertions.assertEquals(first.getPositionList().size(), second.getPositionList().size());
+        Assertions.assertEquals(start, second.getPositionList().get(0));
+        Assertions.assertEquals(goal, second.getPositionList().get(second.getPositionList().size() - 1));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.wallField(0.05));
+        PathCache cache = new PathCache(pathfinder, 2);
+
+        Translation2d start = new Translation2d(0.8, 0.5);
+        Translation2d goalA = new Translation2d(3.2, 0.5);
+        Translation2d goalB = new Translation2d(3.2, 1.0);
+        Translation2d goalC = new Translation2d(1.0, 1.5);
+
+        cache.findPath(start, goalA);
+        cache.findPath(start, goalB);
+        cache.findPath(start, goalA);
+        cache.findPath(start, goalC);
+        Assertions.assertEquals(2, cache.size());
+
+        // B was the least recently used, so it was evicted
+        cache.findPath(start, goalA);
+        Assertions.assertEquals(2, cache.getHits());
+        cache.findPath(start, goalB);
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void invalidatedByObstacles() {
+        Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.wallField(0.05));
+        PathCache cache = new PathCache(pathfinder, 8);
+
+        Translation2d start = new Translation2d(0.8, 0.5);
+        Translation2d goal = new Translation2d(3.2, 0.5);
+        Assertions.assertTrue(cache.findPath(start, goal).pathFound());
+        Assertions.assertEquals(1, cache.size());
+
+        // Close the gap over the wall
+        DynamicObstacleLayer layer = new DynamicObstacleLayer(pathfinder.grid);
+        layer.addRectangle(new Translation2d(2, 1.7), new Translation2d(0.2, 0.6), 0, Double.POSITIVE_INFINITY);
+
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertFalse(cache.findPath(start, goal).pathFound());
+        Assertions.assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void invalidatedBySearchMode() {
+        Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.wallField(0.05));
+        PathCache cache = new PathCache(pathfinder, 8);
+
+        Translation2d start = new Translation2d(0.8, 0.5);
+        Translation2d goal = new Translation2d(3.2, 0.5);
+        cache.findPath(start, goal);
+
+        pathfinder.setSearchMode(SearchMode.THETA_STAR);
+        cache.findPath(start, goal);
+        Assertions.assertEquals(0, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void cachedPathsCantBeModified() {
+        Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.wallField(0.05));
+        PathCache cache = new PathCache(pathfinder, 8);
+
+        Translation2d start = new Translation2d(0.8, 0.5);
+        Translation2d goal = new Translation2d(3.2, 0.5);
+        PathfinderResult first = cache.findPath(start, goal);
+        PathfinderResult second = cache.findPath(start, goal);
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.getPositionList().clear());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> second.getPositionList().clear());
+        Assertions.assertEquals(first.getPositionList(), cache.findPath(start, goal).getPositionList());
+    }
+
+    @Test
+    public void invalidatedByNewGrid() {
+        Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.wallField(0.05));
+        PathCache cache = new PathCache(pathfinder, 8);
+
+        Translation2d start = new Translation2d(0.8, 0.5);
+        Translation2d goal = new Translation2d(3.2, 0.5);
+        cache.findPath(start, goal);
+
+        // Too wide to fit through the gap over the wall
+        pathfinder.grid = new NodeGrid(2, pathfinder.field);
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertFalse(cache.findPath(start, goal).pathFound());
+        Assertions.assertEquals(0, cache.getHits());
+    }
+}
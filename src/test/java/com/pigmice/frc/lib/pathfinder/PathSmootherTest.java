@@ -0,0 +1,101 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class PathSmootherTest {
+    private static final Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.clutteredField(0.05));
+
+    private static final double MAX_VELOCITY = 4;
+    private static final double MAX_ACCELERATION = 3;
+    private static final double MAX_CENTRIPETAL_ACCELERATION = 2;
+
+    @Test
+    public void shortcutRemovesVisibleWaypoints() {
+        List<Translation2d> waypoints = Arrays.asList(new Translation2d(0.5, 3), new Translation2d(0.6, 3.2),
+                new Translation2d(0.8, 3.1), new Translation2d(1.2, 3.5));
+
+        List<Translation2d> shortcut = PathSmoother.shortcut(pathfinder.grid, waypoints);
+
+        Assertions.assertEquals(Arrays.asList(waypoints.get(0), waypoints.get(3)), shortcut);
+    }
+
+    @Test
+    public void shortcutKeepsCornersAroundObstacles() {
+        PathfinderResult result = pathfinder.findPath(new Translation2d(1, 1), new Translation2d(7.5, 3.5));
+        Assertions.assertTrue(result.pathFound());
+
+        List<Translation2d> shortcut = PathSmoother.shortcut(pathfinder.grid, result.getPositionList());
+
+        Assertions.assertTrue(shortcut.size() > 2);
+        Assertions.assertTrue(shortcut.size() < result.getPositionList().size());
+
+        // Every skipped stretch of the path is replaced by a line of sight
+        List<Translation2d> original = result.getPositionList();
+        for (int i = 0; i < shortcut.size() - 1; i++) {
+            int from = original.indexOf(shortcut.get(i));
+            int to = original.indexOf(shortcut.get(i + 1));
+            Assertions.assertTrue(to > from);
+            if (to > from + 1)
+                Assertions.assertTrue(pathfinder.grid.hasLineOfSight(shortcut.get(i), shortcut.get(i + 1)));
+        }
+    }
+
+    @Test
+    public void shortcutResult() {
+        PathfinderResult result = pathfinder.findPath(new Translation2d(1, 1), new Translation2d(7.5, 3.5));
+        PathfinderResult shortcut = result.shortcut(pathfinder.grid);
+
+        Assertions.assertTrue(shortcut.pathFound());
+        Assertions.assertTrue(shortcut.getPositionList().size() < result.getPositionList().size());
+        Assertions.assertEquals(result.getPositionList().get(0), shortcut.getPositionList().get(0));
+        Assertions.assertEquals(result.getPathCost(), shortcut.getPathCost());
+
+        PathfinderResult noPath = new PathfinderResult(false, null);
+        Assertions.assertSame(noPath, noPath.shortcut(pathfinder.grid));
+    }
+
+    @Test
+    public void trajectoryRespectsLimits() {
+        PathfinderResult result = pathfinder.findPath(new Translation2d(1, 1), new Translation2d(7.5, 3.5));
+        PathTrajectory trajectory = result.getSmoothTrajectory(pathfinder.grid, MAX_VELOCITY, MAX_ACCELERATION,
+                MAX_CENTRIPETAL_ACCELERATION);
+
+        Assertions.assertEquals(0, trajectory.getVelocity(0));
+        Assertions.assertEquals(0, trajectory.getVelocity(trajectory.size() - 1));
+        Assertions.assertEquals(1, trajectory.getX(0), 1e-9);
+        Assertions.assertEquals(3.5, trajectory.getY(trajectory.size() - 1), 1e-9);
+
+        for (int i = 0; i < trajectory.size(); i++) {
+            double velocity = trajectory.getVelocity(i);
+            Assertions.assertTrue(velocity <= MAX_VELOCITY + 1e-9);
+            Assertions.assertTrue(Math.abs(trajectory.getAcceleration(i)) <= MAX_ACCELERATION + 1e-6);
+            Assertions.assertTrue(
+                    velocity * velocity * Math.abs(trajectory.getCurvature(i)) <= MAX_CENTRIPETAL_ACCELERATION + 1e-6);
+
+            int node = pathfinder.grid.FindCloseIndex(trajectory.getX(i), trajectory.getY(i));
+            Assertions.assertTrue(pathfinder.grid.isDriveable(node));
+
+            if (i > 0)
+                Assertions.assertTrue(trajectory.getTime(i) > trajectory.getTime(i - 1));
+        }
+    }
+
+    @Test
+    public void straightLineReachesMaxVelocity() {
+        List<Translation2d> waypoints = Arrays.asList(new Translation2d(0.5, 3.5), new Translation2d(1.5, 3.5),
+                new Translation2d(4.2, 3.5));
+        PathTrajectory trajectory = PathSmoother.generateTrajectory(pathfinder.grid, waypoints, 1, 1, 1);
+
+        // Accelerating to 1 m/s and back takes 1 m and 2 s, the rest is cruising
+        Assertions.assertEquals(3.7, trajectory.getLength(), 1e-9);
+        Assertions.assertEquals(2 + 2.7, trajectory.getTotalTime(), 0.01);
+        Assertions.assertEquals(1, trajectory.sampleVelocity(trajectory.getTotalTime() / 2), 1e-9);
+        Assertions.assertEquals(2.35, trajectory.samplePosition(trajectory.getTotalTime() / 2).getX(), 0.01);
+    }
+}
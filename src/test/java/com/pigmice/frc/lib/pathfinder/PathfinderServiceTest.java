@@ -0,0 +1,65 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class PathfinderServiceTest {
+    private static final Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.openField(0.1));
+
+    private static final Translation2d start = new Translation2d(1.5, 6.5);
+    private static final Translation2d goal = new Translation2d(14.5, 1.5);
+
+    @Test
+    public void matchesSynchronousResult() throws Exception {
+        try (PathfinderService service = new PathfinderService(pathfinder, 2)) {
+            PathfinderResult result = service.findPathAsync(this, start, goal).get(10, TimeUnit.SECONDS);
+
+            Assertions.assertTrue(result.pathFound());
+            Assertions.assertEquals(pathfinder.findPath(start, goal).getPathCost(), result.getPathCost(), 1e-9);
+        }
+    }
+
+    @Test
+    public void newerRequestSupersedesOlder() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (PathfinderService service = new PathfinderService(pathfinder, executor)) {
+            // Keep the only worker busy so both requests are waiting
+            executor.submit(() -> {
+                release.await();
+                return null;
+            });
+
+            CompletableFuture<PathfinderResult> older = service.findPathAsync(this, start, goal);
+            CompletableFuture<PathfinderResult> otherConsumer = service.findPathAsync("other", start, goal);
+            CompletableFuture<PathfinderResult> newer = service.findPathAsync(this, goal, start);
+            release.countDown();
+
+            Assertions.assertTrue(older.isCancelled());
+            Assertions.assertTrue(newer.get(10, TimeUnit.SECONDS).pathFound());
+            Assertions.assertTrue(otherConsumer.get(10, TimeUnit.SECONDS).pathFound());
+        }
+    }
+
+    @Test
+    public void interruptedSearchGivesUp() {
+        Thread.currentThread().interrupt();
+        try {
+            PathfinderResult result = pathfinder.findPath(start, goal);
+
+            Assertions.assertFalse(result.pathFound());
+            Assertions.assertTrue(result.getExpandedNodes() <= 1024);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
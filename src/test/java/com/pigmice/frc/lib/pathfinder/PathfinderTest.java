@@ -0,0 +1,145 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class PathfinderTest {
+    private static final double epsilon = 1e-6;
+
+    private static final Pathfinder pathfinder = new Pathfinder(0.5, FieldMock.wallField(0.05));
+
+    @Test
+    public void findsPathAroundWall() {
+        Translation2d start = new Translation2d(0.8, 0.5);
+        Translation2d goal = new Translation2d(3.2, 0.5);
+
+        PathfinderResult result = pathfinder.findPath(start, goal);
+
+        Assertions.assertTrue(result.pathFound());
+        Assertions.assertEquals(start, result.getPositionList().get(0));
+        Assertions.assertEquals(goal, result.getPositionList().get(result.getPositionList().size() - 1));
+
+        // The path has to go over the top of the wall
+        double maxY = 0;
+        for (Translation2d waypoint : result.getPositionList()) {
+            Assertions.assertTrue(pathfinder.grid.FindCloseNode(waypoint).driveable);
+            maxY = Math.max(maxY, waypoint.getY());
+        }
+        Assertions.assertTrue(maxY > 1.4);
+    }
+
+    @Test
+    public void straightPathInOpenSpace() {
+        Translation2d start = new Translation2d(0.5, 1);
+        Translation2d goal = new Translation2d(1.5, 1);
+
+        PathfinderResult result = pathfinder.findPath(start, goal);
+
+        Assertions.assertTrue(result.pathFound());
+        Assertions.assertEquals(2, result.getPositionList().size());
+    }
+
+    @Test
+    public void repeatedQueriesMatch() {
+        Translation2d start = new Translation2d(0.6, 0.4);
+        Translation2d goal = new Translation2d(3.4, 0.6);
+
+        PathfinderResult first = pathfinder.findPath(start, goal);
+        pathfinder.findPath(new Translation2d(3, 1.7), new Translation2d(0.5, 1.5));
+        PathfinderResult second = pathfinder.findPath(start, goal);
+
+        Assertions.assertEquals(first.getPositionList().size(), second.getPositionList().size());
+        for (int i = 0; i < first.getPositionList().size(); i++)
+            Assertions.assertEquals(0, first.getPositionList().get(i).getDistance(second.getPositionList().get(i)),
+                    epsilon);
+    }
+
+    @Test
+    public void concurrentQueriesMatch() throws Exception {
+        Translation2d start = new Translation2d(0.6, 0.4);
+        Translation2d goal = new Translation2d(3.4, 0.6);
+        List<Translation2d> expected = pathfinder.findPath(start, goal).getPositionList();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<PathfinderResult>> results = new ArrayList<Future<PathfinderResult>>();
+        for (int i = 0; i < 16; i++) {
+            if (i % 2 == 0)
+                results.add(executor.submit(() -> pathfinder.findPath(start, goal)));
+            else
+                results.add(executor.submit(
+                        () -> pathfinder.findPath(new Translation2d(3, 1.7), new Translation2d(0.5, 1.5))));
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < results.size(); i += 2) {
+            List<Translation2d> actual = results.get(i).get().getPositionList();
+            Assertions.assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); j++)
+                Assertions.assertEquals(0, expected.get(j).getDistance(actual.get(j)), epsilon);
+        }
+    }
+
+    @Test
+    public void noPathThroughSplitField() {
+        Pathfinder split = new Pathfinder(0.5, FieldMock.splitField(0.05));
+
+        PathfinderResult result = split.findPath(new Translation2d(0.8, 1), new Translation2d(3.2, 1));
+
+        Assertions.assertFalse(result.pathFound());
+    }
+
+    @Test
+    public void noPathFromInsideObstacle() {
+        PathfinderResult result = pathfinder.findPath(new Translation2d(2, 0.5), new Translation2d(3.2, 0.5));
+
+        Assertions.assertFalse(result.pathFound());
+    }
+
+    @Test
+    public void multiGoalMatchesSingleQueries() {
+        Pathfinder open = new Pathfinder(0.5, FieldMock.openField(0.1));
+        Translation2d start = new Translation2d(1.5, 6.5);
+
+        List<Translation2d> goals = new ArrayList<Translation2d>();
+        goals.add(new Translation2d(14.5, 1.5));
+        goals.add(new Translation2d(8, 4));
+        goals.add(new Translation2d(5, 4)); // Inside an obstacle
+        goals.add(new Translation2d(3, 2));
+
+        List<PathfinderResult> results = open.findPaths(start, goals);
+
+        Assertions.assertEquals(goals.size(), results.size());
+        for (int i = 0; i < goals.size(); i++) {
+            PathfinderResult expected = open.findPath(start, goals.get(i));
+            PathfinderResult actual = results.get(i);
+
+            Assertions.assertEquals(expected.pathFound(), actual.pathFound());
+            if (expected.pathFound()) {
+                Assertions.assertEquals(expected.getPathCost(), actual.getPathCost(), epsilon);
+                Assertions.assertEquals(goals.get(i), actual.getPositionList().get(actual.getPositionList().size() - 1));
+            }
+        }
+    }
+
+    @Test
+    public void multiGoalThroughSplitField() {
+        Pathfinder split = new Pathfinder(0.5, FieldMock.splitField(0.05));
+
+        List<Translation2d> goals = new ArrayList<Translation2d>();
+        goals.add(new Translation2d(3.2, 1));
+        goals.add(new Translation2d(0.5, 1.5));
+
+        List<PathfinderResult> results = split.findPaths(new Translation2d(0.8, 1), goals);
+
+        Assertions.assertFalse(results.get(0).pathFound());
+        Assertions.assertTrue(results.get(1).pathFound());
+    }
+}
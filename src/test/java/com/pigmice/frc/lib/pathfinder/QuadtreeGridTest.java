@@ -0,0 +1,54 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.Pathfinder.SearchMode;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class QuadtreeGridTest {
+    private static final Pathfinder aStar = new Pathfinder(0.5, FieldMock.openField(0.05));
+    private static final Pathfinder quadtree = new Pathfinder(0.5, aStar.field);
+
+    static {
+        quadtree.setSearchMode(SearchMode.QUADTREE);
+    }
+
+    @Test
+    public void cellsCoverDriveableNodes() {
+        NodeGrid grid = quadtree.grid;
+        QuadtreeGrid cells = quadtree.getQuadtreeGrid();
+
+        int driveable = 0;
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                int index = y * grid.getWidth() + x;
+                Assertions.assertEquals(grid.isDriveable(index), cells.getCell(x, y) >= 0);
+                if (grid.isDriveable(index))
+                    driveable++;
+            }
+        }
+        Assertions.assertTrue(cells.getCellCount() < driveable / 10);
+    }
+
+    @Test
+    public void expandsFewerNodes() {
+        Translation2d start = new Translation2d(1.5, 6.5);
+        Translation2d goal = new Translation2d(14.5, 1.5);
+
+        PathfinderResult expected = aStar.findPath(start, goal);
+        PathfinderResult actual = quadtree.findPath(start, goal);
+
+        Assertions.assertTrue(actual.pathFound());
+        Assertions.assertTrue(actual.getExpandedNodes() < expected.getExpandedNodes() / 10);
+    }
+
+    @Test
+    public void noPathThroughSplitField() {
+        Pathfinder split = new Pathfinder(0.5, FieldMock.splitField(0.05));
+        split.setSearchMode(SearchMode.QUADTREE);
+
+        Assertions.assertFalse(split.findPath(new Translation2d(0.8, 1), new Translation2d(3.2, 1)).pathFound());
+    }
+}
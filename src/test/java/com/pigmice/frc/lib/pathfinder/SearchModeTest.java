@@ -0,0 +1,88 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.pigmice.frc.lib.pathfinder.Pathfinder.SearchMode;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class SearchModeTest {
+    private static final double epsilon = 1e-6;
+
+    private static final Pathfinder aStar = new Pathfinder(0.5, FieldMock.openField(0.05));
+
+    @ParameterizedTest
+    @EnumSource(SearchMode.class)
+    public void randomPathsCostAboutTheSameAsAStar(SearchMode mode) {
+        Pathfinder pathfinder = new Pathfinder(0.5, aStar.field);
+        pathfinder.setSearchMode(mode);
+        Random random = new Random(2733);
+
+        int found = 0;
+        double totalRatio = 0;
+        for (int i = 0; i < 40; i++) {
+            Translation2d start = new Translation2d(random.nextDouble() * 16, random.nextDouble() * 8);
+            Translation2d goal = new Translation2d(random.nextDouble() * 16, random.nextDouble() * 8);
+
+            PathfinderResult expected = aStar.findPath(start, goal);
+            PathfinderResult actual = pathfinder.findPath(start, goal);
+
+            Assertions.assertEquals(expected.pathFound(), actual.pathFound());
+            if (expected.pathFound()) {
+                Assertions.assertTrue(actual.getPathCost() >= minCost(mode, expected.getPathCost()) - epsilon);
+                Assertions.assertTrue(actual.getPathCost() <= maxCost(mode, expected.getPathCost()) + epsilon);
+                totalRatio += actual.getPathCost() / expected.getPathCost();
+                for (Translation2d waypoint : actual.getPositionList())
+                    Assertions.assertTrue(pathfinder.grid.FindCloseNode(waypoint).driveable);
+                found++;
+            }
+        }
+        Assertions.assertTrue(found > 20);
+        Assertions.assertTrue(totalRatio / found <= maxAverageRatio(mode) + epsilon);
+    }
+
+    /** @return the lowest cost a path of the mode can have */
+    private static double minCost(SearchMode mode, double aStarCost) {
+        switch (mode) {
+            case THETA_STAR:
+                // Any-angle paths can be shorter than the 8 directions of the grid allow
+                return aStarCost * 0.9;
+            case QUADTREE:
+                // Costs are measured between cell centers, and the start and goal are
+                // moved to the centers of their cells
+                return aStarCost * 0.85 - QuadtreeGrid.MAX_CELL_SIZE;
+            default:
+                return aStarCost;
+        }
+    }
+
+    /** @return the highest cost a path of the mode can have */
+    private static double maxCost(SearchMode mode, double aStarCost) {
+        switch (mode) {
+            case THETA_STAR:
+                return aStarCost;
+            case HIERARCHICAL:
+                return aStarCost * 1.2;
+            case QUADTREE:
+                return aStarCost * 1.15 + QuadtreeGrid.MAX_CELL_SIZE;
+            default:
+                return aStarCost;
+        }
+    }
+
+    /** @return the highest average ratio of path cost to A* path cost of the mode */
+    private static double maxAverageRatio(SearchMode mode) {
+        switch (mode) {
+            case HIERARCHICAL:
+                return 1.05;
+            case QUADTREE:
+                return 1.1;
+            default:
+                return 1;
+        }
+    }
+}
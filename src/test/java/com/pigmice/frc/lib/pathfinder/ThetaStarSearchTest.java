@@ -0,0 +1,71 @@
+package com.pigmice.frc.lib.pathfinder;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.Pathfinder.SearchMode;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class ThetaStarSearchTest {
+    private static final Pathfinder aStar = new Pathfinder(0.5, FieldMock.openField(0.05));
+    private static final Pathfinder thetaStar = new Pathfinder(0.5, aStar.field);
+
+    static {
+        thetaStar.setSearchMode(SearchMode.THETA_STAR);
+    }
+
+    @Test
+    public void fewerWaypoints() {
+        Translation2d start = new Translation2d(1.5, 6.5);
+        Translation2d goal = new Translation2d(14.5, 1.5);
+
+        PathfinderResult expected = aStar.findPath(start, goal);
+        PathfinderResult actual = thetaStar.findPath(start, goal);
+
+        Assertions.assertTrue(actual.pathFound());
+        Assertions.assertTrue(actual.getPositionList().size() < expected.getPositionList().size());
+        Assertions.assertTrue(actual.getPathCost() <= expected.getPathCost() + 1e-6);
+    }
+
+    @Test
+    public void straightLineWhenVisible() {
+        Translation2d start = new Translation2d(1.5, 1.5);
+        Translation2d goal = new Translation2d(3, 6.5);
+
+        PathfinderResult result = thetaStar.findPath(start, goal);
+
+        Assertions.assertTrue(result.pathFound());
+        Assertions.assertEquals(2, result.getPositionList().size());
+    }
+
+    @Test
+    public void segmentsHaveLineOfSight() {
+        PathfinderResult result = thetaStar.findPath(new Translation2d(1, 1), new Translation2d(15, 7));
+        List<Translation2d> waypoints = result.getPositionList();
+
+        Assertions.assertTrue(result.pathFound());
+        for (int i = 1; i < waypoints.size(); i++) {
+            int from = thetaStar.grid.FindCloseIndex(waypoints.get(i - 1));
+            int to = thetaStar.grid.FindCloseIndex(waypoints.get(i));
+            Assertions.assertTrue(thetaStar.grid.hasLineOfSight(from, to));
+        }
+    }
+
+    @Test
+    public void lineOfSight() {
+        NodeGrid grid = new NodeGrid(0.5, FieldMock.wallField(0.1));
+
+        int left = grid.FindCloseIndex(new Translation2d(0.8, 0.5));
+        int right = grid.FindCloseIndex(new Translation2d(3.2, 0.5));
+        int topLeft = grid.FindCloseIndex(new Translation2d(0.8, 1.7));
+        int topRight = grid.FindCloseIndex(new Translation2d(3.2, 1.7));
+
+        Assertions.assertFalse(grid.hasLineOfSight(left, right));
+        Assertions.assertTrue(grid.hasLineOfSight(topLeft, topRight));
+        Assertions.assertTrue(grid.hasLineOfSight(left, topLeft));
+        Assertions.assertEquals(Double.POSITIVE_INFINITY, grid.getLineWeight(left, right), 0);
+    }
+}
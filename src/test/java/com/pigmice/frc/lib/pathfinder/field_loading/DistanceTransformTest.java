@@ -0,0 +1,103 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.FieldMock;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class DistanceTransformTest {
+    private static final double epsilon = 1e-5;
+
+    @Test
+    public void squaredDistances() {
+        double[] grid = new double[5 * 4];
+        for (int i = 0; i < grid.length; i++)
+            grid[i] = 1e20;
+        grid[1 * 5 + 1] = 0;
+        grid[3 * 5 + 4] = 0;
+
+        int[] nearest = new int[grid.length];
+        DistanceTransform.squaredDistanceTransform(grid, 5, 4, nearest);
+
+        Assertions.assertEquals(0, grid[1 * 5 + 1], epsilon);
+        Assertions.assertEquals(1, grid[1 * 5 + 2], epsilon);
+        Assertions.assertEquals(2, grid[0 * 5 + 0], epsilon);
+        Assertions.assertEquals(0, grid[3 * 5 + 4], epsilon);
+        Assertions.assertEquals(4, grid[3 * 5 + 2], epsilon);
+
+        Assertions.assertEquals(1 * 5 + 1, nearest[0 * 5 + 0]);
+        Assertions.assertEquals(3 * 5 + 4, nearest[2 * 5 + 4]);
+    }
+
+    @Test
+    public void matchesAnalyticOnClutteredField() {
+        for (double spacing : new double[] { 0.02, 0.05, 0.1, 0.2 }) {
+            Field field = FieldMock.clutteredField(spacing);
+            assertMatchesAnalytic(field, 0);
+            assertMatchesAnalytic(field, 0.35 + 1);
+        }
+    }
+
+    @Test
+    public void matchesAnalyticWithThinObstacles() {
+        Random random = new Random(2733);
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        for (int i = 0; i < 60; i++) {
+            Translation2d position = new Translation2d(0.5 + random.nextDouble() * 7, 0.5 + random.nextDouble() * 3);
+            Translation2d scale = random.nextBoolean() ? new Translation2d(0.01, 0.2 + random.nextDouble() * 0.5)
+                    : new Translation2d(0.2 + random.nextDouble() * 0.5, 0.01);
+            obstacles.add(new SDFGenerator.Rectangle(position, scale));
+        }
+
+        for (double spacing : new double[] { 0.02, 0.05, 0.1 }) {
+            Field field = FieldMock.createField(new Translation2d(8, 4), spacing, new ArrayList<Obstacle>(obstacles));
+            assertMatchesAnalytic(field, 0);
+            assertMatchesAnalytic(field, 0.5);
+        }
+    }
+
+    @Test
+    public void obstaclePastTheEdge() {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.Circle(new Translation2d(2, -0.3), 0.5));
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(0.5, 0.5), new Translation2d(0.2, 0.2)));
+
+        assertMatchesAnalytic(FieldMock.createField(new Translation2d(4, 2), 0.1, obstacles), 0);
+    }
+
+    @Test
+    public void boundariesOnly() {
+        Field field = FieldMock.createField(new Translation2d(2, 1), 0.1, new ArrayList<Obstacle>());
+
+        float[] analytic = SDFGenerator.generateClearanceGrid(field);
+        float[] transformed = DistanceTransform.generateClearanceGrid(field);
+
+        Assertions.assertArrayEquals(analytic, transformed);
+    }
+
+    /**
+     * Checks every node is exact within the reach, and within half a node
+     * diagonal of the analytic grid everywhere else
+     */
+    private static void assertMatchesAnalytic(Field field, double exactReach) {
+        double spacing = field.config.nodeSpacingMeters;
+        double reach = Math.max(exactReach, spacing / Math.sqrt(2));
+
+        float[] analytic = SDFGenerator.generateClearanceGrid(field);
+        float[] transformed = DistanceTransform.generateClearanceGrid(field, exactReach);
+
+        Assertions.assertEquals(analytic.length, transformed.length);
+        for (int i = 0; i < analytic.length; i++) {
+            if (analytic[i] <= reach || transformed[i] < reach)
+                Assertions.assertEquals(analytic[i], transformed[i], epsilon);
+            else
+                Assertions.assertEquals(analytic[i], transformed[i], spacing / Math.sqrt(2) + epsilon);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.FieldMock;
+import com.pigmice.frc.lib.pathfinder.NodeGrid;
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class FieldCacheTest {
+    private static final double epsilon = 1e-9;
+
+    private static final byte[] json = "{\"config\": {}}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void roundTrip() throws IOException {
+        Field field = FieldMock.clutteredField(0.1);
+        FieldCache cache = new FieldCache(field, SDFGenerator.generateClearanceGrid(field));
+
+        File cacheFile = File.createTempFile("field", ".bin");
+        cacheFile.deleteOnExit();
+
+        byte[] hash = FieldCache.hashSource(json, 0.7);
+        cache.write(cacheFile, hash, 0.7);
+        FieldCache loaded = FieldCache.read(cacheFile, hash, 0.7);
+
+        Assertions.assertNotNull(loaded);
+        Assertions.assertArrayEquals(cache.clearance, loaded.clearance);
+        Assertions.assertEquals(field.config.bottomLeftPositionMeters, loaded.field.config.bottomLeftPositionMeters);
+        Assertions.assertEquals(field.config.fieldSizeMeters, loaded.field.config.fieldSizeMeters);
+        Assertions.assertEquals(field.config.nodeSpacingMeters, loaded.field.config.nodeSpacingMeters, epsilon);
+
+        Assertions.assertEquals(field.obstacles.size(), loaded.field.obstacles.size());
+        Translation2d point = new Translation2d(3.3, 1.7);
+        for (int i = 0; i < field.obstacles.size(); i++) {
+            Assertions.assertEquals(field.obstacles.get(i).getClass(), loaded.field.obstacles.get(i).getClass());
+            Assertions.assertEquals(field.obstacles.get(i).getDistanceFrom(point),
+                    loaded.field.obstacles.get(i).getDistanceFrom(point), epsilon);
+        }
+    }
+
+    @Test
+    public void staleCacheIsRejected() throws IOException {
+        Field field = FieldMock.wallField(0.1);
+        FieldCache cache = new FieldCache(field, SDFGenerator.generateClearanceGrid(field));
+
+        File cacheFile = File.createTempFile("field", ".bin");
+        cacheFile.deleteOnExit();
+        cache.write(cacheFile, FieldCache.hashSource(json, 0.7), 0.7);
+
+        byte[] changedJson = "{\"config\": {} }".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertNull(FieldCache.read(cacheFile, FieldCache.hashSource(changedJson, 0.7), 0.7));
+        Assertions.assertNull(FieldCache.read(cacheFile, FieldCache.hashSource(json, 0.8), 0.8));
+    }
+
+    @Test
+    public void staleCacheIsReplacedAfterReading() throws IOException {
+        Field field = FieldMock.wallField(0.1);
+        FieldCache cache = new FieldCache(field, SDFGenerator.generateClearanceGrid(field));
+
+        File cacheFile = File.createTempFile("field", ".bin");
+        cacheFile.deleteOnExit();
+        cache.write(cacheFile, FieldCache.hashSource(json, 0.7), 0.7);
+
+        byte[] changedHash = FieldCache.hashSource("{\"config\": {} }".getBytes(StandardCharsets.UTF_8), 0.7);
+        Assertions.assertNull(FieldCache.read(cacheFile, changedHash, 0.7));
+
+        // The stale cache must not still be mapped, or replacing it fails on Windows
+        cache.write(cacheFile, changedHash, 0.7);
+        FieldCache loaded = FieldCache.read(cacheFile, changedHash, 0.7);
+
+        Assertions.assertNotNull(loaded);
+        Assertions.assertArrayEquals(cache.clearance, loaded.clearance);
+    }
+
+    @Test
+    public void truncatedCacheIsRejected() throws IOException {
+        File cacheFile = File.createTempFile("field", ".bin");
+        cacheFile.deleteOnExit();
+        Files.write(cacheFile.toPath(), new byte[] { 0x52, 0x4C });
+
+        Assertions.assertNull(FieldCache.read(cacheFile, FieldCache.hashSource(json, 0.7), 0.7));
+    }
+
+    @Test
+    public void missingCache() throws IOException {
+        File cacheFile = new File(System.getProperty("java.io.tmpdir"), "missing-field-cache.bin");
+        cacheFile.delete();
+
+        Assertions.assertNull(FieldCache.read(cacheFile, FieldCache.hashSource(json, 0.7), 0.7));
+    }
+
+    @Test
+    public void cacheFileName() {
+        File cacheFile = FieldCache.getCacheFile(new File("pathfinder", "crescendo.json"), 0.8);
+
+        Assertions.assertEquals("crescendo-800mm.bin", cacheFile.getName());
+        Assertions.assertEquals("pathfinder", cacheFile.getParentFile().getName());
+    }
+
+    @Test
+    public void landmarkRoundTrip() throws IOException {
+        Field cluttered = FieldMock.clutteredField(0.1);
+        Map<String, Translation2d> landmarks = new LinkedHashMap<String, Translation2d>();
+        landmarks.put("amp", new Translation2d(1, 3.5));
+        landmarks.put("speaker", new Translation2d(7.5, 2));
+        Field field = new Field(cluttered.config, cluttered.obstacles, landmarks);
+
+        FieldCache cache = FieldCache.build(field, 0.7);
+
+        File cacheFile = File.createTempFile("field", ".bin");
+        cacheFile.deleteOnExit();
+
+        byte[] hash = FieldCache.hashSource(json, 0.7);
+        cache.write(cacheFile, hash, 0.7);
+        FieldCache loaded = FieldCache.read(cacheFile, hash, 0.7);
+
+        Assertions.assertNotNull(loaded);
+        Assertions.assertArrayEquals(cache.clearance, loaded.clearance);
+        Assertions.assertEquals(landmarks, loaded.field.landmarks);
+        for (String name : landmarks.keySet())
+            Assertions.assertArrayEquals(cache.landmarkCosts.get(name), loaded.landmarkCosts.get(name));
+    }
+
+    @Test
+    public void distanceTransformBuildHasTheSameNodes() {
+        Field field = FieldMock.clutteredField(0.05);
+
+        NodeGrid analytic = new NodeGrid(0.7, field, FieldCache.build(field, 0.7).clearance);
+        NodeGrid transformed = new NodeGrid(0.7, field, FieldCache.build(field, 0.7, true).clearance);
+
+        for (int i = 0; i < analytic.getNodeCount(); i++) {
+            Assertions.assertEquals(analytic.isDriveable(i), transformed.isDriveable(i));
+            Assertions.assertEquals(analytic.getDistanceWeight(i), transformed.getDistanceWeight(i), 1e-6);
+        }
+    }
+
+    @Test
+    public void shapedObstacleRoundTrip() throws IOException {
+        Field wall = FieldMock.wallField(0.1);
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>(wall.obstacles);
+        obstacles.add(new SDFGenerator.RotatedRectangle(new Translation2d(2, 2), new Translation2d(1, 0.4),
+                Rotation2d.fromDegrees(30)));
+        obstacles.add(new SDFGenerator.Polygon(Arrays.asList(new Translation2d(5, 1), new Translation2d(6, 1),
+                new Translation2d(5.5, 2))));
+        obstacles.add(new SDFGenerator.KeepOutZone(Arrays.asList(new Translation2d(7, 3), new Translation2d(8, 3),
+                new Translation2d(8, 4), new Translation2d(7, 4))));
+        Field field = new Field(wall.config, obstacles);
+
+        FieldCache cache = new FieldCache(field, SDFGenerator.generateClearanceGrid(field));
+
+        File cacheFile = File.createTempFile("field", ".bin");
+        cacheFile.deleteOnExit();
+
+        byte[] hash = FieldCache.hashSource(json, 0.7);
+        cache.write(cacheFile, hash, 0.7);
+        FieldCache loaded = FieldCache.read(cacheFile, hash, 0.7);
+
+        Assertions.assertNotNull(loaded);
+        Translation2d point = new Translation2d(5.2, 1.9);
+        for (int i = 0; i < obstacles.size(); i++) {
+            Assertions.assertEquals(obstacles.get(i).getClass(), loaded.field.obstacles.get(i).getClass());
+            Assertions.assertEquals(obstacles.get(i).getDistanceFrom(point),
+                    loaded.field.obstacles.get(i).getDistanceFrom(point), epsilon);
+        }
+    }
+}
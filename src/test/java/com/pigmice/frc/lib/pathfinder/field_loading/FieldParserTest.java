@@ -0,0 +1,96 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class FieldParserTest {
+    private static final double epsilon = 1e-9;
+
+    private static Field parse(String json) throws IOException {
+        return FieldParser.parseField(new StringReader(json));
+    }
+
+    @Test
+    public void parsesEveryObstacleType() throws IOException {
+        Field field = parse("{\n"
+                + "  \"obstacles\": [\n"
+                + "    {\"xPos\": 1, \"yPos\": 2, \"width\": 0.5, \"height\": 1.5, \"type\": \"rectangle\"},\n"
+                + "    {\"type\": \"circle\", \"xPos\": 3, \"yPos\": 3, \"radius\": 0.25, \"color\": [1, 2, 3]},\n"
+                + "    {\"type\": \"rotatedRectangle\", \"xPos\": 5, \"yPos\": 1, \"width\": 1, \"height\": 0.5,"
+                + " \"rotationDegrees\": 90},\n"
+                + "    {\"type\": \"polygon\", \"vertices\": [[6, 3], [7, 3], [6.5, 4]]},\n"
+                + "    {\"type\": \"keepOutZone\", \"vertices\": [[0, 0], [1, 0], [1, 1], [0, 1]]}\n"
+                + "  ],\n"
+                + "  \"config\": {\"bottomLeftPositionMeters\": [0, 0], \"fieldSizeMeters\": [8, 5],"
+                + " \"nodeSpacingMeters\": 0.1},\n"
+                + "  \"landmarks\": [{\"name\": \"amp\", \"xPos\": 1.5, \"yPos\": -2e-1}],\n"
+                + "  \"notes\": {\"author\": \"\\\"pigmice\\\"\", \"flags\": [true, false, null]}\n"
+                + "}\n");
+
+        Assertions.assertEquals(new Translation2d(8, 5), field.config.fieldSizeMeters);
+        Assertions.assertEquals(0.1, field.config.nodeSpacingMeters, epsilon);
+        Assertions.assertEquals(new Translation2d(1.5, -0.2), field.landmarks.get("amp"));
+
+        Class<?>[] types = { SDFGenerator.Rectangle.class, SDFGenerator.Circle.class,
+                SDFGenerator.RotatedRectangle.class, SDFGenerator.Polygon.class, SDFGenerator.KeepOutZone.class,
+                SDFGenerator.FieldBoundaries.class };
+        Assertions.assertEquals(types.length, field.obstacles.size());
+        for (int i = 0; i < types.length; i++)
+            Assertions.assertEquals(types[i], field.obstacles.get(i).getClass());
+
+        Assertions.assertEquals(0, field.obstacles.get(0).getDistanceFrom(new Translation2d(1.25, 2)), epsilon);
+        // Rotated a quarter turn, so the rectangle is tall instead of wide
+        Assertions.assertEquals(0, field.obstacles.get(2).getDistanceFrom(new Translation2d(5, 1.5)), epsilon);
+        Assertions.assertEquals(-0.5, field.obstacles.get(4).getDistanceFrom(new Translation2d(0.5, 0.5)), epsilon);
+    }
+
+    @Test
+    public void syntaxErrorHasPosition() {
+        FieldParseException e = Assertions.assertThrows(FieldParseException.class, () -> parse("{\n"
+                + "  \"obstacles\": []\n"
+                + "  \"config\": {\"nodeSpacingMeters\": 0.1}\n"
+                + "}"));
+
+        Assertions.assertEquals(3, e.getLine());
+        Assertions.assertEquals(3, e.getColumn());
+    }
+
+    @Test
+    public void unknownObstacleTypeHasPosition() {
+        FieldParseException e = Assertions.assertThrows(FieldParseException.class, () -> parse("{\n"
+                + "  \"obstacles\": [\n"
+                + "    {\"type\": \"cone\", \"xPos\": 1, \"yPos\": 2}\n"
+                + "  ]\n"
+                + "}"));
+
+        Assertions.assertEquals(3, e.getLine());
+        Assertions.assertEquals(5, e.getColumn());
+        Assertions.assertTrue(e.getMessage().contains("cone"));
+    }
+
+    @Test
+    public void missingMemberIsReported() {
+        FieldParseException e = Assertions.assertThrows(FieldParseException.class,
+                () -> parse("{\"obstacles\": [{\"type\": \"circle\", \"xPos\": 1, \"yPos\": 2}]}"));
+
+        Assertions.assertTrue(e.getMessage().contains("radius"));
+        Assertions.assertEquals(1, e.getLine());
+        Assertions.assertEquals(16, e.getColumn());
+    }
+
+    @Test
+    public void malformedNumbersAndTrailingDataAreRejected() {
+        Assertions.assertThrows(FieldParseException.class,
+                () -> parse("{\"config\": {\"nodeSpacingMeters\": 1.2.3}}"));
+        Assertions.assertThrows(FieldParseException.class,
+                () -> parse("{\"config\": {\"bottomLeftPositionMeters\": [0, 0], \"fieldSizeMeters\": [1, 1],"
+                        + " \"nodeSpacingMeters\": 0.1}} {"));
+        Assertions.assertThrows(FieldParseException.class, () -> parse("{\"obstacles\": [1, ]}"));
+        Assertions.assertThrows(FieldParseException.class, () -> parse("{\"landmarks\": [{\"name\": \"amp"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class ObstacleTreeTest {
+    private static ArrayList<Obstacle> randomObstacles(Random random, int count) {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.FieldBoundaries(new Translation2d(0, 0), new Translation2d(16, 8)));
+
+        for (int i = 0; i < count; i++) {
+            Translation2d position = new Translation2d(random.nextDouble() * 16, random.nextDouble() * 8);
+            switch (i % 4) {
+                case 0:
+                    obstacles.add(new SDFGenerator.Rectangle(position,
+                            new Translation2d(random.nextDouble() + 0.1, random.nextDouble() + 0.1)));
+                    break;
+                case 1:
+                    obstacles.add(new SDFGenerator.Circle(position, random.nextDouble() * 0.5 + 0.1));
+                    break;
+                case 2:
+                    obstacles.add(new SDFGenerator.RotatedRectangle(position,
+                            new Translation2d(random.nextDouble() + 0.1, random.nextDouble() + 0.1),
+                            Rotation2d.fromDegrees(random.nextDouble() * 360)));
+                    break;
+                default:
+                    obstacles.add(new SDFGenerator.Polygon(Arrays.asList(position,
+                            position.plus(new Translation2d(random.nextDouble() + 0.1, 0)),
+                            position.plus(new Translation2d(0.2, random.nextDouble() + 0.1)))));
+            }
+        }
+        return obstacles;
+    }
+
+    @Test
+    public void matchesCheckingEveryObstacle() {
+        Random random = new Random(2733);
+        ArrayList<Obstacle> obstacles = randomObstacles(random, 60);
+        ObstacleTree tree = new ObstacleTree(obstacles);
+
+        Assertions.assertEquals(obstacles.size(), tree.size());
+
+        for (int i = 0; i < 2000; i++) {
+            Translation2d point = new Translation2d(random.nextDouble() * 18 - 1, random.nextDouble() * 10 - 1);
+
+            double expected = Double.MAX_VALUE;
+            for (Obstacle obstacle : obstacles)
+                expected = Math.min(expected, obstacle.getDistanceFrom(point));
+
+            Assertions.assertEquals(expected, tree.getDistanceFrom(point));
+            Assertions.assertEquals(expected, tree.getNearestObstacle(point).getDistanceFrom(point));
+        }
+    }
+
+    @Test
+    public void insideOverlappingObstacles() {
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.Rectangle(new Translation2d(0, 0), new Translation2d(4, 4)));
+        obstacles.add(new SDFGenerator.Circle(new Translation2d(0.5, 0), 0.2));
+        obstacles.add(new SDFGenerator.Circle(new Translation2d(10, 0), 1));
+        ObstacleTree tree = new ObstacleTree(obstacles);
+
+        // Deepest inside the rectangle, even though the circle's box is nearer
+        Assertions.assertEquals(-2, tree.getDistanceFrom(new Translation2d(0, 0)), 1e-12);
+        Assertions.assertSame(obstacles.get(0), tree.getNearestObstacle(new Translation2d(0, 0)));
+        Assertions.assertSame(obstacles.get(2), tree.getNearestObstacle(new Translation2d(8.5, 0.2)));
+    }
+
+    @Test
+    public void emptyTree() {
+        ObstacleTree tree = new ObstacleTree(new ArrayList<Obstacle>());
+
+        Assertions.assertEquals(0, tree.size());
+        Assertions.assertEquals(Double.MAX_VALUE, tree.getDistanceFrom(new Translation2d(1, 1)));
+        Assertions.assertNull(tree.getNearestObstacle(new Translation2d(1, 1)));
+    }
+}
@@ -0,0 +1,134 @@
+package com.pigmice.frc.lib.pathfinder.field_loading;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.pigmice.frc.lib.pathfinder.field_loading.SDFGenerator.Obstacle;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class SDFGeneratorTest {
+    private static final Obstacle[] obstacles = {
+            new SDFGenerator.Rectangle(new Translation2d(3, 2), new Translation2d(1.5, 0.5)),
+            new SDFGenerator.Circle(new Translation2d(-1, 4), 0.75),
+            new SDFGenerator.FieldBoundaries(new Translation2d(-2, -1), new Translation2d(6, 5)),
+            new SDFGenerator.RotatedRectangle(new Translation2d(1, 1), new Translation2d(2, 0.5),
+                    Rotation2d.fromDegrees(35)),
+            new SDFGenerator.Polygon(Arrays.asList(new Translation2d(4, 3), new Translation2d(5.5, 3.2),
+                    new Translation2d(5, 4.5), new Translation2d(4.6, 3.6))),
+    };
+
+    @Test
+    public void rowDistancesMatchSinglePoints() {
+        Random random = new Random(2733);
+
+        double[] xs = new double[37];
+        for (int i = 0; i < xs.length; i++)
+            xs[i] = random.nextDouble() * 10 - 3;
+
+        for (Obstacle obstacle : obstacles) {
+            for (int row = 0; row < 20; row++) {
+                double y = random.nextDouble() * 8 - 2;
+
+                double[] distances = new double[xs.length];
+                Arrays.fill(distances, Double.MAX_VALUE);
+                obstacle.minDistancesAlongRow(xs, y, distances);
+
+                for (int i = 0; i < xs.length; i++)
+                    Assertions.assertEquals(obstacle.getDistanceFrom(new Translation2d(xs[i], y)), distances[i]);
+            }
+        }
+    }
+
+    @Test
+    public void rowDistancesKeepCloserObstacles() {
+        double[] xs = { 3, 10 };
+        double[] distances = { -5, 100 };
+
+        obstacles[0].minDistancesAlongRow(xs, 2, distances);
+
+        Assertions.assertEquals(-5, distances[0]);
+        Assertions.assertEquals(6.25, distances[1], 1e-12);
+    }
+
+    @Test
+    public void gridMatchesSinglePoints() {
+        Field field = new Field(new Field.FieldConfig(new Translation2d(-2, -1), new Translation2d(8, 6), 0.1),
+                new ArrayList<Obstacle>(Arrays.asList(obstacles)));
+
+        float[] clearance = SDFGenerator.generateClearanceGrid(field);
+
+        int width = field.config.getGridWidth();
+        for (int index = 0; index < clearance.length; index++) {
+            Translation2d fieldPos = field.config.bottomLeftPositionMeters
+                    .plus(new Translation2d(index % width, index / width).times(field.config.nodeSpacingMeters));
+            Assertions.assertEquals((float) SDFGenerator.getDistanceFromNearestObstacle(field, fieldPos),
+                    clearance[index]);
+        }
+    }
+
+    @Test
+    public void rotatedRectangleDistances() {
+        Obstacle square = new SDFGenerator.RotatedRectangle(new Translation2d(0, 0), new Translation2d(2, 2),
+                Rotation2d.fromDegrees(45));
+
+        Assertions.assertEquals(2 - Math.sqrt(2), square.getDistanceFrom(new Translation2d(2, 0)), 1e-12);
+        Assertions.assertEquals(-1, square.getDistanceFrom(new Translation2d(0, 0)), 1e-12);
+        Assertions.assertEquals(-Math.sqrt(2), square.getMinBounds().getX(), 1e-12);
+        Assertions.assertEquals(Math.sqrt(2), square.getMaxBounds().getY(), 1e-12);
+    }
+
+    @Test
+    public void polygonDistances() {
+        // An L shape, so the polygon isn't convex
+        Obstacle polygon = new SDFGenerator.Polygon(Arrays.asList(new Translation2d(0, 0), new Translation2d(3, 0),
+                new Translation2d(3, 1), new Translation2d(1, 1), new Translation2d(1, 3), new Translation2d(0, 3)));
+
+        Assertions.assertEquals(-0.5, polygon.getDistanceFrom(new Translation2d(0.5, 2)), 1e-12);
+        Assertions.assertEquals(-0.25, polygon.getDistanceFrom(new Translation2d(2, 0.25)), 1e-12);
+        Assertions.assertEquals(0.5, polygon.getDistanceFrom(new Translation2d(1.5, 1.5)), 1e-12);
+        Assertions.assertEquals(Math.sqrt(0.5), polygon.getDistanceFrom(new Translation2d(3.5, 1.5)), 1e-12);
+        Assertions.assertEquals(1, polygon.getDistanceFrom(new Translation2d(4, 0.5)), 1e-12);
+        Assertions.assertEquals(new Translation2d(3, 3), polygon.getMaxBounds());
+    }
+
+    @Test
+    public void culledGridMatchesEveryObstacle() {
+        Random random = new Random(2733);
+        ArrayList<Obstacle> obstacles = new ArrayList<Obstacle>();
+        obstacles.add(new SDFGenerator.FieldBoundaries(new Translation2d(0, 0), new Translation2d(16, 8)));
+        for (int i = 0; i < 40; i++) {
+            Translation2d position = new Translation2d(random.nextDouble() * 16, random.nextDouble() * 8);
+            if (i % 2 == 0)
+                obstacles.add(new SDFGenerator.Circle(position, random.nextDouble() * 0.4 + 0.1));
+            else
+                obstacles.add(new SDFGenerator.RotatedRectangle(position,
+                        new Translation2d(random.nextDouble() + 0.2, random.nextDouble() + 0.2),
+                        Rotation2d.fromDegrees(random.nextDouble() * 180)));
+        }
+        Field field = new Field(new Field.FieldConfig(new Translation2d(0, 0), new Translation2d(16, 8), 0.05),
+                obstacles);
+
+        float[] clearance = SDFGenerator.generateClearanceGrid(field, true);
+
+        int width = field.config.getGridWidth();
+        double[] xs = new double[width];
+        for (int x = 0; x < width; x++)
+            xs[x] = x * field.config.nodeSpacingMeters;
+
+        for (int y = 0; y < field.config.getGridHeight(); y++) {
+            double[] distances = new double[width];
+            Arrays.fill(distances, Double.MAX_VALUE);
+            for (Obstacle obstacle : obstacles)
+                obstacle.minDistancesAlongRow(xs, y * field.config.nodeSpacingMeters, distances);
+
+            for (int x = 0; x < width; x++)
+                Assertions.assertEquals((float) distances[x], clearance[y * width + x]);
+        }
+    }
+}